@@ -0,0 +1,53 @@
+package com.isroot.stash.plugin;
+
+import com.isroot.stash.plugin.errors.YaccError;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous view of {@link JiraService}. Lookups are started on the calling thread, as the
+ * user that is pushing, and run in the background, so that callers can go on with other work
+ * and collect the results later.
+ * <p>
+ * Each method gives the same result as the {@link JiraService} method of the same name.
+ *
+ * @since 2026-10-18
+ */
+public interface AsyncJiraService {
+    @Nonnull
+    CompletableFuture<List<YaccError>> doesIssueExist(@Nonnull IssueKey issueKey);
+
+    @Nonnull
+    CompletableFuture<List<YaccError>> doesIssueMatchJqlQuery(@Nonnull String jqlQuery,
+            @Nonnull IssueKey issueKey);
+
+    @Nonnull
+    CompletableFuture<Boolean> doesProjectExist(@Nonnull IssueKey issueKey);
+
+    @Nonnull
+    CompletableFuture<List<YaccError>> checkIssue(@Nonnull IssueKey issueKey,
+            @Nullable String jqlQuery);
+
+    @Nonnull
+    CompletableFuture<Map<IssueKey, List<YaccError>>> checkIssues(
+            @Nonnull Collection<IssueKey> issueKeys, @Nullable String jqlQuery,
+            @Nonnull PushTimeBudget budget);
+
+    /**
+     * Return how long to wait for a lookup before treating it as failed.
+     */
+    long getTimeoutMillis();
+
+    /**
+     * Return the errors for an issue whose lookup failed with {@code cause}, or did not finish
+     * within {@link #getTimeoutMillis()} if it is a {@link java.util.concurrent.TimeoutException},
+     * the same as {@link JiraService#doesIssueExist(IssueKey)} gives when JIRA fails to answer.
+     */
+    @Nonnull
+    List<YaccError> getFailedLookupErrors(@Nonnull IssueKey issueKey, @Nonnull Throwable cause);
+}
@@ -4,11 +4,18 @@ import com.atlassian.bitbucket.scope.Scope;
 import com.atlassian.bitbucket.setting.Settings;
 import com.atlassian.bitbucket.setting.SettingsValidationErrors;
 import com.atlassian.bitbucket.setting.SettingsValidator;
+import com.isroot.stash.plugin.regex.LinearRegex;
+import com.isroot.stash.plugin.regex.PatternCache;
+import com.isroot.stash.plugin.regex.RegexProbe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -30,13 +37,28 @@ public class ConfigValidator implements SettingsValidator {
     @Override
     public void validate(@Nonnull Settings settings, @Nonnull SettingsValidationErrors errors,
                          @Nonnull Scope scope) {
+        validate(settings, errors, scope, (setting, warning) -> { });
+    }
+
+    /**
+     * Same as {@link #validate(Settings, SettingsValidationErrors, Scope)}, and also report
+     * problems that don't stop the settings from being saved to {@code warnings}, with the name
+     * of the setting and a message.
+     */
+    public void validate(@Nonnull Settings settings, @Nonnull SettingsValidationErrors errors,
+                         @Nullable Scope scope, @Nonnull BiConsumer<String, String> warnings) {
         log.debug("validating config");
 
-        validationRegex(settings, errors, "commitMessageRegex");
-        validationRegex(settings, errors, "committerEmailRegex");
-        validationRegex(settings, errors, "excludeByRegex");
-        validationRegex(settings, errors, "excludeBranchRegex");
-        validationRegex(settings, errors, "branchNameRegex");
+        long regexTimeoutMillis = validateRegexTimeout(settings, errors);
+        validateMillis(settings, errors, "pushTimeBudgetMillis");
+        validatePushTimeBudgetPolicy(settings, errors);
+        boolean linear = settings.getBoolean("useLinearRegexEngine", false);
+
+        validationRegex(settings, errors, warnings, "commitMessageRegex", Pattern.MULTILINE, false, regexTimeoutMillis, linear);
+        validationRegex(settings, errors, warnings, "committerEmailRegex", Pattern.MULTILINE, false, regexTimeoutMillis, linear);
+        validationRegex(settings, errors, warnings, "excludeByRegex", 0, true, regexTimeoutMillis, linear);
+        validationRegex(settings, errors, warnings, "excludeBranchRegex", 0, false, regexTimeoutMillis, linear);
+        validationRegex(settings, errors, warnings, "branchNameRegex", 0, false, regexTimeoutMillis, linear);
 
         if (settings.getBoolean("requireJiraIssue", false)) {
             if (!jiraService.doesJiraApplicationLinkExist()) {
@@ -53,17 +75,90 @@ public class ConfigValidator implements SettingsValidator {
         }
     }
 
+    private long validateRegexTimeout(Settings settings, SettingsValidationErrors errors) {
+        validateMillis(settings, errors, "regexTimeoutMillis");
+
+        return YaccPolicy.getRegexTimeoutMillis(settings);
+    }
+
+    private void validateMillis(Settings settings, SettingsValidationErrors errors, String setting) {
+        Map<String, Object> values = settings.asMap();
+        Object value = values != null ? values.get(setting) : null;
+
+        if (value instanceof String && !((String) value).trim().isEmpty()) {
+            try {
+                if (Long.parseLong(((String) value).trim()) < 0) {
+                    errors.addFieldError(setting, "Must be zero or a positive number of milliseconds.");
+                }
+            } catch (NumberFormatException e) {
+                errors.addFieldError(setting, "Must be zero or a positive number of milliseconds.");
+            }
+        }
+    }
+
+    private void validatePushTimeBudgetPolicy(Settings settings, SettingsValidationErrors errors) {
+        Map<String, Object> values = settings.asMap();
+        Object value = values != null ? values.get("pushTimeBudgetPolicy") : null;
+
+        if (value instanceof String && !((String) value).trim().isEmpty()) {
+            try {
+                PushTimeBudget.ExhaustedPolicy.valueOf(((String) value).trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                errors.addFieldError("pushTimeBudgetPolicy", "Must be one of reject, accept or audit.");
+            }
+        }
+    }
+
     private void validationRegex(Settings settings,
                                  SettingsValidationErrors errors,
-                                 String setting) {
+                                 BiConsumer<String, String> warnings,
+                                 String setting,
+                                 int flags,
+                                 boolean find,
+                                 long regexTimeoutMillis,
+                                 boolean linear) {
         String regex = settings.getString(setting);
         if (regex != null && !regex.isEmpty()) {
+            Pattern pattern;
             try {
-                Pattern.compile(regex);
+                pattern = PatternCache.getInstance().compile(regex, flags);
             } catch (PatternSyntaxException ex) {
                 errors.addFieldError(setting, "Invalid Regex: " + ex.getMessage());
+                return;
             }
-        }
 
+            if (linear) {
+                // Supported regexes run in linear time, so there is nothing to probe for
+                String reason = LinearRegex.getUnsupportedReason(regex, flags);
+                if (reason == null) {
+                    return;
+                }
+
+                // Evaluated by java.util.regex instead, see YaccPolicy, so it is probed below
+                log.info("{} '{}' is not supported by the linear-time regex engine: {}", setting,
+                        regex, reason);
+
+                warnings.accept(setting, "Regex is not supported by the linear-time regex engine: "
+                        + reason + ". The standard java.util.regex engine will be used for it.");
+            }
+
+            // A slow probe may only mean that the server was busy, so it doesn't stop the settings
+            // from being saved
+            if (regexTimeoutMillis > 0) {
+                boolean tooSlow = find
+                        ? RegexProbe.exceedsFindBudget(pattern, regexTimeoutMillis)
+                        : RegexProbe.exceedsMatchBudget(pattern, regexTimeoutMillis);
+
+                if (tooSlow) {
+                    log.warn("{} '{}' exceeded regex time budget of {} ms during probe", setting,
+                            regex, regexTimeoutMillis);
+
+                    warnings.accept(setting, String.format("Regex took longer than %d ms on a "
+                            + "test input and may cause pushes to time out. Check for nested "
+                            + "repetition like (a+)+ or increase the regex timeout.",
+                            regexTimeoutMillis));
+                }
+            }
+        }
     }
 }
@@ -1,7 +1,6 @@
 package com.isroot.stash.plugin;
 
-import com.google.common.collect.Lists;
-
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -10,12 +9,6 @@ import java.util.regex.Pattern;
  * A JIRA issue key.
  */
 public class IssueKey {
-    /**
-     * A regex pattern that matches on JIRA issue keys. The individual components of a valid match
-     * should be extracted using the {@link #getMatchedProjectKey(java.util.regex.Matcher)} and {@link #getMatchedProjectKey(java.util.regex.Matcher)}
-     * methods.
-     */
-    private static Pattern ISSUE_PATTERN = Pattern.compile("([A-Z][A-Z_0-9]+)-([0-9]+)");
     private static Pattern PROJECT_PATTERN = Pattern.compile("[A-Z][A-Z_0-9]+");
     /** JIRA project key */
     private final String projectKey;
@@ -29,13 +22,13 @@ public class IssueKey {
      * @throws InvalidIssueKeyException if issueKey is not a correctly formatted JIRA issue key.
      */
     public IssueKey(String issueKey) throws InvalidIssueKeyException {
-        Matcher matcher = ISSUE_PATTERN.matcher(issueKey);
-        if (!matcher.find()) {
+        int[] bounds = new int[3];
+        if (!findIssueKey(issueKey, 0, bounds)) {
             throw new InvalidIssueKeyException(issueKey);
         }
 
-        this.projectKey = getMatchedProjectKey(matcher);
-        this.issueId = getMatchedIssueId(matcher);
+        this.projectKey = issueKey.substring(bounds[0], bounds[1]);
+        this.issueId = issueKey.substring(bounds[1] + 1, bounds[2]);
     }
 
     /**
@@ -54,39 +47,123 @@ public class IssueKey {
         this.issueId = issueId;
     }
 
+    private IssueKey(CharSequence input, int[] bounds) {
+        this.projectKey = input.subSequence(bounds[0], bounds[1]).toString();
+        this.issueId = input.subSequence(bounds[1] + 1, bounds[2]).toString();
+    }
+
+    /**
+     * Return the issue key at {@code bounds} found by {@link #findIssueKey}, which needs no
+     * further validation.
+     */
+    private static IssueKey ofFound(CharSequence input, int[] bounds) {
+        return new IssueKey(input, bounds);
+    }
+
     /**
      * Parse any issue keys (i.e., strings that match the standard issue key format) found within the given input.
+     * <p>
+     * Most commit messages contain zero or one issue key, so this avoids regex and allocates
+     * little beyond the keys that are found.
      *
      * @param input The input string to be parsed for issue keys.
      */
-    static public List<IssueKey> parseIssueKeys(String input) {
-        List<IssueKey> issueKeys = Lists.newArrayList();
-        Matcher matcher = ISSUE_PATTERN.matcher(input);
-        while (matcher.find()) {
-            issueKeys.add(new IssueKey(getMatchedProjectKey(matcher), getMatchedIssueId(matcher)));
+    static public List<IssueKey> parseIssueKeys(CharSequence input) {
+        int[] bounds = null;
+        List<IssueKey> issueKeys = null;
+
+        int from = 0;
+        while (from < input.length()) {
+            if (bounds == null) {
+                // Cheap check for the common case of no possible key at all
+                if (!containsDash(input)) {
+                    break;
+                }
+                bounds = new int[3];
+            }
+
+            if (!findIssueKey(input, from, bounds)) {
+                break;
+            }
+
+            if (issueKeys == null) {
+                issueKeys = new ArrayList<>(2);
+            }
+            issueKeys.add(ofFound(input, bounds));
+
+            from = bounds[2];
         }
 
-        return issueKeys;
+        return issueKeys != null ? issueKeys : new ArrayList<>();
     }
 
     /**
-     * Return the project key matched by {@link #ISSUE_PATTERN}.
+     * Find the next issue key at or after {@code from}. This is equivalent to searching for the
+     * regex {@code ([A-Z][A-Z_0-9]+)-([0-9]+)} with {@link Matcher#find(int)}.
      *
-     * @param matcher A successfully matching {@link #ISSUE_PATTERN} matcher.
-     * @return The matched project key.
+     * @param bounds Receives the start of the key, the index of the dash and the end of the key.
+     * @return true if a key was found.
      */
-    private static String getMatchedProjectKey(Matcher matcher) {
-        return matcher.group(1);
+    private static boolean findIssueKey(CharSequence input, int from, int[] bounds) {
+        int length = input.length();
+        int i = from;
+
+        while (i < length) {
+            if (!isUpper(input.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            // The project key is a run of [A-Z_0-9] that must be followed by a dash. Every start
+            // position inside the run ends at the same place, so if the run fails, skip all of it.
+            int dash = i + 1;
+            while (dash < length && isProjectKeyChar(input.charAt(dash))) {
+                dash++;
+            }
+
+            if (dash - i >= 2 && dash + 1 < length && input.charAt(dash) == '-'
+                    && isDigit(input.charAt(dash + 1))) {
+                int end = dash + 2;
+                while (end < length && isDigit(input.charAt(end))) {
+                    end++;
+                }
+
+                bounds[0] = i;
+                bounds[1] = dash;
+                bounds[2] = end;
+                return true;
+            }
+
+            i = dash;
+        }
+
+        return false;
     }
 
-    /**
-     * Return the issue identifier matched by {@link #ISSUE_PATTERN}.
-     *
-     * @param matcher A successfully matching {@link #ISSUE_PATTERN} matcher.
-     * @return The matched issue identifier.
-     */
-    private static String getMatchedIssueId(Matcher matcher) {
-        return matcher.group(2);
+    private static boolean containsDash(CharSequence input) {
+        if (input instanceof String) {
+            return ((String) input).indexOf('-') >= 0;
+        }
+
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) == '-') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isProjectKeyChar(char c) {
+        return isUpper(c) || isDigit(c) || c == '_';
     }
 
     /**
@@ -3,7 +3,10 @@ package com.isroot.stash.plugin;
 import com.isroot.stash.plugin.errors.YaccError;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service object to interact with JIRA.
@@ -17,4 +20,43 @@ public interface JiraService {
     List<YaccError> doesIssueExist(IssueKey issueKey);
     boolean doesProjectExist(IssueKey issueKey);
     List<String> checkJqlQuery(@Nonnull String jqlQuery);
+
+    /**
+     * Return an asynchronous view of this service, for starting lookups without waiting for
+     * them.
+     */
+    @Nonnull
+    AsyncJiraService async();
+
+    /**
+     * Check that the issue exists and, if {@code jqlQuery} is not null, matches the query.
+     * <p>
+     * Gives the same errors as calling {@link #doesIssueExist(IssueKey)} and then
+     * {@link #doesIssueMatchJqlQuery(String, IssueKey)}, but an issue that exists and matches
+     * the query is confirmed by a single JIRA request.
+     */
+    @Nonnull
+    List<YaccError> checkIssue(@Nonnull IssueKey issueKey, @Nullable String jqlQuery);
+
+    /**
+     * Check that each issue exists and, if {@code jqlQuery} is not null, matches the query.
+     * <p>
+     * Gives the same errors as calling {@link #doesIssueExist(IssueKey)} and then
+     * {@link #doesIssueMatchJqlQuery(String, IssueKey)} for each issue, but looks up many issues
+     * in a single JIRA request.
+     *
+     * @return errors for each distinct issue, in the order given. Issues without errors map to
+     * an empty list.
+     */
+    @Nonnull
+    Map<IssueKey, List<YaccError>> checkIssues(@Nonnull Collection<IssueKey> issueKeys,
+            @Nullable String jqlQuery);
+
+    /**
+     * Same as {@link #checkIssues(Collection, String)}, but stops looking up issues once
+     * {@code budget} is exhausted. Issues that were not checked are left out of the result.
+     */
+    @Nonnull
+    Map<IssueKey, List<YaccError>> checkIssues(@Nonnull Collection<IssueKey> issueKeys,
+            @Nullable String jqlQuery, @Nonnull PushTimeBudget budget);
 }
@@ -0,0 +1,121 @@
+package com.isroot.stash.plugin;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Pushes that were accepted without being fully checked because their time budget ran out,
+ * queued for an audit.
+ * <p>
+ * Entries are written to the {@code com.isroot.stash.plugin.audit} logger on a background thread
+ * so that writing them doesn't add to the time of the push. The commits and JIRA issues can't be
+ * checked later on that thread, since the checks depend on the pushing user, so the audit log is
+ * meant to be reviewed by an administrator. The queue is bounded, and entries that don't fit are
+ * dropped and counted.
+ *
+ * @since 2026-10-18
+ */
+public class PushAuditQueue {
+    private static final Logger log = LoggerFactory.getLogger(PushAuditQueue.class);
+    private static final Logger auditLog = LoggerFactory.getLogger("com.isroot.stash.plugin.audit");
+
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    private static final PushAuditQueue INSTANCE = new PushAuditQueue(DEFAULT_CAPACITY);
+
+    private final ThreadPoolExecutor executor;
+
+    public PushAuditQueue(int capacity) {
+        // The thread goes away when idle so nothing is left running if the plugin is disabled
+        this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("yacc-push-audit-%d")
+                        .build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Return the process-wide audit queue.
+     */
+    public static PushAuditQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue a push for audit.
+     *
+     * @return false if the queue is full and the entry was dropped.
+     */
+    public boolean submit(@Nonnull Entry entry) {
+        checkNotNull(entry, "entry is null");
+
+        try {
+            executor.execute(() -> write(entry));
+            YaccMetrics.increment("push.audit.queued");
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("push audit queue is full, dropping audit of {}", entry.pushDescription);
+            YaccMetrics.increment("push.audit.dropped");
+            return false;
+        }
+    }
+
+    private static void write(Entry entry) {
+        auditLog.warn("push {} was accepted without being fully checked ({}): unchecked refs {}, "
+                        + "{} unchecked commits, unchecked JIRA issues {}", entry.pushDescription,
+                entry.budgetDescription, entry.uncheckedRefs, entry.uncheckedCommitCount,
+                entry.uncheckedIssues);
+
+        for (String commit : entry.uncheckedCommits) {
+            auditLog.warn("push {} unchecked commit {}", entry.pushDescription, commit);
+        }
+
+        if (entry.uncheckedCommitCount > entry.uncheckedCommits.size()) {
+            auditLog.warn("push {} has {} more unchecked commits", entry.pushDescription,
+                    entry.uncheckedCommitCount - entry.uncheckedCommits.size());
+        }
+    }
+
+    /**
+     * A push that was not fully checked.
+     */
+    public static final class Entry {
+        private final String pushDescription;
+        private final String budgetDescription;
+        private final List<String> uncheckedRefs;
+        private final List<String> uncheckedCommits;
+        private final int uncheckedCommitCount;
+        private final List<IssueKey> uncheckedIssues;
+
+        /**
+         * @param uncheckedRefs        refs created by the push whose own checks did not finish.
+         * @param uncheckedCommits     ref and id of unchecked commits, possibly only the first
+         *                             of them.
+         * @param uncheckedCommitCount total number of unchecked commits.
+         */
+        public Entry(@Nonnull String pushDescription, @Nonnull String budgetDescription,
+                @Nonnull List<String> uncheckedRefs, @Nonnull List<String> uncheckedCommits,
+                int uncheckedCommitCount, @Nonnull Collection<IssueKey> uncheckedIssues) {
+            this.pushDescription = checkNotNull(pushDescription, "pushDescription is null");
+            this.budgetDescription = checkNotNull(budgetDescription, "budgetDescription is null");
+            this.uncheckedRefs = ImmutableList.copyOf(uncheckedRefs);
+            this.uncheckedCommits = ImmutableList.copyOf(uncheckedCommits);
+            this.uncheckedCommitCount = uncheckedCommitCount;
+            this.uncheckedIssues = ImmutableList.copyOf(uncheckedIssues);
+        }
+    }
+}
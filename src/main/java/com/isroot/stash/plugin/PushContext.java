@@ -0,0 +1,96 @@
+package com.isroot.stash.plugin;
+
+import com.isroot.stash.plugin.errors.YaccError;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * State shared by the checks of all commits of one push, so that it is built or looked up once
+ * per push rather than once per commit.
+ * <p>
+ * This includes the results of the JIRA checks, so that an issue or project mentioned by many
+ * commits is only checked once, whether or not {@link JiraService} caches lookups itself. Only
+ * the results are shared. Errors are returned to each commit that mentions the issue, which adds
+ * its own ref and commit id to them.
+ * <p>
+ * Not thread safe, since the commits of a push are checked one at a time.
+ *
+ * @since 2026-10-18
+ */
+class PushContext {
+    private final YaccPolicy policy;
+    private final JiraService jiraService;
+    private final Map<String, Boolean> branchesExcluded = new HashMap<>();
+    private final Map<String, Boolean> projectsExist = new HashMap<>();
+    private final Map<IssueKey, List<YaccError>> issueErrors = new HashMap<>();
+
+    private Boolean applicationLinkExists;
+
+    PushContext(@Nonnull YaccPolicy policy, @Nonnull JiraService jiraService) {
+        this.policy = checkNotNull(policy, "policy is null");
+        this.jiraService = checkNotNull(jiraService, "jiraService is null");
+    }
+
+    @Nonnull
+    YaccPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Same as {@link YaccPolicy#isBranchExcluded(String)}, but only evaluated once per branch.
+     */
+    boolean isBranchExcluded(String branchName) {
+        return branchesExcluded.computeIfAbsent(branchName, policy::isBranchExcluded);
+    }
+
+    boolean doesJiraApplicationLinkExist() {
+        if (applicationLinkExists == null) {
+            applicationLinkExists = jiraService.doesJiraApplicationLinkExist();
+        }
+
+        return applicationLinkExists;
+    }
+
+    boolean doesProjectExist(@Nonnull IssueKey issueKey) {
+        Boolean exists = projectsExist.get(issueKey.getProjectKey());
+        if (exists != null) {
+            YaccMetrics.increment("push.issueChecks.reused");
+            return exists;
+        }
+
+        exists = jiraService.doesProjectExist(issueKey);
+        projectsExist.put(issueKey.getProjectKey(), exists);
+
+        return exists;
+    }
+
+    /**
+     * Check that the issue exists and matches the issue JQL matcher of the policy, if there is
+     * one.
+     */
+    @Nonnull
+    List<YaccError> checkIssue(@Nonnull IssueKey issueKey) {
+        List<YaccError> errors = issueErrors.get(issueKey);
+        if (errors != null) {
+            YaccMetrics.increment("push.issueChecks.reused");
+            return errors;
+        }
+
+        String jqlQuery = policy.getIssueJqlMatcher();
+        if (jqlQuery != null) {
+            // Existence and the JQL query are confirmed by one search when the issue matches
+            errors = jiraService.checkIssue(issueKey, jqlQuery);
+        } else {
+            errors = jiraService.doesIssueExist(issueKey);
+        }
+
+        issueErrors.put(issueKey, errors);
+
+        return errors;
+    }
+}
@@ -0,0 +1,214 @@
+package com.isroot.stash.plugin;
+
+import com.google.common.base.Ticker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Time budget for checking a single push, shared by every check run for it: regexes, annotated
+ * tag resolution and JIRA lookups. Checks stop starting new work once the budget is exhausted,
+ * and {@link ExhaustedPolicy} decides what happens to the unchecked remainder of the push.
+ * <p>
+ * Time spent in each stage of the checks is recorded so it can be logged with the result.
+ *
+ * @since 2026-10-18
+ */
+public class PushTimeBudget {
+    public enum ExhaustedPolicy {
+        /** Reject the push, saying that it could not be checked in time. */
+        REJECT,
+        /** Accept the push and log a warning. */
+        ACCEPT,
+        /** Accept the push and queue the unchecked commits for an asynchronous audit. */
+        AUDIT;
+
+        /**
+         * Parse a setting value, returning {@link #REJECT} for missing or unknown values.
+         */
+        @Nonnull
+        public static ExhaustedPolicy parse(@Nullable String value) {
+            if (value != null) {
+                try {
+                    return valueOf(value.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    // Fall through to the default
+                }
+            }
+
+            return REJECT;
+        }
+    }
+
+    private final long budgetMillis;
+    private final long budgetNanos;
+    private final ExhaustedPolicy exhaustedPolicy;
+    private final Ticker ticker;
+    private final long startNanos;
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+    private final Set<String> uncheckedRefs = new LinkedHashSet<>();
+    private final AtomicBoolean exhausted = new AtomicBoolean();
+
+    public PushTimeBudget(long budgetMillis, @Nonnull ExhaustedPolicy exhaustedPolicy) {
+        this(budgetMillis, exhaustedPolicy, Ticker.systemTicker());
+    }
+
+    /**
+     * @param budgetMillis zero or less for no budget.
+     */
+    public PushTimeBudget(long budgetMillis, @Nonnull ExhaustedPolicy exhaustedPolicy,
+            @Nonnull Ticker ticker) {
+        this.budgetMillis = Math.max(0, budgetMillis);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(this.budgetMillis);
+        this.exhaustedPolicy = checkNotNull(exhaustedPolicy, "exhaustedPolicy is null");
+        this.ticker = checkNotNull(ticker, "ticker is null");
+        this.startNanos = ticker.read();
+    }
+
+    public boolean isLimited() {
+        return budgetMillis > 0;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    @Nonnull
+    public ExhaustedPolicy getExhaustedPolicy() {
+        return exhaustedPolicy;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read() - startNanos);
+    }
+
+    /**
+     * Return the milliseconds left, or {@link Long#MAX_VALUE} if there is no budget.
+     */
+    public long getRemainingMillis() {
+        if (!isLimited()) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(budgetNanos - (ticker.read() - startNanos)));
+    }
+
+    /**
+     * Return true once the budget has run out. Remains true afterwards, even for work that
+     * happens to be fast, so that a push is never half checked in a different way.
+     */
+    public boolean isExhausted() {
+        if (!isLimited()) {
+            return false;
+        }
+
+        if (!exhausted.get() && ticker.read() - startNanos >= budgetNanos
+                && exhausted.compareAndSet(false, true)) {
+            YaccMetrics.increment("push.budget.exhausted");
+        }
+
+        return exhausted.get();
+    }
+
+    /**
+     * Record that a ref created by the push was not fully checked because the budget ran out.
+     */
+    public synchronized void addUncheckedRef(@Nonnull String refId) {
+        uncheckedRefs.add(checkNotNull(refId, "refId is null"));
+    }
+
+    /**
+     * Return the refs that were not fully checked, in the order they were recorded.
+     */
+    @Nonnull
+    public synchronized List<String> getUncheckedRefs() {
+        return Collections.unmodifiableList(new ArrayList<>(uncheckedRefs));
+    }
+
+    /**
+     * Start timing a stage of the checks. Stages with the same name are added up.
+     */
+    @Nonnull
+    public Stage startStage(@Nonnull String name) {
+        return new Stage(name, ticker.read());
+    }
+
+    /**
+     * Return the milliseconds spent in each stage, in the order the stages were first started.
+     */
+    @Nonnull
+    public synchronized Map<String, Long> getStageMillis() {
+        Map<String, Long> stageMillis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : stageNanos.entrySet()) {
+            stageMillis.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue()));
+        }
+
+        return Collections.unmodifiableMap(stageMillis);
+    }
+
+    /**
+     * Add the time spent in each stage to the {@code push.stage.*.millis} metrics. Call once,
+     * when the push has been checked.
+     */
+    public void recordMetrics() {
+        YaccMetrics.increment("push.checked");
+
+        for (Map.Entry<String, Long> entry : getStageMillis().entrySet()) {
+            YaccMetrics.add("push.stage." + entry.getKey() + ".millis", entry.getValue());
+        }
+    }
+
+    /**
+     * Describe the time spent in each stage, for example {@code regex 12 ms, jira 350 ms}.
+     */
+    @Nonnull
+    public String describeStages() {
+        return getStageMillis().entrySet().stream()
+                .map(entry -> entry.getKey() + " " + entry.getValue() + " ms")
+                .collect(Collectors.joining(", "));
+    }
+
+    private synchronized void addStageNanos(String name, long nanos) {
+        stageNanos.merge(name, nanos, Long::sum);
+    }
+
+    /**
+     * A running stage, stopped by {@link #close()}.
+     */
+    public final class Stage implements AutoCloseable {
+        private final String name;
+        private final long stageStartNanos;
+
+        private Stage(String name, long stageStartNanos) {
+            this.name = name;
+            this.stageStartNanos = stageStartNanos;
+        }
+
+        @Override
+        public void close() {
+            addStageNanos(name, ticker.read() - stageStartNanos);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PushTimeBudget{" +
+                "budgetMillis=" + budgetMillis +
+                ", exhaustedPolicy=" + exhaustedPolicy +
+                ", elapsedMillis=" + getElapsedMillis() +
+                '}';
+    }
+}
@@ -38,6 +38,7 @@ public class YaccConfigServlet extends HttpServlet {
     private ConfigValidator configValidator;
     private Map<String, String> fields;
     private Map<String, Iterable<String>> fieldErrors;
+    private Map<String, Iterable<String>> fieldWarnings;
     private final PluginSettings pluginSettings;
     private Map<String, Object> settingsMap;
 
@@ -56,6 +57,7 @@ public class YaccConfigServlet extends HttpServlet {
 
         fields = new HashMap<>();
         fieldErrors = new HashMap<>();
+        fieldWarnings = new HashMap<>();
     }
 
 
@@ -75,7 +77,10 @@ public class YaccConfigServlet extends HttpServlet {
         Settings settings = repositoryHookService.createSettingsBuilder()
                 .addAll(settingsMap)
                 .build();
-        configValidator.validate(settings, new SettingsValidationErrorsImpl(fieldErrors), null);
+        fieldWarnings.clear();
+        configValidator.validate(settings, new SettingsValidationErrorsImpl(fieldErrors), null,
+                (fieldName, warning) -> fieldWarnings.put(fieldName,
+                        new ArrayList<>(Collections.singletonList(warning))));
     }
 
     private void doGetContinue(HttpServletResponse resp) throws IOException, ServletException {
@@ -93,6 +98,7 @@ public class YaccConfigServlet extends HttpServlet {
 
         log.debug("Config fields: " + fields);
         log.debug("Field errors: " + fieldErrors);
+        log.debug("Field warnings: " + fieldWarnings);
 
         resp.setContentType("text/html;charset=UTF-8");
         try {
@@ -102,6 +108,8 @@ public class YaccConfigServlet extends HttpServlet {
                             .<String, Object>builder()
                             .put("config", fields)
                             .put("errors", fieldErrors)
+                            .put("warnings", fieldWarnings)
+                            .put("metrics", YaccMetrics.snapshot())
                             .build()
             );
         } catch (SoyException e) {
@@ -159,6 +167,12 @@ public class YaccConfigServlet extends HttpServlet {
 
         pluginSettings.put(SETTINGS_MAP, settingsMap);
 
+        // Saved anyway, but shown again so that they are not missed
+        if (fieldWarnings.size() > 0) {
+            doGetContinue(resp);
+            return;
+        }
+
         String redirectUrl;
         redirectUrl = navBuilder.addons().buildRelative();
         log.debug("redirect: " + redirectUrl);
@@ -3,7 +3,6 @@ package com.isroot.stash.plugin;
 import com.atlassian.bitbucket.hook.repository.CommitAddedDetails;
 import com.atlassian.bitbucket.hook.repository.PreRepositoryHookCommitCallback;
 import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
-import com.atlassian.bitbucket.setting.Settings;
 import com.isroot.stash.plugin.errors.YaccError;
 import com.isroot.stash.plugin.errors.YaccErrorBuilder;
 import org.slf4j.Logger;
@@ -11,25 +10,79 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
+ * Checks each commit as it is added. JIRA issues are not looked up per commit; the issue keys
+ * are collected and looked up in batches in the background while further commits are streamed,
+ * then the results are collected once all commits have been seen and mapped back to the commits
+ * that referenced them. Each distinct issue is looked up once per push, as are the project and
+ * application link checks kept in the {@link PushContext}.
+ * <p>
+ * A commit that is pushed to several refs at once is only checked for the first of them. Its
+ * result is reused for the others, unless {@code excludeBranchRegex} treats the other ref's
+ * branch differently, since that is the only part of the check that depends on the branch.
+ * <p>
+ * Commits that are added after the push time budget is exhausted are not checked, and the
+ * budget's {@link PushTimeBudget.ExhaustedPolicy} decides the result if anything was left
+ * unchecked, including refs whose own checks ran out of time before the commits were streamed.
+ *
  * @author Sean Ford
  * @since 2017-05-06
  */
 class YaccHookCommitCallback implements PreRepositoryHookCommitCallback {
     private static final Logger log = LoggerFactory.getLogger(YaccHookCommitCallback.class);
 
-    private final Settings settings;
-    private final YaccService yaccService;
-    private final List<YaccError> errors;
+    /** Most unchecked commits that are listed in an audit. */
+    private static final int MAX_AUDITED_COMMITS = 1000;
 
+    /**
+     * Number of new issue keys that starts a lookup before the end of the push. The same as the
+     * most issues JIRA is asked for in one search, so starting early doesn't add searches.
+     */
+    private static final int LOOKUP_BATCH_SIZE = 50;
+
+    private final PushContext push;
+    private final YaccPolicy policy;
+    private final YaccServiceImpl yaccService;
+    private final JiraService jiraService;
+    private final String pushDescription;
+    private final List<CommitResult> commitResults;
+    private final List<String> uncheckedCommits;
+    private final Set<IssueKey> seenIssues;
+    private final List<IssueKey> pendingIssues;
+    private final List<Lookup> lookups;
+    private final Map<ObjectId, CommitVerdict> verdicts;
+    private final Map<ObjectId, CommitVerdict> excludedBranchVerdicts;
+
+    private int uncheckedCommitCount;
     private RepositoryHookResult result = RepositoryHookResult.accepted();
 
-    public YaccHookCommitCallback(YaccService yaccService, Settings settings) {
-        this.settings = settings;
+    YaccHookCommitCallback(YaccServiceImpl yaccService, JiraService jiraService,
+            PushContext push, String pushDescription) {
+        this.push = push;
+        this.policy = push.getPolicy();
         this.yaccService = yaccService;
-        this.errors = new ArrayList<>();
+        this.jiraService = jiraService;
+        this.pushDescription = pushDescription;
+        this.commitResults = new ArrayList<>();
+        this.uncheckedCommits = new ArrayList<>();
+        this.seenIssues = new HashSet<>();
+        this.pendingIssues = new ArrayList<>();
+        this.lookups = new ArrayList<>();
+        this.verdicts = new HashMap<>();
+        this.excludedBranchVerdicts = new HashMap<>();
     }
 
     @Override
@@ -43,17 +96,61 @@ class YaccHookCommitCallback implements PreRepositoryHookCommitCallback {
             return true;
         }
 
-        YaccCommit yaccCommit = new YaccCommit(commitDetails.getCommit());
+        String refAndCommitId = String.format("%s: %s",
+                commitDetails.getRef().getId(), commitDetails.getCommit().getId());
+
+        PushTimeBudget budget = policy.getPushTimeBudget();
+        if (budget.isExhausted()) {
+            addUncheckedCommit(refAndCommitId);
+
+            // Only an audit needs to know about the rest of the commits
+            return budget.getExhaustedPolicy() == PushTimeBudget.ExhaustedPolicy.AUDIT;
+        }
 
         String branchName = commitDetails.getRef().getDisplayId();
 
-        List<YaccError> commitErrors = yaccService.checkCommit(settings, yaccCommit, branchName);
+        Map<ObjectId, CommitVerdict> branchVerdicts = push.isBranchExcluded(branchName)
+                ? excludedBranchVerdicts : verdicts;
+        ObjectId objectId = ObjectId.parse(commitDetails.getCommit().getId());
+        CommitVerdict verdict = objectId != null ? branchVerdicts.get(objectId) : null;
 
-        for (YaccError e : commitErrors) {
-            String refAndCommitId = String.format("%s: %s",
-                    commitDetails.getRef().getId(), commitDetails.getCommit().getId());
+        List<IssueKey> deferredIssues;
+        List<YaccError> commitErrors;
+        if (verdict != null) {
+            log.debug("commit already checked on another ref");
+            YaccMetrics.increment("push.commits.reused");
 
-            errors.add(e.prependText(refAndCommitId));
+            deferredIssues = verdict.deferredIssues;
+            commitErrors = verdict.errors;
+        } else {
+            YaccCommit yaccCommit = new YaccCommit(commitDetails.getCommit());
+
+            deferredIssues = new ArrayList<>();
+            commitErrors = yaccService.checkCommit(push, yaccCommit, branchName, deferredIssues);
+
+            if (budget.isExhausted()) {
+                if (commitErrors.isEmpty()) {
+                    // The budget ran out part way through this commit, so it may not have been
+                    // fully checked
+                    addUncheckedCommit(refAndCommitId);
+                }
+            } else if (objectId != null) {
+                branchVerdicts.put(objectId, new CommitVerdict(commitErrors, deferredIssues));
+            }
+        }
+
+        if (!commitErrors.isEmpty() || !deferredIssues.isEmpty()) {
+            commitResults.add(new CommitResult(refAndCommitId, commitErrors, deferredIssues));
+        }
+
+        for (IssueKey issueKey : deferredIssues) {
+            if (seenIssues.add(issueKey)) {
+                pendingIssues.add(issueKey);
+            }
+        }
+
+        if (pendingIssues.size() >= LOOKUP_BATCH_SIZE) {
+            startLookup(budget);
         }
 
         return true;
@@ -63,8 +160,43 @@ class YaccHookCommitCallback implements PreRepositoryHookCommitCallback {
     public void onEnd() {
         log.debug("callback onEnd");
 
+        PushTimeBudget budget = policy.getPushTimeBudget();
+
+        Map<IssueKey, List<YaccError>> issueErrors;
+        try (PushTimeBudget.Stage ignored = budget.startStage("jira")) {
+            startLookup(budget);
+            issueErrors = awaitLookups(budget);
+        }
+
+        List<YaccError> errors = new ArrayList<>();
+        Set<IssueKey> uncheckedIssues = new LinkedHashSet<>();
+        for (CommitResult commitResult : commitResults) {
+            List<YaccError> commitErrors = new ArrayList<>(commitResult.errors);
+            for (IssueKey issueKey : commitResult.deferredIssues) {
+                List<YaccError> errorsForIssue = issueErrors.get(issueKey);
+                if (errorsForIssue != null) {
+                    commitErrors.addAll(errorsForIssue);
+                } else {
+                    uncheckedIssues.add(issueKey);
+                }
+            }
+
+            for (YaccError e : commitErrors) {
+                errors.add(e.prependText(commitResult.refAndCommitId));
+            }
+        }
+
+        budget.recordMetrics();
+        log.debug("push {} checked in {} ms: {}", pushDescription, budget.getElapsedMillis(),
+                budget.describeStages());
+
+        if (uncheckedCommitCount > 0 || !uncheckedIssues.isEmpty()
+                || !budget.getUncheckedRefs().isEmpty()) {
+            handleExhaustedBudget(budget, uncheckedIssues, errors);
+        }
+
         if (!errors.isEmpty()) {
-            YaccErrorBuilder errorBuilder = new YaccErrorBuilder(settings);
+            YaccErrorBuilder errorBuilder = new YaccErrorBuilder(policy.getSettings());
             String message = errorBuilder.getErrorMessage(errors);
 
             result = RepositoryHookResult.rejected("Push rejected by YACC", message);
@@ -76,4 +208,209 @@ class YaccHookCommitCallback implements PreRepositoryHookCommitCallback {
     public RepositoryHookResult getResult() {
         return result;
     }
+
+    private void addUncheckedCommit(String refAndCommitId) {
+        uncheckedCommitCount++;
+
+        if (uncheckedCommits.size() < MAX_AUDITED_COMMITS) {
+            uncheckedCommits.add(refAndCommitId);
+        }
+    }
+
+    private void handleExhaustedBudget(PushTimeBudget budget, Collection<IssueKey> uncheckedIssues,
+            List<YaccError> errors) {
+        String budgetDescription = String.format("%d ms budget, %s", budget.getBudgetMillis(),
+                budget.describeStages());
+        List<String> uncheckedRefs = budget.getUncheckedRefs();
+
+        switch (budget.getExhaustedPolicy()) {
+            case ACCEPT:
+                log.warn("push {} accepted without checking {} refs, {} commits and {} JIRA "
+                                + "issues ({})", pushDescription, uncheckedRefs.size(),
+                        uncheckedCommitCount, uncheckedIssues.size(), budgetDescription);
+                YaccMetrics.increment("push.budget.accepted");
+                break;
+
+            case AUDIT:
+                log.warn("push {} accepted without checking {} refs, {} commits and {} JIRA "
+                                + "issues ({}), queued for audit", pushDescription,
+                        uncheckedRefs.size(), uncheckedCommitCount, uncheckedIssues.size(),
+                        budgetDescription);
+                YaccMetrics.increment("push.budget.accepted");
+                PushAuditQueue.getInstance().submit(new PushAuditQueue.Entry(pushDescription,
+                        budgetDescription, uncheckedRefs, uncheckedCommits, uncheckedCommitCount,
+                        uncheckedIssues));
+                break;
+
+            default:
+                YaccMetrics.increment("push.budget.rejected");
+                errors.add(getExhaustedBudgetError(budget));
+                break;
+        }
+    }
+
+    /**
+     * Return the error that rejects a push that could not be checked within its budget.
+     */
+    static YaccError getExhaustedBudgetError(PushTimeBudget budget) {
+        return new YaccError(String.format("YACC could not finish checking this push within %d ms "
+                        + "(%s). Push fewer commits at a time, or ask an administrator to raise "
+                        + "the push time budget.", budget.getBudgetMillis(),
+                budget.describeStages()));
+    }
+
+    /**
+     * Start looking up the pending issue keys in the background. Keys are left unchecked if the
+     * budget is exhausted.
+     */
+    private void startLookup(PushTimeBudget budget) {
+        if (pendingIssues.isEmpty() || budget.isExhausted()) {
+            return;
+        }
+
+        log.debug("starting lookup of {} JIRA issues", pendingIssues.size());
+
+        List<IssueKey> issueKeys = new ArrayList<>(pendingIssues);
+        lookups.add(new Lookup(issueKeys, jiraService.async().checkIssues(issueKeys,
+                policy.getIssueJqlMatcher(), budget)));
+        pendingIssues.clear();
+    }
+
+    /**
+     * Wait for the started lookups, for no longer than the lookup timeout of the JIRA service
+     * each, or than the rest of the budget. Issues of lookups that don't finish within the budget
+     * are left out of the result. Issues of lookups that fail, or don't finish within the lookup
+     * timeout, get the same errors as an issue whose JIRA request failed.
+     */
+    private Map<IssueKey, List<YaccError>> awaitLookups(PushTimeBudget budget) {
+        log.debug("waiting for {} JIRA lookups of {} distinct issues for {} commits",
+                lookups.size(), seenIssues.size(), commitResults.size());
+
+        Map<IssueKey, List<YaccError>> issueErrors = new HashMap<>();
+        AsyncJiraService asyncJiraService = jiraService.async();
+
+        for (Lookup lookup : lookups) {
+            long timeoutMillis = asyncJiraService.getTimeoutMillis();
+            boolean limitedByBudget = budget.isLimited()
+                    && budget.getRemainingMillis() <= timeoutMillis;
+            if (limitedByBudget) {
+                timeoutMillis = budget.getRemainingMillis();
+            }
+
+            try {
+                issueErrors.putAll(lookup.result.get(timeoutMillis, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                lookup.result.cancel(false);
+
+                if (limitedByBudget) {
+                    log.debug("JIRA lookup did not finish within the push time budget");
+                } else {
+                    log.warn("JIRA lookup of {} issues did not finish within {} ms",
+                            lookup.issueKeys.size(), timeoutMillis);
+                    addFailedLookupErrors(asyncJiraService, lookup, e, issueErrors);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("interrupted while waiting for JIRA lookups");
+                break;
+            } catch (ExecutionException e) {
+                log.error("JIRA lookup of {} issues failed", lookup.issueKeys.size(), e.getCause());
+                addFailedLookupErrors(asyncJiraService, lookup, e.getCause(), issueErrors);
+            }
+        }
+
+        return issueErrors;
+    }
+
+    private static void addFailedLookupErrors(AsyncJiraService asyncJiraService, Lookup lookup,
+            Throwable cause, Map<IssueKey, List<YaccError>> issueErrors) {
+        for (IssueKey issueKey : lookup.issueKeys) {
+            issueErrors.put(issueKey, asyncJiraService.getFailedLookupErrors(issueKey, cause));
+        }
+    }
+
+    /**
+     * A started lookup, with the issues it looks up.
+     */
+    private static class Lookup {
+        private final List<IssueKey> issueKeys;
+        private final CompletableFuture<Map<IssueKey, List<YaccError>>> result;
+
+        Lookup(List<IssueKey> issueKeys, CompletableFuture<Map<IssueKey, List<YaccError>>> result) {
+            this.issueKeys = issueKeys;
+            this.result = result;
+        }
+    }
+
+    /**
+     * The result of checking a commit, which is the same on every ref whose branch is treated
+     * the same by {@code excludeBranchRegex}.
+     */
+    private static class CommitVerdict {
+        private final List<YaccError> errors;
+        private final List<IssueKey> deferredIssues;
+
+        CommitVerdict(List<YaccError> errors, List<IssueKey> deferredIssues) {
+            this.errors = errors;
+            this.deferredIssues = deferredIssues;
+        }
+    }
+
+    /**
+     * A commit id as the bytes of the object id, which takes half the memory of the hex string.
+     */
+    private static final class ObjectId {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private ObjectId(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        /**
+         * Return the object id of a hex commit id, or null if it isn't one.
+         */
+        static ObjectId parse(String id) {
+            if (id == null || id.isEmpty() || id.length() % 2 != 0) {
+                return null;
+            }
+
+            byte[] bytes = new byte[id.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                int high = Character.digit(id.charAt(2 * i), 16);
+                int low = Character.digit(id.charAt(2 * i + 1), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+
+                bytes[i] = (byte) (high << 4 | low);
+            }
+
+            return new ObjectId(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof ObjectId && Arrays.equals(bytes, ((ObjectId) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class CommitResult {
+        private final String refAndCommitId;
+        private final List<YaccError> errors;
+        private final List<IssueKey> deferredIssues;
+
+        CommitResult(String refAndCommitId, List<YaccError> errors,
+                List<IssueKey> deferredIssues) {
+            this.refAndCommitId = refAndCommitId;
+            this.errors = errors;
+            this.deferredIssues = deferredIssues;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.isroot.stash.plugin;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide counters describing what YACC has been doing, such as regex timeouts or cache
+ * hit rates. Values are kept in memory only and reset when the plugin is restarted.
+ *
+ * @since 2026-10-18
+ */
+public final class YaccMetrics {
+    private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private YaccMetrics() {
+    }
+
+    public static void increment(@Nonnull String name) {
+        add(name, 1);
+    }
+
+    public static void add(@Nonnull String name, long delta) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public static long get(@Nonnull String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter != null) {
+            return counter.get();
+        }
+
+        LongSupplier gauge = gauges.get(name);
+        return gauge != null ? gauge.getAsLong() : 0;
+    }
+
+    /**
+     * Register a value that is computed when metrics are read, for example the size of a cache.
+     * Registering the same name again replaces the previous gauge.
+     */
+    public static void registerGauge(@Nonnull String name, @Nonnull LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Return all counters and gauges sorted by name.
+     */
+    @Nonnull
+    public static SortedMap<String, Long> snapshot() {
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+
+        return Collections.unmodifiableSortedMap(snapshot);
+    }
+
+    /**
+     * Reset all counters to zero. Gauges are left registered.
+     */
+    public static void reset() {
+        counters.clear();
+    }
+}
@@ -0,0 +1,345 @@
+package com.isroot.stash.plugin;
+
+import com.atlassian.bitbucket.setting.Settings;
+import com.google.common.collect.ImmutableSet;
+import com.isroot.stash.plugin.regex.CompiledRegex;
+import com.isroot.stash.plugin.regex.JdkRegex;
+import com.isroot.stash.plugin.regex.LinearRegex;
+import com.isroot.stash.plugin.regex.PatternCache;
+import com.isroot.stash.plugin.regex.RegexTimeoutException;
+import com.isroot.stash.plugin.regex.TimeLimitedCharSequence;
+import com.isroot.stash.plugin.regex.UnsupportedRegexException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Immutable, pre-compiled view of the YACC hook {@link Settings}.
+ * <p>
+ * Reading settings and compiling regexes is cheap for a single commit but adds up quickly on
+ * large pushes, so a policy is built once per push and then shared by all of the checks run for
+ * that push. The policy also carries the {@link PushTimeBudget} of that push, which is the only
+ * part of it that changes.
+ *
+ * @since 2026-10-18
+ */
+public class YaccPolicy {
+    private static final Logger log = LoggerFactory.getLogger(YaccPolicy.class);
+
+    /**
+     * Default time budget for a single regex evaluation.
+     */
+    public static final long DEFAULT_REGEX_TIMEOUT_MILLIS = 1000;
+
+    private final Settings settings;
+
+    private final boolean requireMatchingAuthorEmail;
+    private final boolean requireMatchingAuthorName;
+    private final boolean requireJiraIssue;
+    private final boolean ignoreUnknownIssueProjectKeys;
+    private final boolean excludeMergeCommits;
+    private final boolean excludeServiceUserCommits;
+
+    private final boolean useLinearRegexEngine;
+
+    private final CompiledRegex commitMessagePattern;
+    private final CompiledRegex committerEmailPattern;
+    private final CompiledRegex excludeByPattern;
+    private final CompiledRegex excludeBranchPattern;
+    private final CompiledRegex branchNamePattern;
+
+    private final Set<String> excludeUsers;
+    private final String issueJqlMatcher;
+
+    private final long regexTimeoutMillis;
+    private final boolean acceptOnRegexTimeout;
+
+    private final PushTimeBudget pushTimeBudget;
+
+    public YaccPolicy(@Nonnull Settings settings) {
+        this.settings = settings;
+
+        requireMatchingAuthorEmail = settings.getBoolean("requireMatchingAuthorEmail", false);
+        requireMatchingAuthorName = settings.getBoolean("requireMatchingAuthorName", false);
+        requireJiraIssue = settings.getBoolean("requireJiraIssue", false);
+        ignoreUnknownIssueProjectKeys = settings.getBoolean("ignoreUnknownIssueProjectKeys", false);
+        excludeMergeCommits = settings.getBoolean("excludeMergeCommits", false);
+        excludeServiceUserCommits = settings.getBoolean("excludeServiceUserCommits", false);
+
+        useLinearRegexEngine = settings.getBoolean("useLinearRegexEngine", false);
+
+        commitMessagePattern = compile("commitMessageRegex", settings.getString("commitMessageRegex"),
+                Pattern.MULTILINE);
+        committerEmailPattern = compile("committerEmailRegex",
+                settings.getString("committerEmailRegex"), Pattern.MULTILINE);
+        excludeByPattern = compile("excludeByRegex", settings.getString("excludeByRegex"), 0);
+        excludeBranchPattern = compile("excludeBranchRegex", settings.getString("excludeBranchRegex"), 0);
+        branchNamePattern = compile("branchNameRegex", settings.getString("branchNameRegex"), 0);
+
+        excludeUsers = parseExcludeUsers(settings.getString("excludeUsers"));
+
+        String jql = settings.getString("issueJqlMatcher");
+        issueJqlMatcher = isNullOrEmpty(jql) ? null : jql;
+
+        regexTimeoutMillis = getRegexTimeoutMillis(settings);
+        acceptOnRegexTimeout = settings.getBoolean("acceptOnRegexTimeout", false);
+
+        // Starts now, since a policy is built when a push starts being checked
+        pushTimeBudget = new PushTimeBudget(getPushTimeBudgetMillis(settings),
+                PushTimeBudget.ExhaustedPolicy.parse(settings.getString("pushTimeBudgetPolicy")));
+    }
+
+    /**
+     * Return the configured regex time budget in milliseconds. Zero means no budget. Invalid
+     * values fall back to {@link #DEFAULT_REGEX_TIMEOUT_MILLIS}; {@link ConfigValidator} prevents
+     * them from being saved.
+     */
+    public static long getRegexTimeoutMillis(@Nonnull Settings settings) {
+        return getMillis(settings, "regexTimeoutMillis", DEFAULT_REGEX_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Return the configured time budget for checking a whole push in milliseconds. Zero, the
+     * default, means no budget.
+     */
+    public static long getPushTimeBudgetMillis(@Nonnull Settings settings) {
+        return getMillis(settings, "pushTimeBudgetMillis", 0);
+    }
+
+    private static long getMillis(Settings settings, String key, long defaultMillis) {
+        Map<String, Object> values = settings.asMap();
+        Object value = values != null ? values.get(key) : null;
+
+        if (value instanceof Number) {
+            return Math.max(0, ((Number) value).longValue());
+        }
+
+        if (value instanceof String && !((String) value).trim().isEmpty()) {
+            try {
+                return Math.max(0, Long.parseLong(((String) value).trim()));
+            } catch (NumberFormatException e) {
+                return defaultMillis;
+            }
+        }
+
+        return defaultMillis;
+    }
+
+    @Nullable
+    private CompiledRegex compile(String setting, @Nullable String regex, int flags) {
+        if (isNullOrEmpty(regex)) {
+            return null;
+        }
+
+        // Compile with the JDK first so invalid regexes fail the same way for both engines
+        Pattern pattern = PatternCache.getInstance().compile(regex, flags);
+
+        if (useLinearRegexEngine) {
+            try {
+                return LinearRegex.compile(regex, flags);
+            } catch (UnsupportedRegexException e) {
+                log.debug("{} is not supported by the linear regex engine, using java.util.regex: {}",
+                        setting, e.getMessage());
+                YaccMetrics.increment("regex.linear.fallbacks");
+            }
+        }
+
+        return new JdkRegex(pattern);
+    }
+
+    private static Set<String> parseExcludeUsers(@Nullable String excludeUsers) {
+        if (excludeUsers == null) {
+            return ImmutableSet.of();
+        }
+
+        ImmutableSet.Builder<String> users = ImmutableSet.builder();
+        for (String user : excludeUsers.split(",")) {
+            users.add(user.trim());
+        }
+
+        return users.build();
+    }
+
+    /**
+     * Return the settings this policy was built from. Only needed for settings that are read
+     * rarely, like the custom error messages.
+     */
+    @Nonnull
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public boolean isRequireMatchingAuthorEmail() {
+        return requireMatchingAuthorEmail;
+    }
+
+    public boolean isRequireMatchingAuthorName() {
+        return requireMatchingAuthorName;
+    }
+
+    public boolean isRequireJiraIssue() {
+        return requireJiraIssue;
+    }
+
+    public boolean isIgnoreUnknownIssueProjectKeys() {
+        return ignoreUnknownIssueProjectKeys;
+    }
+
+    public boolean isExcludeMergeCommits() {
+        return excludeMergeCommits;
+    }
+
+    public boolean isExcludeServiceUserCommits() {
+        return excludeServiceUserCommits;
+    }
+
+    /**
+     * Return true if regexes should be evaluated with {@link LinearRegex} where possible.
+     */
+    public boolean isUseLinearRegexEngine() {
+        return useLinearRegexEngine;
+    }
+
+    /**
+     * Commit message regex compiled with {@link Pattern#MULTILINE}. The same match is used to
+     * validate messages and to locate the JIRA issue group.
+     */
+    @Nullable
+    public CompiledRegex getCommitMessagePattern() {
+        return commitMessagePattern;
+    }
+
+    @Nullable
+    public CompiledRegex getCommitterEmailPattern() {
+        return committerEmailPattern;
+    }
+
+    @Nullable
+    public CompiledRegex getExcludeByPattern() {
+        return excludeByPattern;
+    }
+
+    @Nullable
+    public CompiledRegex getExcludeBranchPattern() {
+        return excludeBranchPattern;
+    }
+
+    @Nullable
+    public CompiledRegex getBranchNamePattern() {
+        return branchNamePattern;
+    }
+
+    /**
+     * Return the user names listed in the exclude users setting, already trimmed.
+     */
+    @Nonnull
+    public Set<String> getExcludeUsers() {
+        return excludeUsers;
+    }
+
+    /**
+     * Return the issue JQL matcher, or null if one is not configured.
+     */
+    @Nullable
+    public String getIssueJqlMatcher() {
+        return issueJqlMatcher;
+    }
+
+    public long getRegexTimeoutMillis() {
+        return regexTimeoutMillis;
+    }
+
+    /**
+     * Return true if a regex that runs out of time should be treated as passing, false if the
+     * push should be rejected.
+     */
+    public boolean isAcceptOnRegexTimeout() {
+        return acceptOnRegexTimeout;
+    }
+
+    /**
+     * Wrap regex input so that evaluating a regex against it is bounded by the regex time
+     * budget. Each call starts a new budget, so use one wrapper per evaluation.
+     */
+    @Nonnull
+    public CharSequence limit(@Nonnull CharSequence input) {
+        long timeoutMillis = regexTimeoutMillis;
+
+        // A regex may not run past the end of the push time budget either
+        if (pushTimeBudget.isLimited()) {
+            long remainingMillis = pushTimeBudget.getRemainingMillis();
+            timeoutMillis = timeoutMillis > 0 ? Math.min(timeoutMillis, remainingMillis) : remainingMillis;
+        } else if (timeoutMillis <= 0) {
+            return input;
+        }
+
+        return new TimeLimitedCharSequence(input, timeoutMillis);
+    }
+
+    /**
+     * Record that evaluating the regex for {@code setting} ran out of time.
+     *
+     * @return true if the regex should be treated as passing, false if it should be treated as
+     * failing.
+     */
+    public boolean handleRegexTimeout(@Nonnull String setting, @Nonnull RegexTimeoutException e) {
+        if (pushTimeBudget.isExhausted()) {
+            // The push ran out of time rather than the regex, which is handled for the whole push
+            // according to the push time budget policy
+            log.debug("{} stopped because the push time budget is exhausted", setting);
+            return true;
+        }
+
+        log.warn("{} took longer than {} ms to evaluate, acceptOnRegexTimeout={}", setting,
+                e.getBudgetMillis(), acceptOnRegexTimeout);
+
+        YaccMetrics.increment("regex.timeouts");
+        YaccMetrics.increment(acceptOnRegexTimeout ? "regex.timeouts.accepted" : "regex.timeouts.rejected");
+
+        return acceptOnRegexTimeout;
+    }
+
+    /**
+     * Return true if commits on the branch are excluded by {@code excludeBranchRegex}. This is
+     * the only part of checking a commit that depends on the branch, so a commit's result can
+     * be reused on any branch with the same answer.
+     */
+    public boolean isBranchExcluded(String branchName) {
+        log.debug("branch check, excludeBranchRegex={} branchName={}", excludeBranchPattern,
+                branchName);
+
+        if (excludeBranchPattern != null) {
+            try {
+                if (excludeBranchPattern.matches(limit(branchName))) {
+                    log.debug("branch is excluded");
+                    return true;
+                }
+            } catch (RegexTimeoutException e) {
+                return handleRegexTimeout("excludeBranchRegex", e);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the time budget for the push this policy was built for.
+     */
+    @Nonnull
+    public PushTimeBudget getPushTimeBudget() {
+        return pushTimeBudget;
+    }
+
+    @Override
+    public String toString() {
+        return "YaccPolicy{settings=" + settings.asMap() + '}';
+    }
+}
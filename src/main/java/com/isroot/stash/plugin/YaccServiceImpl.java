@@ -20,20 +20,20 @@ import com.google.common.collect.Lists;
 import com.isroot.stash.plugin.checks.BranchNameCheck;
 import com.isroot.stash.plugin.errors.YaccError;
 import com.isroot.stash.plugin.errors.YaccErrorBuilder;
+import com.isroot.stash.plugin.regex.CompiledRegex;
+import com.isroot.stash.plugin.regex.RegexTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-
-import static com.google.common.base.Strings.isNullOrEmpty;
 
 /**
  * @author Sean Ford
@@ -42,6 +42,10 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 public class YaccServiceImpl implements YaccService {
     private static final Logger log = LoggerFactory.getLogger(YaccServiceImpl.class);
 
+    private static final Pattern GIT_CRUD_SPECIAL_CHARACTERS = Pattern.compile("[<>\n]");
+    private static final Pattern GIT_CRUD_LEADING = Pattern.compile("^[\\\\.,:;\"']*");
+    private static final Pattern GIT_CRUD_TRAILING = Pattern.compile("[\\\\.,:;\"']*$");
+
     private final AuthenticationContext stashAuthenticationContext;
     private final JiraService jiraService;
     private final GitRefCommandFactory gitRefCommandFactory;
@@ -59,9 +63,23 @@ public class YaccServiceImpl implements YaccService {
         log.debug("YaccHook preUpdate, registering commit callback. settings={}", settings);
 
         Repository repository = repositoryPushHookRequest.getRepository();
+        YaccPolicy policy = new YaccPolicy(settings);
 
-        List<YaccError> errors = checkRefs(repository, settings,
+        List<YaccError> errors = checkRefs(repository, policy,
                 repositoryPushHookRequest.getRefChanges());
+
+        PushTimeBudget budget = policy.getPushTimeBudget();
+        if (errors.isEmpty() && !budget.getUncheckedRefs().isEmpty()
+                && budget.getExhaustedPolicy() == PushTimeBudget.ExhaustedPolicy.REJECT) {
+            // Accepting instead is left to the commit callback, which also knows about the
+            // commits that were left unchecked
+            log.debug("push rejected because refs were not checked in time: {}",
+                    budget.getUncheckedRefs());
+            YaccMetrics.increment("push.budget.rejected");
+
+            errors.add(YaccHookCommitCallback.getExhaustedBudgetError(budget));
+        }
+
         if (!errors.isEmpty()) {
             YaccErrorBuilder errorBuilder = new YaccErrorBuilder(settings);
             String message = errorBuilder.getErrorMessage(errors);
@@ -71,15 +89,20 @@ public class YaccServiceImpl implements YaccService {
             return RepositoryHookResult.rejected("Push rejected by YACC", message);
         }
 
+        ApplicationUser user = stashAuthenticationContext.getCurrentUser();
+        String pushDescription = String.format("%s/%s by %s", repository.getProject().getKey(),
+                repository.getSlug(), user != null ? user.getName() : "unknown user");
+
         context.registerCommitCallback(
-                new YaccHookCommitCallback(this, settings),
+                new YaccHookCommitCallback(this, jiraService, new PushContext(policy, jiraService),
+                        pushDescription),
                 RepositoryHookCommitFilter.ADDED_TO_REPOSITORY);
 
         // Will be accepted unless commit callback rejects a commit
         return RepositoryHookResult.accepted();
     }
 
-    private List<YaccError> checkRefs(Repository repository, Settings settings,
+    private List<YaccError> checkRefs(Repository repository, YaccPolicy policy,
             Collection<RefChange> refChanges) {
         List<YaccError> errors = new ArrayList<>();
 
@@ -88,7 +111,7 @@ public class YaccServiceImpl implements YaccService {
                     refChange.getRef(), refChange.getRef().getType(), refChange.getType(),
                     refChange.getFromHash(), refChange.getToHash());
 
-            errors = checkRefChange(repository, settings, refChange);
+            errors = checkRefChange(repository, policy, refChange);
         }
 
         return errors;
@@ -96,13 +119,28 @@ public class YaccServiceImpl implements YaccService {
 
     @Override
     public List<YaccError> checkRefChange(Repository repository, Settings settings, RefChange refChange) {
+        return checkRefChange(repository, new YaccPolicy(settings), refChange);
+    }
+
+    private List<YaccError> checkRefChange(Repository repository, YaccPolicy policy,
+            RefChange refChange) {
         List<YaccError> errors = new ArrayList<>();
 
         if (refChange.getType() == RefChangeType.ADD) {
-            errors.addAll(new BranchNameCheck(settings, refChange.getRef().getId()).check());
+            PushTimeBudget budget = policy.getPushTimeBudget();
+
+            try (PushTimeBudget.Stage stage = budget.startStage("regex")) {
+                errors.addAll(new BranchNameCheck(policy, refChange.getRef().getId()).check());
+            }
 
             if (refChange.getRef().getType() == StandardRefType.TAG) {
-                errors.addAll(checkAnnotatedTag(repository, settings, refChange));
+                errors.addAll(checkAnnotatedTag(repository, policy, refChange));
+            }
+
+            if (errors.isEmpty() && budget.isExhausted()) {
+                // The budget ran out before or while checking the ref, so a regex that was
+                // stopped or tags that were not resolved may have passed it
+                budget.addUncheckedRef(refChange.getRef().getId());
             }
         }
 
@@ -116,29 +154,63 @@ public class YaccServiceImpl implements YaccService {
 
     @Override
     public List<YaccError> checkCommit(Settings settings, YaccCommit commit, String branchName) {
+        return checkCommit(new PushContext(new YaccPolicy(settings), jiraService), commit,
+                branchName, null);
+    }
+
+    /**
+     * Check a commit of the push described by {@code push}.
+     *
+     * @param deferredIssues if not null, JIRA issues are not looked up. Issues that need to be
+     * checked are added to this list instead, so that the caller can check the issues of many
+     * commits at once using {@link JiraService#checkIssues}.
+     */
+    List<YaccError> checkCommit(PushContext push, YaccCommit commit, String branchName,
+            @Nullable List<IssueKey> deferredIssues) {
         log.debug("checking commit id={} name={} email={} message={} branchName={}", commit.getId(),
                 commit.getCommitter().getName(), commit.getCommitter().getEmailAddress(),
                 commit.getMessage(), branchName);
 
+        YaccPolicy policy = push.getPolicy();
         List<YaccError> errors = Lists.newArrayList();
+        PushTimeBudget budget = policy.getPushTimeBudget();
+
+        if (budget.isExhausted()) {
+            log.debug("push time budget exhausted, not checking commit {}", commit.getId());
+            return errors;
+        }
+
+        boolean excluded;
+        String issueText = null;
 
-        errors.addAll(checkCommitter(settings, commit));
+        try (PushTimeBudget.Stage stage = budget.startStage("regex")) {
+            errors.addAll(checkCommitter(policy, commit));
 
-        if (!isCommitExcluded(settings, commit) && !isBranchExcluded(settings, branchName)) {
-            errors.addAll(checkCommitMessageRegex(settings, commit));
+            excluded = isCommitExcluded(policy, commit) || push.isBranchExcluded(branchName);
+            if (!excluded) {
+                issueText = checkCommitMessageRegex(policy, commit, errors);
+            }
+        }
 
-            // Checking JIRA issues might be dependent on the commit message regex, so only proceed if there are no errors.
-            if (errors.isEmpty()) {
-                errors.addAll(checkJiraIssues(settings, commit));
+        // Checking JIRA issues might be dependent on the commit message regex, so only proceed if there are no errors.
+        if (!excluded && errors.isEmpty() && !budget.isExhausted()) {
+            try (PushTimeBudget.Stage stage = budget.startStage("jira")) {
+                errors.addAll(checkJiraIssues(push, issueText, deferredIssues));
             }
         }
 
         return errors;
     }
 
-    private List<YaccError> checkAnnotatedTag(Repository repository, Settings settings,
+    private List<YaccError> checkAnnotatedTag(Repository repository, YaccPolicy policy,
             RefChange refChange) {
         List<YaccError> errors = new ArrayList<>();
+        PushTimeBudget budget = policy.getPushTimeBudget();
+
+        if (budget.isExhausted()) {
+            log.debug("push time budget exhausted, not checking annotated tags");
+            return errors;
+        }
 
         log.info("checking annotated tags");
 
@@ -155,21 +227,23 @@ public class YaccServiceImpl implements YaccService {
 
                 YaccCommit yaccCommit = new YaccCommit(gitAnnotatedTag);
 
-                errors.addAll(checkCommitter(settings, yaccCommit));
+                errors.addAll(checkCommitter(policy, yaccCommit));
 
-                return true;
+                return !budget.isExhausted();
             }
         };
 
-        gitRefCommandFactory.resolveAnnotatedTags(repository, params, callback)
-                .call();
+        try (PushTimeBudget.Stage stage = budget.startStage("tags")) {
+            gitRefCommandFactory.resolveAnnotatedTags(repository, params, callback)
+                    .call();
+        }
 
         return errors;
     }
 
-    private boolean isCommitExcluded(Settings settings, YaccCommit commit) {
+    private boolean isCommitExcluded(YaccPolicy policy, YaccCommit commit) {
         // Exclude Merge Commit setting
-        if (settings.getBoolean("excludeMergeCommits", false) && commit.isMerge()) {
+        if (policy.isExcludeMergeCommits() && commit.isMerge()) {
             log.debug("skipping commit {} because it is a merge commit", commit.getId());
 
             return true;
@@ -177,16 +251,14 @@ public class YaccServiceImpl implements YaccService {
 
         // Exclude by Service User setting
         ApplicationUser stashUser = stashAuthenticationContext.getCurrentUser();
-        if (settings.getBoolean("excludeServiceUserCommits", false) && stashUser.getType() == UserType.SERVICE) {
+        if (policy.isExcludeServiceUserCommits() && stashUser.getType() == UserType.SERVICE) {
             return true;
         }
 
         // Exclude by User setting
         if (stashUser.getType() == UserType.NORMAL) {
-            String excludeUsers = settings.getString("excludeUsers");
-            if (excludeUsers != null) {
-                List<String> excludedUsers = Arrays.asList((excludeUsers.split(","))).stream().map(i -> i.trim()).collect(Collectors.toList());
-
+            Set<String> excludedUsers = policy.getExcludeUsers();
+            if (!excludedUsers.isEmpty()) {
                 log.debug("checking exclude users setting for user {}: {}", stashUser.getName(),
                         excludedUsers);
 
@@ -198,108 +270,116 @@ public class YaccServiceImpl implements YaccService {
         }
 
         // Exclude by Regex setting
-        String excludeRegex = settings.getString("excludeByRegex");
-
-        if (excludeRegex != null && !excludeRegex.isEmpty()) {
-            Pattern pattern = Pattern.compile(excludeRegex);
-            Matcher matcher = pattern.matcher(commit.getMessage());
-            if (matcher.find()) {
-                log.debug("commit excluded because excludeByRegex={} matches", excludeRegex);
-                return true;
-            }
-        }
-
-        return false;
-    }
+        CompiledRegex excludePattern = policy.getExcludeByPattern();
 
-    private boolean isBranchExcluded(Settings settings, String branchName) {
-        // Exclude by Regex setting
-        String excludeBranchRegex = settings.getString("excludeBranchRegex");
-
-        log.debug("branch check, excludeBranchRegex={} branchName={}", excludeBranchRegex,
-                branchName);
-
-        if (excludeBranchRegex != null && !excludeBranchRegex.isEmpty()) {
-            Pattern pattern = Pattern.compile(excludeBranchRegex);
-            Matcher matcher = pattern.matcher(branchName);
-            if (matcher.matches()) {
-                log.debug("branch is excluded");
-                return true;
+        if (excludePattern != null) {
+            try {
+                if (excludePattern.find(policy.limit(commit.getMessage()))) {
+                    log.debug("commit excluded because excludeByRegex={} matches", excludePattern);
+                    return true;
+                }
+            } catch (RegexTimeoutException e) {
+                // Accepting means the commit is excluded, rejecting means checks still apply
+                return policy.handleRegexTimeout("excludeByRegex", e);
             }
         }
 
         return false;
     }
 
-    private List<YaccError> checkCommitMessageRegex(Settings settings, YaccCommit commit) {
-        List<YaccError> errors = Lists.newArrayList();
+    /**
+     * Validate the commit message against the commit message regex, adding any errors to
+     * {@code errors}.
+     * <p>
+     * If the regex has a group, the same match is used to locate JIRA issues, so the message is
+     * only evaluated once.
+     *
+     * @return the text that should be searched for JIRA issues: group 1 of the commit message
+     * regex if present, otherwise the whole message.
+     */
+    private String checkCommitMessageRegex(YaccPolicy policy, YaccCommit commit,
+            List<YaccError> errors) {
+        String message = commit.getMessage();
+
+        CompiledRegex pattern = policy.getCommitMessagePattern();
+        if (pattern != null) {
+            try {
+                boolean matches;
+
+                // Only track groups when they are needed, it is cheaper to just validate
+                if (policy.isRequireJiraIssue() && pattern.groupCount() > 0) {
+                    MatchResult match = pattern.match(policy.limit(message));
+                    matches = match != null;
+
+                    if (matches && match.group(1) != null) {
+                        log.debug("using commitMessageRegex group 1 to locate JIRA issues");
+                        return match.group(1);
+                    }
+                } else {
+                    matches = pattern.matches(policy.limit(message));
+                }
 
-        String regex = settings.getString("commitMessageRegex");
-        if (!isNullOrEmpty(regex)) {
-            Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(commit.getMessage());
-            if (!matcher.matches()) {
-                errors.add(new YaccError(YaccError.Type.COMMIT_REGEX,
-                        "commit message doesn't match regex: " + regex));
+                if (!matches) {
+                    errors.add(new YaccError(YaccError.Type.COMMIT_REGEX,
+                            "commit message doesn't match regex: " + pattern.pattern()));
+                }
+            } catch (RegexTimeoutException e) {
+                if (!policy.handleRegexTimeout("commitMessageRegex", e)) {
+                    errors.add(new YaccError(YaccError.Type.COMMIT_REGEX,
+                            "commit message regex timed out after %d ms: %s",
+                            e.getBudgetMillis(), pattern.pattern()));
+                }
             }
         }
 
-        return errors;
+        return message;
     }
 
-    private List<YaccError> checkCommitterEmailRegex(Settings settings, YaccCommit commit) {
+    private List<YaccError> checkCommitterEmailRegex(YaccPolicy policy, YaccCommit commit) {
         List<YaccError> errors = Lists.newArrayList();
-        String regex = settings.getString("committerEmailRegex");
-        if (!isNullOrEmpty(regex)) {
-            Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(commit.getCommitter().getEmailAddress().toLowerCase());
-            if (!matcher.matches()) {
-                errors.add(new YaccError(YaccError.Type.COMMITTER_EMAIL_REGEX,
-                        String.format("committer email regex '%s' does not match user email '%s'", regex,
-                                commit.getCommitter().getEmailAddress())));
+        CompiledRegex pattern = policy.getCommitterEmailPattern();
+        if (pattern != null) {
+            try {
+                if (!pattern.matches(policy.limit(commit.getCommitter().getEmailAddress().toLowerCase()))) {
+                    errors.add(new YaccError(YaccError.Type.COMMITTER_EMAIL_REGEX,
+                            String.format("committer email regex '%s' does not match user email '%s'", pattern.pattern(),
+                                    commit.getCommitter().getEmailAddress())));
+                }
+            } catch (RegexTimeoutException e) {
+                if (!policy.handleRegexTimeout("committerEmailRegex", e)) {
+                    errors.add(new YaccError(YaccError.Type.COMMITTER_EMAIL_REGEX,
+                            "committer email regex timed out after %d ms: %s",
+                            e.getBudgetMillis(), pattern.pattern()));
+                }
             }
         }
 
         return errors;
     }
 
-    private List<IssueKey> extractJiraIssuesFromCommitMessage(Settings settings, YaccCommit commit) {
-        String message = commit.getMessage();
-
-        // If a commit message regex is present, see if it contains a group 1 that can be used to located JIRA issues.
-        // If not, just ignore it.
-        String regex = settings.getString("commitMessageRegex");
-        if (!isNullOrEmpty(regex)) {
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(message);
-            if (matcher.matches() && matcher.groupCount() > 0) {
-                message = matcher.group(1);
-            }
-        }
-
-        final List<IssueKey> issueKeys = IssueKey.parseIssueKeys(message);
-        log.debug("found jira issues {} from commit message: {}", issueKeys, message);
-
-        return issueKeys;
-    }
+    /**
+     * @param deferredIssues if not null, issues are added to this list rather than looked up.
+     */
+    private List<YaccError> checkJiraIssues(PushContext push, String issueText,
+            @Nullable List<IssueKey> deferredIssues) {
+        YaccPolicy policy = push.getPolicy();
 
-    private List<YaccError> checkJiraIssues(Settings settings, YaccCommit commit) {
-        if (!settings.getBoolean("requireJiraIssue", false)) {
+        if (!policy.isRequireJiraIssue()) {
             return Lists.newArrayList();
         }
 
         List<YaccError> errors = Lists.newArrayList();
 
-        if (!jiraService.doesJiraApplicationLinkExist()) {
+        if (!push.doesJiraApplicationLinkExist()) {
             errors.add(new YaccError("Unable to verify JIRA issue because JIRA Application Link does not exist"));
             return errors;
         }
 
         final List<IssueKey> issues;
-        final List<IssueKey> extractedKeys = extractJiraIssuesFromCommitMessage(settings, commit);
+        final List<IssueKey> extractedKeys = IssueKey.parseIssueKeys(issueText);
+        log.debug("found jira issues {} from commit message: {}", extractedKeys, issueText);
 
-        final boolean ignoreUnknownProjectKeys = settings
-                .getBoolean("ignoreUnknownIssueProjectKeys", false);
+        final boolean ignoreUnknownProjectKeys = policy.isIgnoreUnknownIssueProjectKeys();
 
         log.debug("ignoreUnknownIssueProjectKeys={}", ignoreUnknownProjectKeys);
 
@@ -307,7 +387,12 @@ public class YaccServiceImpl implements YaccService {
             /* Remove issues that contain non-existent project keys */
             issues = Lists.newArrayList();
             for (IssueKey issueKey : extractedKeys) {
-                if (jiraService.doesProjectExist(issueKey)) {
+                if (policy.getPushTimeBudget().isExhausted()) {
+                    // Don't report the issues that weren't checked as missing
+                    return errors;
+                }
+
+                if (push.doesProjectExist(issueKey)) {
                     issues.add(issueKey);
                 }
             }
@@ -315,9 +400,16 @@ public class YaccServiceImpl implements YaccService {
             issues = extractedKeys;
         }
 
-        if (!issues.isEmpty()) {
+        if (!issues.isEmpty() && deferredIssues != null) {
+            deferredIssues.addAll(issues);
+        } else if (!issues.isEmpty()) {
             for (IssueKey issueKey : issues) {
-                errors.addAll(checkJiraIssue(settings, issueKey));
+                if (policy.getPushTimeBudget().isExhausted()) {
+                    break;
+                }
+
+                log.debug("checking JIRA issue={}", issueKey);
+                errors.addAll(push.checkIssue(issueKey));
             }
         } else {
             errors.add(new YaccError(YaccError.Type.NO_JIRA_ISSUE, "No JIRA Issue found in commit message"));
@@ -326,25 +418,7 @@ public class YaccServiceImpl implements YaccService {
         return errors;
     }
 
-    private List<YaccError> checkJiraIssue(Settings settings, IssueKey issueKey) {
-        List<YaccError> errors = Lists.newArrayList();
-
-        log.debug("checking JIRA issue={}", issueKey);
-
-        errors.addAll(jiraService.doesIssueExist(issueKey));
-
-        if (errors.isEmpty()) {
-            String jqlQuery = settings.getString("issueJqlMatcher");
-
-            if (jqlQuery != null && !jqlQuery.isEmpty()) {
-                errors.addAll(jiraService.doesIssueMatchJqlQuery(jqlQuery, issueKey));
-            }
-        }
-
-        return errors;
-    }
-
-    private List<YaccError> checkCommitter(Settings settings, YaccCommit commit) {
+    private List<YaccError> checkCommitter(YaccPolicy policy, YaccCommit commit) {
         List<YaccError> errors = new ArrayList<>();
 
         ApplicationUser stashUser = stashAuthenticationContext.getCurrentUser();
@@ -358,16 +432,16 @@ public class YaccServiceImpl implements YaccService {
             // the ssh access keys use the key comment as the 'name' and don't have emails
             // Neither of these are useful to validate, so just skip them
             if (stashUser.getType() == UserType.NORMAL) {
-                errors.addAll(checkCommitterEmail(settings, commit, stashUser));
-                errors.addAll(checkCommitterName(settings, commit, stashUser));
+                errors.addAll(checkCommitterEmail(policy, commit, stashUser));
+                errors.addAll(checkCommitterName(policy, commit, stashUser));
             }
         }
 
         return errors;
     }
 
-    private List<YaccError> checkCommitterEmail(@Nonnull Settings settings, @Nonnull YaccCommit commit, @Nonnull ApplicationUser stashUser) {
-        final boolean requireMatchingAuthorEmail = settings.getBoolean("requireMatchingAuthorEmail", false);
+    private List<YaccError> checkCommitterEmail(@Nonnull YaccPolicy policy, @Nonnull YaccCommit commit, @Nonnull ApplicationUser stashUser) {
+        final boolean requireMatchingAuthorEmail = policy.isRequireMatchingAuthorEmail();
         List<YaccError> errors = Lists.newArrayList();
 
         // while the email address is not marked as @Nullable, its not @Notnull either
@@ -388,12 +462,12 @@ public class YaccServiceImpl implements YaccService {
                             commit.getCommitter().getEmailAddress())));
         }
 
-        errors.addAll(checkCommitterEmailRegex(settings, commit));
+        errors.addAll(checkCommitterEmailRegex(policy, commit));
         return errors;
     }
 
-    private List<YaccError> checkCommitterName(@Nonnull Settings settings, @Nonnull YaccCommit commit, @Nonnull ApplicationUser stashUser) {
-        final boolean requireMatchingAuthorName = settings.getBoolean("requireMatchingAuthorName", false);
+    private List<YaccError> checkCommitterName(@Nonnull YaccPolicy policy, @Nonnull YaccCommit commit, @Nonnull ApplicationUser stashUser) {
+        final boolean requireMatchingAuthorName = policy.isRequireMatchingAuthorName();
 
         List<YaccError> errors = Lists.newArrayList();
 
@@ -424,16 +498,16 @@ public class YaccServiceImpl implements YaccService {
     private String removeGitCrud(String name) {
         if (name != null) {
             // remove special characters
-            name = name.replaceAll("[<>\n]", "");
+            name = GIT_CRUD_SPECIAL_CHARACTERS.matcher(name).replaceAll("");
 
             // remove leading crud
-            name = name.replaceAll("^[\\\\.,:;\"']*", "");
+            name = GIT_CRUD_LEADING.matcher(name).replaceAll("");
 
             // remove trailing crud
-            name = name.replaceAll("[\\\\.,:;\"']*$", "");
+            name = GIT_CRUD_TRAILING.matcher(name).replaceAll("");
             
             // remove sapce
-            name = name.replaceAll(" ", "");
+            name = name.replace(" ", "");
         }
 
         return name;
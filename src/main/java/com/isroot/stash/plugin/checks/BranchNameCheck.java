@@ -2,14 +2,15 @@ package com.isroot.stash.plugin.checks;
 
 import com.atlassian.bitbucket.scm.git.GitRefPattern;
 import com.atlassian.bitbucket.setting.Settings;
+import com.isroot.stash.plugin.YaccPolicy;
 import com.isroot.stash.plugin.errors.YaccError;
+import com.isroot.stash.plugin.regex.CompiledRegex;
+import com.isroot.stash.plugin.regex.RegexTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author Sean Ford
@@ -18,11 +19,15 @@ import java.util.regex.Pattern;
 public class BranchNameCheck {
     private final static Logger log = LoggerFactory.getLogger(BranchNameCheck.class);
 
-    private final Settings settings;
+    private final YaccPolicy policy;
     private final String refId;
 
     public BranchNameCheck(Settings settings, String refId) {
-        this.settings = settings;
+        this(new YaccPolicy(settings), refId);
+    }
+
+    public BranchNameCheck(YaccPolicy policy, String refId) {
+        this.policy = policy;
         this.refId = refId;
     }
 
@@ -30,35 +35,34 @@ public class BranchNameCheck {
         List<YaccError> errors = new ArrayList<>();
         boolean isBranch = refId.startsWith(GitRefPattern.HEADS.getPath());
 
-        Pattern branchNamePattern = getPattern();
+        CompiledRegex branchNamePattern = policy.getBranchNamePattern();
 
         if (isBranch && branchNamePattern != null) {
             String branchName = refId.replace(GitRefPattern.HEADS.getPath(), "");
-            Matcher matcher = branchNamePattern.matcher(branchName);
 
-            log.debug("checking branch name {} with regex {}, matches={}", branchName, getRegex(),
-                    matcher.matches());
+            boolean matches;
+            try {
+                matches = branchNamePattern.matches(policy.limit(branchName));
+            } catch (RegexTimeoutException e) {
+                if (!policy.handleRegexTimeout("branchNameRegex", e)) {
+                    errors.add(new YaccError(YaccError.Type.BRANCH_NAME,
+                            "Branch name regex timed out after %d ms: %s", e.getBudgetMillis(),
+                            branchNamePattern.pattern()));
+                }
+
+                return errors;
+            }
+
+            log.debug("checking branch name {} with regex {}, matches={}", branchName,
+                    branchNamePattern.pattern(), matches);
 
-            if (!matcher.matches()) {
+            if (!matches) {
                 errors.add(new YaccError(YaccError.Type.BRANCH_NAME,
                         String.format("Invalid branch name. '%s' does not match regex '%s'",
-                                branchName, settings.getString("branchNameRegex"))));
+                                branchName, branchNamePattern.pattern())));
             }
         }
 
         return errors;
     }
-
-    private String getRegex() {
-        return settings.getString("branchNameRegex");
-    }
-
-    private Pattern getPattern() {
-        String regex = getRegex();
-        if (regex == null || regex.isEmpty()) {
-            return null;
-        }
-
-        return Pattern.compile(regex);
-    }
 }
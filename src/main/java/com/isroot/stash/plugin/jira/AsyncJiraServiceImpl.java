@@ -0,0 +1,129 @@
+package com.isroot.stash.plugin.jira;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.isroot.stash.plugin.AsyncJiraService;
+import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.PushTimeBudget;
+import com.isroot.stash.plugin.YaccMetrics;
+import com.isroot.stash.plugin.errors.YaccError;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs {@link JiraServiceImpl} lookups on an executor.
+ * <p>
+ * JIRA requests have to be authenticated as the pushing user, so the executor is expected to run
+ * each lookup as the user that started it, see {@link JiraUserContext#wrap}.
+ *
+ * @since 2026-10-18
+ */
+class AsyncJiraServiceImpl implements AsyncJiraService {
+    private final JiraServiceImpl jiraService;
+    private final ExecutorService executorService;
+    private final Executor executor;
+
+    AsyncJiraServiceImpl(JiraServiceImpl jiraService, ExecutorService executorService,
+            JiraUserContext userContext) {
+        this.jiraService = jiraService;
+        this.executorService = executorService;
+        this.executor = userContext.wrap(executorService);
+    }
+
+    /**
+     * Create the executor for lookups. A pool size of zero, set with
+     * {@link JiraServiceConfig#setAsyncPoolSize(int)}, runs lookups on the calling thread.
+     */
+    static ExecutorService createExecutor(JiraServiceConfig config) {
+        int poolSize = config.getAsyncPoolSize();
+        if (poolSize <= 0) {
+            return MoreExecutors.newDirectExecutorService();
+        }
+
+        return JiraExecutors.create(config, "yacc-jira-async-", poolSize, poolSize * 16);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<List<YaccError>> doesIssueExist(@Nonnull IssueKey issueKey) {
+        checkNotNull(issueKey, "issueKey is null");
+
+        return supply(() -> jiraService.doesIssueExist(issueKey));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<List<YaccError>> doesIssueMatchJqlQuery(@Nonnull String jqlQuery,
+            @Nonnull IssueKey issueKey) {
+        checkNotNull(jqlQuery, "jqlQuery is null");
+        checkNotNull(issueKey, "issueKey is null");
+
+        return supply(() -> jiraService.doesIssueMatchJqlQuery(jqlQuery, issueKey));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> doesProjectExist(@Nonnull IssueKey issueKey) {
+        checkNotNull(issueKey, "issueKey is null");
+
+        return supply(() -> jiraService.doesProjectExist(issueKey));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<List<YaccError>> checkIssue(@Nonnull IssueKey issueKey,
+            @Nullable String jqlQuery) {
+        checkNotNull(issueKey, "issueKey is null");
+
+        return supply(() -> jiraService.checkIssue(issueKey, jqlQuery));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<IssueKey, List<YaccError>>> checkIssues(
+            @Nonnull Collection<IssueKey> issueKeys, @Nullable String jqlQuery,
+            @Nonnull PushTimeBudget budget) {
+        checkNotNull(issueKeys, "issueKeys is null");
+        checkNotNull(budget, "budget is null");
+
+        List<IssueKey> keys = new ArrayList<>(issueKeys);
+
+        return supply(() -> jiraService.checkIssues(keys, jqlQuery, budget));
+    }
+
+    @Override
+    public long getTimeoutMillis() {
+        return jiraService.getRequestTimeoutMillis();
+    }
+
+    @Nonnull
+    @Override
+    public List<YaccError> getFailedLookupErrors(@Nonnull IssueKey issueKey,
+            @Nonnull Throwable cause) {
+        return jiraService.getFailedLookupErrors(issueKey, cause);
+    }
+
+    /**
+     * Stop the lookup threads. Lookups in progress are finished, and lookups started afterwards
+     * are rejected.
+     */
+    void close() {
+        executorService.shutdown();
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> lookup) {
+        YaccMetrics.increment("jira.async.started");
+
+        return CompletableFuture.supplyAsync(lookup, executor);
+    }
+}
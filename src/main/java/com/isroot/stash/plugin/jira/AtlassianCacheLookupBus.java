@@ -0,0 +1,138 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheEntryAdapter;
+import com.atlassian.cache.CacheEntryEvent;
+import com.atlassian.cache.CacheEntryListener;
+import com.atlassian.cache.CacheFactory;
+import com.atlassian.cache.CacheSettingsBuilder;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link JiraLookupCacheBus} for Bitbucket Data Center, carried by a cluster-wide cache.
+ * <p>
+ * Each message is added to a cache that is copied to every node, and delivered by the listeners
+ * of each node as it arrives. Messages are only needed until they are delivered, so they expire
+ * after a minute. The cache is only created once the bus is used, so that nodes caching their
+ * own lookups don't create it at all.
+ * <p>
+ * The cache outlives the plugin, so messages are stored as strings rather than as plugin classes,
+ * which could not be read once the plugin is reloaded.
+ *
+ * @since 2026-10-18
+ */
+class AtlassianCacheLookupBus implements JiraLookupCacheBus {
+    private static final Logger log = LoggerFactory.getLogger(AtlassianCacheLookupBus.class);
+
+    private static final String CACHE_NAME = AtlassianCacheLookupBus.class.getName() + ".messages";
+
+    /**
+     * Separates the fields of a message. None of them can contain it, except the JQL query, which
+     * is always last.
+     */
+    private static final String SEPARATOR = "\n";
+    private static final int LOOKUP_FIELDS = 6;
+
+    private final Supplier<Cache<String, String>> messages;
+    private final Map<Consumer<Message>, CacheEntryListener<String, String>> listeners =
+            new ConcurrentHashMap<>();
+
+    AtlassianCacheLookupBus(@Nonnull CacheFactory cacheFactory) {
+        this.messages = Suppliers.memoize(() -> cacheFactory.getCache(CACHE_NAME, null,
+                new CacheSettingsBuilder()
+                        .remote()
+                        .replicateViaCopy()
+                        .replicateAsynchronously()
+                        .expireAfterWrite(1, TimeUnit.MINUTES)
+                        .unflushable()
+                        .build()));
+    }
+
+    @Override
+    public void publish(@Nonnull Message message) {
+        messages.get().put(UUID.randomUUID().toString(), encode(message));
+    }
+
+    @Override
+    public void subscribe(@Nonnull Consumer<Message> listener) {
+        CacheEntryListener<String, String> cacheListener = new CacheEntryAdapter<String, String>() {
+            @Override
+            public void onAdd(@Nonnull CacheEntryEvent<String, String> event) {
+                Message message = decode(event.getValue());
+                if (message != null) {
+                    listener.accept(message);
+                }
+            }
+        };
+
+        listeners.put(listener, cacheListener);
+        messages.get().addListener(cacheListener, true);
+    }
+
+    @Override
+    public void unsubscribe(@Nonnull Consumer<Message> listener) {
+        CacheEntryListener<String, String> cacheListener = listeners.remove(listener);
+        if (cacheListener != null) {
+            messages.get().removeListener(cacheListener);
+        }
+    }
+
+    private static String encode(Message message) {
+        StringBuilder encoded = new StringBuilder(message.getNodeId());
+
+        JiraLookupLog.Record lookup = message.getLookup();
+        if (lookup != null) {
+            encoded.append(SEPARATOR).append(lookup.getFetchedAtMillis())
+                    .append(SEPARATOR).append(lookup.isFound())
+                    .append(SEPARATOR).append(lookup.getLinkId())
+                    .append(SEPARATOR).append(lookup.getUserKey())
+                    .append(SEPARATOR).append(lookup.getIssueKey());
+
+            if (lookup.getJqlQuery() != null) {
+                encoded.append(SEPARATOR).append(lookup.getJqlQuery());
+            }
+        }
+
+        return encoded.toString();
+    }
+
+    /**
+     * Return the message, or null if it was not written by this version of the plugin.
+     */
+    @Nullable
+    private static Message decode(@Nullable String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        String[] fields = encoded.split(SEPARATOR, LOOKUP_FIELDS + 1);
+        if (fields.length == 1) {
+            return new Message(fields[0], null);
+        }
+
+        if (fields.length < LOOKUP_FIELDS) {
+            log.debug("ignoring JIRA lookup cache message in an unknown format");
+            return null;
+        }
+
+        try {
+            return new Message(fields[0], new JiraLookupLog.Record(fields[3], fields[4], fields[5],
+                    fields.length > LOOKUP_FIELDS ? fields[LOOKUP_FIELDS] : null,
+                    Boolean.parseBoolean(fields[2]), Long.parseLong(fields[1])));
+        } catch (NumberFormatException e) {
+            log.debug("ignoring JIRA lookup cache message in an unknown format");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.applinks.api.ApplicationLinkService;
+import com.atlassian.applinks.api.ReadOnlyApplicationLink;
+import com.atlassian.applinks.api.application.jira.JiraApplicationType;
+import com.google.common.collect.ImmutableList;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * The JIRA application links, loaded once and kept until an application link is added, removed
+ * or changed.
+ * <p>
+ * Request factories are not kept, since they authenticate as the user that created them. They
+ * are created per push by {@link JiraSearchExecutor}.
+ *
+ * @since 2026-10-18
+ */
+class JiraApplicationLinkCache {
+    private static final Logger log = LoggerFactory.getLogger(JiraApplicationLinkCache.class);
+
+    private final ApplicationLinkService applicationLinkService;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Changed by every invalidation, so that a load that overlaps one isn't kept.
+     */
+    private long generation;
+
+    JiraApplicationLinkCache(@Nonnull ApplicationLinkService applicationLinkService) {
+        this.applicationLinkService = applicationLinkService;
+    }
+
+    @Nonnull
+    List<ReadOnlyApplicationLink> getLinks() {
+        return getSnapshot().links;
+    }
+
+    boolean hasPrimaryLink() {
+        return getSnapshot().hasPrimaryLink;
+    }
+
+    /**
+     * Load the links again the next time they are used.
+     */
+    synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+
+        List<ReadOnlyApplicationLink> links = ImmutableList.copyOf(
+                applicationLinkService.getApplicationLinks(JiraApplicationType.class));
+        current = new Snapshot(links, !links.isEmpty()
+                && applicationLinkService.getPrimaryApplicationLink(JiraApplicationType.class) != null);
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                snapshot = current;
+            }
+        }
+
+        YaccMetrics.increment("jira.applicationLinks.loads");
+        log.debug("number of JIRA application links: {}", current.links.size());
+
+        return current;
+    }
+
+    private static final class Snapshot {
+        private final List<ReadOnlyApplicationLink> links;
+        private final boolean hasPrimaryLink;
+
+        private Snapshot(List<ReadOnlyApplicationLink> links, boolean hasPrimaryLink) {
+            this.links = links;
+            this.hasPrimaryLink = hasPrimaryLink;
+        }
+    }
+}
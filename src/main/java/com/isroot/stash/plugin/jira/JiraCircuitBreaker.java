@@ -0,0 +1,122 @@
+package com.isroot.stash.plugin.jira;
+
+import com.google.common.base.Ticker;
+import com.isroot.stash.plugin.YaccMetrics;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Circuit breaker for a single JIRA application link.
+ * <p>
+ * After a number of failed or slow requests in a row the breaker opens, and requests are refused
+ * without contacting JIRA so that pushes don't wait on a JIRA instance that is down. Once the
+ * open interval has passed, a single probe request is let through: if it succeeds the breaker
+ * closes again, otherwise it stays open for another interval.
+ * <p>
+ * Every request that is allowed must be followed by exactly one call to {@link #onSuccess},
+ * {@link #onFailure}, {@link #onCancelled} or {@link #onIgnored}.
+ *
+ * @since 2026-10-18
+ */
+public class JiraCircuitBreaker {
+    private enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final Ticker ticker;
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAtNanos;
+
+    public JiraCircuitBreaker(@Nonnull JiraServiceConfig config) {
+        this(config, Ticker.systemTicker());
+    }
+
+    public JiraCircuitBreaker(@Nonnull JiraServiceConfig config, @Nonnull Ticker ticker) {
+        checkNotNull(config, "config is null");
+        checkNotNull(ticker, "ticker is null");
+
+        this.ticker = ticker;
+        this.failureThreshold = config.getCircuitBreakerFailureThreshold();
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getCircuitBreakerSlowCallMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(config.getCircuitBreakerOpenMillis());
+    }
+
+    /**
+     * Return true if a request may be made, which is always the case when the breaker is closed.
+     */
+    public synchronized boolean allowRequest() {
+        if (failureThreshold <= 0 || state == State.CLOSED) {
+            return true;
+        }
+
+        if (state == State.OPEN && ticker.read() - openedAtNanos >= openNanos) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Record a request that JIRA answered. Requests slower than the slow call limit count as
+     * failures.
+     */
+    public synchronized void onSuccess(long elapsedNanos) {
+        if (slowCallNanos > 0 && elapsedNanos > slowCallNanos) {
+            onFailure();
+            return;
+        }
+
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Record a request that failed because JIRA could not be reached or had a server error.
+     */
+    public synchronized void onFailure() {
+        failures++;
+
+        if (failureThreshold > 0 && (state == State.HALF_OPEN || failures >= failureThreshold)) {
+            if (state != State.OPEN) {
+                YaccMetrics.increment("jira.circuitBreaker.opened");
+            }
+
+            state = State.OPEN;
+            openedAtNanos = ticker.read();
+        }
+    }
+
+    /**
+     * Record a request that was cancelled before JIRA answered. It only counts as a failure if it
+     * had already been running for longer than the slow call limit.
+     */
+    public synchronized void onCancelled(long elapsedNanos) {
+        if (slowCallNanos > 0 && elapsedNanos > slowCallNanos) {
+            onFailure();
+        } else {
+            onIgnored();
+        }
+    }
+
+    /**
+     * Record a request whose outcome says nothing about the health of JIRA, for example because
+     * it was cancelled. A probe that is ignored lets the next request probe instead.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAtNanos = ticker.read() - openNanos;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
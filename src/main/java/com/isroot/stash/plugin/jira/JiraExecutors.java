@@ -0,0 +1,131 @@
+package com.isroot.stash.plugin.jira;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the executors that run outbound JIRA requests, and the single threads that run
+ * background work such as refreshes and syncs.
+ * <p>
+ * JIRA requests spend nearly all of their time blocked on the network. On a JDK with virtual
+ * threads, each task gets its own virtual thread, so there is no pool to size and a parked
+ * request doesn't hold a platform thread. On older JDKs, or if disabled with
+ * {@link JiraServiceConfig#setVirtualThreads(boolean)}, a bounded pool of daemon threads is used
+ * instead, which runs tasks on the calling thread when it is full. The number of requests in
+ * flight is limited by {@link JiraServiceConfig#getMaxConcurrentRequests()} either way.
+ * <p>
+ * The plugin is built for Java 8, so virtual threads are created through reflection.
+ *
+ * @since 2026-10-18
+ */
+final class JiraExecutors {
+    private static final Logger log = LoggerFactory.getLogger(JiraExecutors.class);
+
+    private JiraExecutors() {
+    }
+
+    /**
+     * Create an executor whose threads are named {@code namePrefix} followed by a number.
+     *
+     * @param poolSize      threads in the pool, when virtual threads are not used.
+     * @param queueCapacity tasks queued for the pool before they run on the calling thread.
+     */
+    @Nonnull
+    static ExecutorService create(@Nonnull JiraServiceConfig config, @Nonnull String namePrefix,
+            int poolSize, int queueCapacity) {
+        if (config.isVirtualThreads()) {
+            ExecutorService executor = newVirtualThreadExecutor(namePrefix);
+            if (executor != null) {
+                log.debug("using virtual threads for {}", namePrefix);
+                YaccMetrics.increment("jira.executors.virtual");
+                return executor;
+            }
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat(namePrefix + "%d")
+                        .build(),
+                JiraExecutors::runOnCallingThread);
+        executor.allowCoreThreadTimeOut(true);
+
+        log.debug("using a pool of {} threads for {}", poolSize, namePrefix);
+        YaccMetrics.increment("jira.executors.platform");
+
+        return executor;
+    }
+
+    /**
+     * Same as {@link ThreadPoolExecutor.CallerRunsPolicy}, except a task submitted after the
+     * executor is shut down is rejected rather than silently dropped, so that nobody waits for it.
+     */
+    private static void runOnCallingThread(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("JIRA executor has been shut down");
+        }
+
+        task.run();
+    }
+
+    /**
+     * Create an executor for background work, whose thread is named {@code namePrefix} followed
+     * by a number. Tasks run one at a time, in the order they were submitted.
+     * <p>
+     * A single thread is plenty, and it goes away when idle so nothing is left running if the
+     * plugin is disabled.
+     */
+    @Nonnull
+    static ExecutorService newIdleSingleThreadExecutor(@Nonnull String namePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat(namePrefix + "%d")
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * Return a thread-per-task executor using virtual threads, or null if the JDK doesn't have
+     * them.
+     */
+    @Nullable
+    static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, namePrefix, 0L);
+
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory")
+                    .invoke(builder);
+
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Before Java 21, or a preview feature that is not enabled
+            log.debug("virtual threads are not available: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.isroot.stash.plugin.jira;
+
+import com.isroot.stash.plugin.IssueKey;
+
+import javax.annotation.Nonnull;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Issue keys known to exist on each JIRA application link, for checking issues without asking
+ * JIRA.
+ * <p>
+ * The issue numbers of each project are kept in a bit set, so an index of a million issues
+ * takes about as many bits. Issue keys are never removed, so the index is only suitable where
+ * issues are not deleted. An issue that is not in the index is looked up in JIRA as usual.
+ *
+ * @since 2026-10-18
+ */
+public class JiraIssueIndex {
+    private static final int MAGIC = 0x59414343;
+    private static final int FORMAT_VERSION = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<String, BitSet>> issuesByLink = new HashMap<>();
+    private final Map<String, Map<String, Long>> syncedAtByLink = new HashMap<>();
+
+    /**
+     * Return true if the issue is known to exist on the link.
+     */
+    public boolean contains(@Nonnull String linkId, @Nonnull IssueKey issueKey) {
+        int number = getIssueNumber(issueKey);
+        if (number < 0) {
+            return false;
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<String, BitSet> projects = issuesByLink.get(linkId);
+            BitSet numbers = projects != null ? projects.get(issueKey.getProjectKey()) : null;
+
+            return numbers != null && numbers.get(number);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record that the issues exist on the link.
+     */
+    public void add(@Nonnull String linkId, @Nonnull Iterable<IssueKey> issueKeys) {
+        checkNotNull(linkId, "linkId is null");
+
+        lock.writeLock().lock();
+        try {
+            Map<String, BitSet> projects = issuesByLink.computeIfAbsent(linkId,
+                    id -> new HashMap<>());
+
+            for (IssueKey issueKey : issueKeys) {
+                int number = getIssueNumber(issueKey);
+                if (number >= 0) {
+                    projects.computeIfAbsent(issueKey.getProjectKey(), key -> new BitSet())
+                            .set(number);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return when the project was last synced from the link, in milliseconds since the epoch, or
+     * zero if it never was.
+     */
+    public long getSyncedAtMillis(@Nonnull String linkId, @Nonnull String projectKey) {
+        lock.readLock().lock();
+        try {
+            Map<String, Long> projects = syncedAtByLink.get(linkId);
+            Long syncedAt = projects != null ? projects.get(projectKey) : null;
+
+            return syncedAt != null ? syncedAt : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return when all of the projects were last synced from every link in the index, or zero if
+     * any of them never was.
+     */
+    public long getSyncedAtMillis(@Nonnull Collection<String> projectKeys) {
+        lock.readLock().lock();
+        try {
+            if (syncedAtByLink.isEmpty()) {
+                return 0;
+            }
+
+            long syncedAtMillis = Long.MAX_VALUE;
+            for (Map<String, Long> projects : syncedAtByLink.values()) {
+                for (String projectKey : projectKeys) {
+                    Long syncedAt = projects.get(projectKey);
+                    if (syncedAt == null) {
+                        return 0;
+                    }
+                    syncedAtMillis = Math.min(syncedAtMillis, syncedAt);
+                }
+            }
+
+            return syncedAtMillis == Long.MAX_VALUE ? 0 : syncedAtMillis;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setSyncedAtMillis(@Nonnull String linkId, @Nonnull String projectKey,
+            long syncedAtMillis) {
+        lock.writeLock().lock();
+        try {
+            syncedAtByLink.computeIfAbsent(linkId, id -> new HashMap<>())
+                    .put(projectKey, syncedAtMillis);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return the number of issues in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (Map<String, BitSet> projects : issuesByLink.values()) {
+                for (BitSet numbers : projects.values()) {
+                    size += numbers.cardinality();
+                }
+            }
+
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index in the format read by {@link #readFrom(InputStream)}.
+     */
+    public void writeTo(@Nonnull OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            out.writeInt(issuesByLink.size());
+            for (Map.Entry<String, Map<String, BitSet>> link : issuesByLink.entrySet()) {
+                out.writeUTF(link.getKey());
+                out.writeInt(link.getValue().size());
+
+                for (Map.Entry<String, BitSet> project : link.getValue().entrySet()) {
+                    long[] words = project.getValue().toLongArray();
+
+                    out.writeUTF(project.getKey());
+                    out.writeInt(words.length);
+                    for (long word : words) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+
+            out.writeInt(syncedAtByLink.size());
+            for (Map.Entry<String, Map<String, Long>> link : syncedAtByLink.entrySet()) {
+                out.writeUTF(link.getKey());
+                out.writeInt(link.getValue().size());
+
+                for (Map.Entry<String, Long> project : link.getValue().entrySet()) {
+                    out.writeUTF(project.getKey());
+                    out.writeLong(project.getValue());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Read an index written by {@link #writeTo(OutputStream)}.
+     *
+     * @throws IOException if the index can't be read or was written in another format.
+     */
+    @Nonnull
+    public static JiraIssueIndex readFrom(@Nonnull InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a JIRA issue index");
+        }
+
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported JIRA issue index version " + version);
+        }
+
+        JiraIssueIndex index = new JiraIssueIndex();
+
+        int linkCount = in.readInt();
+        for (int i = 0; i < linkCount; i++) {
+            Map<String, BitSet> projects = new HashMap<>();
+            index.issuesByLink.put(in.readUTF(), projects);
+
+            int projectCount = in.readInt();
+            for (int j = 0; j < projectCount; j++) {
+                String projectKey = in.readUTF();
+
+                long[] words = new long[in.readInt()];
+                for (int k = 0; k < words.length; k++) {
+                    words[k] = in.readLong();
+                }
+
+                projects.put(projectKey, BitSet.valueOf(words));
+            }
+        }
+
+        linkCount = in.readInt();
+        for (int i = 0; i < linkCount; i++) {
+            Map<String, Long> projects = new HashMap<>();
+            index.syncedAtByLink.put(in.readUTF(), projects);
+
+            int projectCount = in.readInt();
+            for (int j = 0; j < projectCount; j++) {
+                projects.put(in.readUTF(), in.readLong());
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Return the issue number, or -1 if it is too large to be indexed.
+     */
+    private static int getIssueNumber(IssueKey issueKey) {
+        try {
+            return Integer.parseInt(issueKey.getIssueId());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
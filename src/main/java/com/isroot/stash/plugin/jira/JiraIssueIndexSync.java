@@ -0,0 +1,267 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.applinks.api.CredentialsRequiredException;
+import com.atlassian.applinks.api.ReadOnlyApplicationLink;
+import com.atlassian.sal.api.net.ResponseException;
+import com.google.common.collect.ImmutableSet;
+import com.isroot.stash.plugin.InvalidIssueKeyException;
+import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a {@link JiraIssueIndex} of the projects configured with
+ * {@link JiraServiceConfig#setIssueIndexProjects(java.util.Collection)} in sync with JIRA, and
+ * saves it to the plugin's data directory so that it survives restarts.
+ * <p>
+ * Like the project key list, the index is synced in the background when it is used and is older
+ * than the sync interval. The first sync of a project loads all of its issue keys; after that
+ * only issues updated since the last sync are loaded.
+ * <p>
+ * There is one index for all users, so it is always synced as the user configured with
+ * {@link JiraServiceConfig#setIssueIndexUser(String)}, and an issue is accepted for any pushing
+ * user if that user can see it. Syncing as whoever pushed would instead let one user's view of
+ * JIRA decide what every later push is checked against. The index is disabled until that user
+ * is configured.
+ *
+ * @since 2026-10-18
+ */
+class JiraIssueIndexSync {
+    private static final Logger log = LoggerFactory.getLogger(JiraIssueIndexSync.class);
+
+    static final String INDEX_FILE_NAME = "jira-issue-index.bin";
+
+    /**
+     * Added to the time since the last sync, to cover issues updated while it ran and clocks
+     * that differ between Bitbucket and JIRA.
+     */
+    private static final long SYNC_OVERLAP_MINUTES = 10;
+
+    private final Set<String> projectKeys;
+    private final String user;
+    private final long syncMillis;
+    private final File indexFile;
+    private final JiraSearchExecutor searchExecutor;
+    private final JiraIssueIndex index;
+    private final ExecutorService syncExecutorService;
+    private final Executor syncExecutor;
+    private final AtomicBoolean syncing = new AtomicBoolean();
+
+    private volatile long lastSyncStartedMillis;
+
+    JiraIssueIndexSync(@Nonnull JiraServiceConfig config, @Nullable File dataDirectory,
+            @Nonnull JiraSearchExecutor searchExecutor, @Nonnull JiraUserContext userContext) {
+        this.projectKeys = ImmutableSet.copyOf(config.getIssueIndexProjects());
+        this.user = config.getIssueIndexUser();
+        this.syncMillis = config.getIssueIndexSyncMillis();
+        this.indexFile = dataDirectory != null ? new File(dataDirectory, INDEX_FILE_NAME) : null;
+        this.searchExecutor = searchExecutor;
+        this.index = isEnabled() ? load(indexFile) : new JiraIssueIndex();
+
+        // After a restart, wait for the sync interval to pass since the saved sync
+        this.lastSyncStartedMillis = index.getSyncedAtMillis(projectKeys);
+
+        this.syncExecutorService = JiraExecutors.newIdleSingleThreadExecutor(
+                "yacc-jira-issue-index-");
+        this.syncExecutor = isEnabled()
+                ? userContext.wrapAs(syncExecutorService, user) : syncExecutorService;
+
+        if (!projectKeys.isEmpty() && user == null) {
+            log.warn("JIRA issue index is disabled, no user to sync it as is configured");
+        }
+
+        if (isEnabled()) {
+            YaccMetrics.registerGauge("jira.issueIndex.issues", index::size);
+        }
+    }
+
+    boolean isEnabled() {
+        return !projectKeys.isEmpty() && user != null;
+    }
+
+    /**
+     * Return true if the issue is known to exist on any of the links, starting a sync if the
+     * index is due for one.
+     */
+    boolean contains(@Nonnull List<ReadOnlyApplicationLink> links, @Nonnull IssueKey issueKey) {
+        if (!projectKeys.contains(issueKey.getProjectKey())) {
+            return false;
+        }
+
+        syncIfStale(links);
+
+        for (ReadOnlyApplicationLink link : links) {
+            if (index.contains(link.getId().get(), issueKey)) {
+                YaccMetrics.increment("jira.issueIndex.hits");
+                return true;
+            }
+        }
+
+        YaccMetrics.increment("jira.issueIndex.misses");
+
+        return false;
+    }
+
+    /**
+     * Stop the sync thread. A sync in progress is finished, and no more are started.
+     */
+    void close() {
+        syncExecutorService.shutdown();
+    }
+
+    private void syncIfStale(List<ReadOnlyApplicationLink> links) {
+        if (System.currentTimeMillis() - lastSyncStartedMillis < syncMillis
+                || !syncing.compareAndSet(false, true)) {
+            return;
+        }
+
+        lastSyncStartedMillis = System.currentTimeMillis();
+
+        try {
+            syncExecutor.execute(() -> {
+                try {
+                    sync(links);
+                } finally {
+                    syncing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down, or the index user does not exist
+            log.debug("not syncing JIRA issue index: {}", e.getMessage());
+            syncing.set(false);
+        }
+    }
+
+    private void sync(List<ReadOnlyApplicationLink> links) {
+        YaccMetrics.increment("jira.issueIndex.syncs");
+
+        boolean changed = false;
+        for (ReadOnlyApplicationLink link : links) {
+            for (String projectKey : projectKeys) {
+                changed |= syncProject(link, projectKey);
+            }
+        }
+
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * Load issues of the project updated since the last sync.
+     *
+     * @return true if the index changed.
+     */
+    private boolean syncProject(ReadOnlyApplicationLink link, String projectKey) {
+        String linkId = link.getId().get();
+        long syncedAtMillis = index.getSyncedAtMillis(linkId, projectKey);
+        long startedAtMillis = System.currentTimeMillis();
+
+        String jql = String.format("project = '%s'", projectKey);
+        if (syncedAtMillis > 0) {
+            // A relative date, since absolute dates are in the time zone of the JIRA user
+            long minutes = TimeUnit.MILLISECONDS.toMinutes(startedAtMillis - syncedAtMillis)
+                    + SYNC_OVERLAP_MINUTES;
+            jql += String.format(" and updated >= -%dm", minutes);
+        }
+        jql += " order by created asc";
+
+        AtomicInteger loaded = new AtomicInteger();
+        try {
+            searchExecutor.searchIssueKeys(link, jql, keys -> {
+                List<IssueKey> issueKeys = new ArrayList<>();
+                for (String key : keys) {
+                    try {
+                        issueKeys.add(new IssueKey(key));
+                    } catch (InvalidIssueKeyException e) {
+                        log.debug("ignoring issue key {} from JIRA", key);
+                    }
+                }
+
+                index.add(linkId, issueKeys);
+                loaded.addAndGet(keys.size());
+            });
+        } catch (CredentialsRequiredException | ResponseException e) {
+            log.debug("unable to sync issues of project {} from JIRA application link '{}'",
+                    projectKey, link.getName(), e);
+
+            YaccMetrics.increment("jira.issueIndex.syncFailures");
+
+            // Issues loaded so far are kept, and the next sync starts from the last one again
+            return loaded.get() > 0;
+        }
+
+        log.debug("synced {} issues of project {} from JIRA application link '{}'", loaded,
+                projectKey, link.getName());
+
+        index.setSyncedAtMillis(linkId, projectKey, startedAtMillis);
+
+        return true;
+    }
+
+    private static JiraIssueIndex load(@Nullable File indexFile) {
+        if (indexFile == null || !indexFile.isFile()) {
+            return new JiraIssueIndex();
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(indexFile.toPath()))) {
+            JiraIssueIndex index = JiraIssueIndex.readFrom(in);
+
+            log.debug("loaded {} issues from {}", index.size(), indexFile);
+
+            return index;
+        } catch (IOException e) {
+            // Synced again from scratch
+            log.warn("unable to read JIRA issue index {}: {}", indexFile, e.toString());
+            return new JiraIssueIndex();
+        }
+    }
+
+    private void save() {
+        if (indexFile == null) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(indexFile.getParentFile().toPath());
+
+            // Written to a temporary file first, so that a crash never leaves a partial index
+            Path tempFile = Files.createTempFile(indexFile.getParentFile().toPath(),
+                    INDEX_FILE_NAME, ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                    index.writeTo(out);
+                }
+
+                Files.move(tempFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            log.warn("unable to save JIRA issue index {}: {}", indexFile, e.toString());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.applinks.api.CredentialsRequiredException;
+import com.atlassian.applinks.api.ReadOnlyApplicationLink;
+import com.atlassian.sal.api.net.ResponseException;
+import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keys of the issues matching each issue JQL matcher, kept up to date in the background so that
+ * issues can be matched without a JIRA search.
+ * <p>
+ * A JQL query is materialized for a user the first time it is checked for them, and dropped
+ * once it hasn't been checked for them for a day. Its set of matching issues is loaded in full,
+ * and after that refreshed every refresh interval with the issues updated since the last
+ * refresh: updated issues that match are added, and updated issues that don't are removed. The set is loaded in full again
+ * every full refresh interval, which also removes issues that stopped matching in ways the
+ * negated query doesn't find, such as a field being cleared.
+ * <p>
+ * Only matches are answered from the sets. An issue that is not in a set may have started
+ * matching since the last refresh, so it is checked with JIRA as usual.
+ * <p>
+ * A query can match different issues for different users, because of issue security or
+ * functions such as {@code currentUser()}, so each user has their own set of a query, loaded
+ * and refreshed as that user. A match is then never accepted for a user that JIRA would not
+ * have given it to. The cost is that a query checked by many users is materialized and
+ * refreshed once per user, and the maximum number of queries counts these sets.
+ *
+ * @since 2026-10-18
+ */
+class JiraJqlMatcherSets {
+    private static final Logger log = LoggerFactory.getLogger(JiraJqlMatcherSets.class);
+
+    private static final long UNUSED_EXPIRY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Added to the time since the last refresh, to cover issues updated while it ran and clocks
+     * that differ between Bitbucket and JIRA.
+     */
+    private static final long REFRESH_OVERLAP_MINUTES = 2;
+
+    /**
+     * By user key and JQL query, see {@link #getMatcherSet(String)}.
+     */
+    private final ConcurrentMap<String, MatcherSet> matcherSets = new ConcurrentHashMap<>();
+    private final long refreshMillis;
+    private final long fullRefreshMillis;
+    private final int maxQueries;
+    private final JiraSearchExecutor searchExecutor;
+    private final JiraUserContext userContext;
+    private final ExecutorService refreshExecutorService;
+    private final Executor refreshExecutor;
+
+    JiraJqlMatcherSets(@Nonnull JiraServiceConfig config, @Nonnull JiraSearchExecutor searchExecutor,
+            @Nonnull JiraUserContext userContext) {
+        this.refreshMillis = config.getJqlMatcherRefreshMillis();
+        this.fullRefreshMillis = config.getJqlMatcherFullRefreshMillis();
+        this.maxQueries = config.getJqlMatcherMaxQueries();
+        this.searchExecutor = searchExecutor;
+        this.userContext = userContext;
+
+        this.refreshExecutorService = JiraExecutors.newIdleSingleThreadExecutor(
+                "yacc-jira-jql-matcher-");
+        this.refreshExecutor = userContext.wrap(refreshExecutorService);
+    }
+
+    boolean isEnabled() {
+        return refreshMillis > 0 && maxQueries > 0;
+    }
+
+    /**
+     * Return true if the issue matched the query for the current user on any of the links as of
+     * the last refresh, starting a refresh if the set of matching issues is due for one.
+     */
+    boolean contains(@Nonnull List<ReadOnlyApplicationLink> links, @Nonnull String jqlQuery,
+            @Nonnull IssueKey issueKey) {
+        MatcherSet matcherSet = getMatcherSet(jqlQuery);
+        if (matcherSet == null) {
+            return false;
+        }
+
+        matcherSet.lastUsedMillis = System.currentTimeMillis();
+        refreshIfStale(links, matcherSet);
+
+        for (ReadOnlyApplicationLink link : links) {
+            Set<String> issueKeys = matcherSet.issueKeysByLink.get(link.getId().get());
+
+            if (issueKeys != null && issueKeys.contains(issueKey.getFullyQualifiedIssueKey())) {
+                YaccMetrics.increment("jira.jqlMatcher.hits");
+                return true;
+            }
+        }
+
+        YaccMetrics.increment("jira.jqlMatcher.misses");
+
+        return false;
+    }
+
+    /**
+     * Stop the refresh thread. A refresh in progress is finished, and no more are started.
+     */
+    void close() {
+        refreshExecutorService.shutdown();
+    }
+
+    /**
+     * Return the set of issues matching the query for the current user, or null if too many
+     * sets are materialized already.
+     */
+    private MatcherSet getMatcherSet(String jqlQuery) {
+        String key = userContext.getCurrentUserKey() + '\n' + jqlQuery;
+        MatcherSet matcherSet = matcherSets.get(key);
+        if (matcherSet != null) {
+            return matcherSet;
+        }
+
+        long now = System.currentTimeMillis();
+        matcherSets.values().removeIf(set -> now - set.lastUsedMillis > UNUSED_EXPIRY_MILLIS);
+
+        if (matcherSets.size() >= maxQueries) {
+            log.debug("not materializing JQL query, {} queries already are: {}", maxQueries,
+                    jqlQuery);
+            return null;
+        }
+
+        return matcherSets.computeIfAbsent(key, k -> new MatcherSet(jqlQuery));
+    }
+
+    private void refreshIfStale(List<ReadOnlyApplicationLink> links, MatcherSet matcherSet) {
+        if (System.currentTimeMillis() - matcherSet.refreshStartedMillis < refreshMillis
+                || !matcherSet.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        matcherSet.refreshStartedMillis = System.currentTimeMillis();
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    for (ReadOnlyApplicationLink link : links) {
+                        refresh(link, matcherSet);
+                    }
+                } finally {
+                    matcherSet.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            matcherSet.refreshing.set(false);
+        }
+    }
+
+    private void refresh(ReadOnlyApplicationLink link, MatcherSet matcherSet) {
+        String linkId = link.getId().get();
+        String jqlQuery = matcherSet.jqlQuery;
+        long startedAtMillis = System.currentTimeMillis();
+        Long refreshedAtMillis = matcherSet.refreshedAtByLink.get(linkId);
+        Long fullRefreshedAtMillis = matcherSet.fullRefreshedAtByLink.get(linkId);
+
+        try {
+            if (refreshedAtMillis == null || fullRefreshedAtMillis == null
+                    || startedAtMillis - fullRefreshedAtMillis >= fullRefreshMillis) {
+                Set<String> issueKeys = new HashSet<>();
+                searchExecutor.searchIssueKeys(link,
+                        String.format("(%s) order by created asc", jqlQuery), issueKeys::addAll);
+
+                // Replaced rather than updated, so lookups never see a partly loaded set
+                Set<String> concurrentKeys = ConcurrentHashMap.newKeySet();
+                concurrentKeys.addAll(issueKeys);
+                matcherSet.issueKeysByLink.put(linkId, concurrentKeys);
+                matcherSet.fullRefreshedAtByLink.put(linkId, startedAtMillis);
+
+                YaccMetrics.increment("jira.jqlMatcher.fullRefreshes");
+
+                log.debug("loaded {} issues matching JQL query on JIRA application link '{}': {}",
+                        issueKeys.size(), link.getName(), jqlQuery);
+            } else {
+                Set<String> issueKeys = matcherSet.issueKeysByLink.get(linkId);
+
+                // A relative date, since absolute dates are in the time zone of the JIRA user
+                String updated = String.format("updated >= -%dm",
+                        TimeUnit.MILLISECONDS.toMinutes(startedAtMillis - refreshedAtMillis)
+                                + REFRESH_OVERLAP_MINUTES);
+
+                searchExecutor.searchIssueKeys(link,
+                        String.format("%s and (%s) order by created asc", updated, jqlQuery),
+                        issueKeys::addAll);
+                searchExecutor.searchIssueKeys(link,
+                        String.format("%s and not (%s) order by created asc", updated, jqlQuery),
+                        issueKeys::removeAll);
+
+                YaccMetrics.increment("jira.jqlMatcher.refreshes");
+            }
+
+            matcherSet.refreshedAtByLink.put(linkId, startedAtMillis);
+        } catch (CredentialsRequiredException | ResponseException e) {
+            log.debug("unable to refresh issues matching JQL query on JIRA application link '{}': {}",
+                    link.getName(), jqlQuery, e);
+
+            YaccMetrics.increment("jira.jqlMatcher.refreshFailures");
+        }
+    }
+
+    private static final class MatcherSet {
+        private final String jqlQuery;
+        private final ConcurrentMap<String, Set<String>> issueKeysByLink = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Long> refreshedAtByLink = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Long> fullRefreshedAtByLink = new ConcurrentHashMap<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+        private volatile long refreshStartedMillis;
+
+        private MatcherSet(String jqlQuery) {
+            this.jqlQuery = jqlQuery;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.isroot.stash.plugin.jira;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Recent response times of a single JIRA application link, used to decide when a search has
+ * taken long enough to be worth hedging.
+ * <p>
+ * Only the most recent responses are kept, so the percentiles follow changes in how fast JIRA
+ * is. Until enough responses have been seen there is no percentile, and searches aren't hedged.
+ *
+ * @since 2026-10-18
+ */
+public class JiraLatencyTracker {
+    private final long[] samples;
+    private final int minSamples;
+
+    private int count;
+    private int next;
+
+    /**
+     * @param maxSamples number of recent responses kept.
+     * @param minSamples number of responses needed before percentiles are given.
+     */
+    public JiraLatencyTracker(int maxSamples, int minSamples) {
+        checkArgument(maxSamples > 0, "maxSamples must be positive");
+        checkArgument(minSamples > 0 && minSamples <= maxSamples,
+                "minSamples must be between 1 and maxSamples");
+
+        this.samples = new long[maxSamples];
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Record how long a successful response took.
+     */
+    public synchronized void record(long elapsedNanos) {
+        samples[next] = elapsedNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * Return the response time that {@code percentile} percent of recent responses were at least
+     * as fast as, or -1 if too few responses have been seen.
+     */
+    public long getPercentileMillis(double percentile) {
+        checkArgument(percentile > 0 && percentile <= 100, "percentile must be in (0, 100]");
+
+        long[] sorted;
+        synchronized (this) {
+            if (count < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+    }
+}
@@ -0,0 +1,354 @@
+package com.isroot.stash.plugin.jira;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.isroot.stash.plugin.InvalidIssueKeyException;
+import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.YaccMetrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded cache of JIRA issue lookups per application link.
+ * <p>
+ * Entries are keyed by application link and issue key for existence checks, and additionally by
+ * JQL query for issue JQL matcher checks. Issues that were found and issues that were not found
+ * have separate TTLs, since an issue that exists almost never disappears but a missing issue is
+ * often created right after a push is rejected. Least recently used entries are evicted once the
+ * cache is full.
+ * <p>
+ * JIRA only finds the issues that the user searching can see, so entries are also keyed by user.
+ * One user not being able to see an issue never rejects the push of another, at the cost of each
+ * user looking an issue up once.
+ * <p>
+ * Only definite answers from JIRA should be cached, never authentication or server errors.
+ * <p>
+ * With a {@link JiraLookupLog}, lookups are also written to disk and reloaded when the cache is
+ * created, keeping the time they were fetched so that they expire as if there had been no
+ * restart.
+ * <p>
+ * With a {@link JiraLookupCacheBus}, lookups are also shared with the caches of the other nodes
+ * of a cluster, which keep them until they would have expired on the node that fetched them.
+ * Clearing the cache clears it on every node.
+ *
+ * @since 2026-10-18
+ */
+public class JiraLookupCache {
+    private final Cache<Key, Entry> cache;
+    private final Ticker ticker;
+    private final long positiveTtlNanos;
+    private final long negativeTtlNanos;
+    private final boolean enabled;
+    private final JiraLookupLog lookupLog;
+    private final JiraLookupCacheBus bus;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Consumer<JiraLookupCacheBus.Message> receiver = this::receive;
+
+    public JiraLookupCache(@Nonnull JiraServiceConfig config) {
+        this(config, Ticker.systemTicker());
+    }
+
+    public JiraLookupCache(@Nonnull JiraServiceConfig config, @Nonnull Ticker ticker) {
+        this(config, ticker, null);
+    }
+
+    public JiraLookupCache(@Nonnull JiraServiceConfig config, @Nonnull Ticker ticker,
+            @Nullable JiraLookupLog lookupLog) {
+        this(config, ticker, lookupLog, null);
+    }
+
+    public JiraLookupCache(@Nonnull JiraServiceConfig config, @Nonnull Ticker ticker,
+            @Nullable JiraLookupLog lookupLog, @Nullable JiraLookupCacheBus bus) {
+        checkNotNull(config, "config is null");
+        checkNotNull(ticker, "ticker is null");
+
+        this.ticker = ticker;
+        this.positiveTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getCachePositiveTtlMillis()));
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getCacheNegativeTtlMillis()));
+        this.enabled = config.getCacheMaxEntries() > 0 && (positiveTtlNanos > 0 || negativeTtlNanos > 0);
+        this.lookupLog = enabled ? lookupLog : null;
+        this.bus = enabled ? bus : null;
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, config.getCacheMaxEntries()))
+                .expireAfterWrite(Math.max(1, Math.max(positiveTtlNanos, negativeTtlNanos)),
+                        TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .removalListener(notification -> {
+                    if (notification.getCause() == RemovalCause.SIZE) {
+                        YaccMetrics.increment("jira.cache.evictions");
+                    }
+                })
+                .build();
+
+        YaccMetrics.registerGauge("jira.cache.size", this::size);
+        YaccMetrics.registerGauge("jira.cache.hitRatePercent", () -> {
+            long hits = YaccMetrics.get("jira.cache.hits");
+            long lookups = hits + YaccMetrics.get("jira.cache.misses");
+            return lookups > 0 ? hits * 100 / lookups : 0;
+        });
+
+        if (this.lookupLog != null) {
+            restore(this.lookupLog.load());
+
+            // Drops expired and replaced records, and any record cut short by a crash
+            this.lookupLog.rewrite(snapshot());
+        }
+
+        if (this.bus != null) {
+            this.bus.subscribe(receiver);
+        }
+    }
+
+    private void restore(List<JiraLookupLog.Record> records) {
+        int restored = 0;
+
+        // Records are oldest first, so later lookups replace earlier ones
+        for (JiraLookupLog.Record record : records) {
+            if (putFetched(record)) {
+                restored++;
+            }
+        }
+
+        YaccMetrics.add("jira.cache.persistent.restored", restored);
+    }
+
+    private void receive(JiraLookupCacheBus.Message message) {
+        if (message.getNodeId().equals(nodeId)) {
+            return;
+        }
+
+        JiraLookupLog.Record lookup = message.getLookup();
+        if (lookup == null) {
+            cache.invalidateAll();
+
+            if (lookupLog != null) {
+                lookupLog.rewrite(snapshot());
+            }
+        } else if (putFetched(lookup)) {
+            YaccMetrics.increment("jira.cache.cluster.received");
+
+            if (lookupLog != null) {
+                lookupLog.append(lookup, this::snapshot);
+            }
+        }
+    }
+
+    /**
+     * Add a lookup fetched earlier, for what is left of its TTL.
+     *
+     * @return false if it has already expired.
+     */
+    private boolean putFetched(JiraLookupLog.Record record) {
+        long ttlNanos = record.isFound() ? positiveTtlNanos : negativeTtlNanos;
+        long ageNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, System.currentTimeMillis() - record.getFetchedAtMillis()));
+
+        if (ageNanos >= ttlNanos) {
+            return false;
+        }
+
+        try {
+            Key key = new Key(record.getLinkId(), record.getUserKey(),
+                    new IssueKey(record.getIssueKey()), record.getJqlQuery());
+
+            // A message from another node may arrive after this node looked the issue up again
+            Entry existing = cache.getIfPresent(key);
+            if (existing != null && existing.fetchedAtMillis > record.getFetchedAtMillis()) {
+                return false;
+            }
+
+            cache.put(key, new Entry(record.isFound(), ticker.read() + ttlNanos - ageNanos,
+                    record.getFetchedAtMillis()));
+            return true;
+        } catch (InvalidIssueKeyException e) {
+            // Not written by this plugin, skip it
+            return false;
+        }
+    }
+
+    /**
+     * Return the current entries, as records for the lookup log.
+     */
+    private Collection<JiraLookupLog.Record> snapshot() {
+        List<JiraLookupLog.Record> records = new ArrayList<>();
+        long nowNanos = ticker.read();
+
+        for (Map.Entry<Key, Entry> entry : cache.asMap().entrySet()) {
+            Key key = entry.getKey();
+            Entry value = entry.getValue();
+
+            if (nowNanos - value.expiresAtNanos < 0) {
+                records.add(new JiraLookupLog.Record(key.linkId, key.userKey,
+                        key.issueKey.getFullyQualifiedIssueKey(), key.jqlQuery, value.found,
+                        value.fetchedAtMillis));
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Return true if the issue was found (and matched {@code jqlQuery} if not null), false if it
+     * was not, or null if there is no unexpired entry.
+     *
+     * @param userKey the user the lookup is made for, see
+     *                {@link JiraUserContext#getCurrentUserKey()}.
+     */
+    @Nullable
+    public Boolean get(@Nonnull String linkId, @Nonnull String userKey, @Nonnull IssueKey issueKey,
+            @Nullable String jqlQuery) {
+        if (!enabled) {
+            return null;
+        }
+
+        Boolean found = peek(linkId, userKey, issueKey, jqlQuery);
+        YaccMetrics.increment(found != null ? "jira.cache.hits" : "jira.cache.misses");
+
+        return found;
+    }
+
+    /**
+     * Same as {@link #get} but not counted in the hit rate.
+     */
+    @Nullable
+    Boolean peek(String linkId, String userKey, IssueKey issueKey, @Nullable String jqlQuery) {
+        if (!enabled) {
+            return null;
+        }
+
+        Key key = new Key(linkId, userKey, issueKey, jqlQuery);
+        Entry entry = cache.getIfPresent(key);
+
+        if (entry != null && ticker.read() - entry.expiresAtNanos >= 0) {
+            cache.invalidate(key);
+            entry = null;
+        }
+
+        return entry != null ? entry.found : null;
+    }
+
+    /**
+     * @param userKey the user the lookup was made for, see
+     *                {@link JiraUserContext#getCurrentUserKey()}.
+     */
+    public void put(@Nonnull String linkId, @Nonnull String userKey, @Nonnull IssueKey issueKey,
+            @Nullable String jqlQuery, boolean found) {
+        long ttlNanos = found ? positiveTtlNanos : negativeTtlNanos;
+        if (!enabled || ttlNanos == 0) {
+            return;
+        }
+
+        long fetchedAtMillis = System.currentTimeMillis();
+        cache.put(new Key(linkId, userKey, issueKey, jqlQuery),
+                new Entry(found, ticker.read() + ttlNanos, fetchedAtMillis));
+
+        if (lookupLog == null && bus == null) {
+            return;
+        }
+
+        JiraLookupLog.Record record = new JiraLookupLog.Record(linkId, userKey,
+                issueKey.getFullyQualifiedIssueKey(), jqlQuery, found, fetchedAtMillis);
+
+        if (lookupLog != null) {
+            lookupLog.append(record, this::snapshot);
+        }
+
+        if (bus != null) {
+            bus.publish(new JiraLookupCacheBus.Message(nodeId, record));
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Stop writing lookups to disk and sharing them with other nodes. The cache keeps working in
+     * memory.
+     */
+    public void close() {
+        if (lookupLog != null) {
+            lookupLog.close();
+        }
+
+        if (bus != null) {
+            bus.unsubscribe(receiver);
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+
+        if (lookupLog != null) {
+            lookupLog.rewrite(snapshot());
+        }
+
+        if (bus != null) {
+            bus.publish(new JiraLookupCacheBus.Message(nodeId, null));
+        }
+    }
+
+    private static final class Entry {
+        private final boolean found;
+        private final long expiresAtNanos;
+        private final long fetchedAtMillis;
+
+        private Entry(boolean found, long expiresAtNanos, long fetchedAtMillis) {
+            this.found = found;
+            this.expiresAtNanos = expiresAtNanos;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
+    private static final class Key {
+        private final String linkId;
+        private final String userKey;
+        private final IssueKey issueKey;
+        private final String jqlQuery;
+
+        private Key(String linkId, String userKey, IssueKey issueKey, String jqlQuery) {
+            this.linkId = checkNotNull(linkId, "linkId is null");
+            this.userKey = checkNotNull(userKey, "userKey is null");
+            this.issueKey = checkNotNull(issueKey, "issueKey is null");
+            this.jqlQuery = jqlQuery;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return linkId.equals(key.linkId) && userKey.equals(key.userKey)
+                    && issueKey.equals(key.issueKey) && Objects.equals(jqlQuery, key.jqlQuery);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = linkId.hashCode();
+            result = 31 * result + userKey.hashCode();
+            result = 31 * result + issueKey.hashCode();
+            result = 31 * result + Objects.hashCode(jqlQuery);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.isroot.stash.plugin.jira;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Carries {@link JiraLookupCache} changes between the nodes of a cluster, so that an issue looked
+ * up on one node is not looked up again on the others.
+ * <p>
+ * Messages are small and serializable. They may be delivered to the node that published them as
+ * well, and may arrive late or not at all; a lost message only means another lookup.
+ *
+ * @since 2026-10-18
+ */
+public interface JiraLookupCacheBus {
+    /**
+     * Send a message to every node.
+     */
+    void publish(@Nonnull Message message);
+
+    /**
+     * Call {@code listener} with every message published from now on.
+     */
+    void subscribe(@Nonnull Consumer<Message> listener);
+
+    /**
+     * Stop calling a listener given to {@link #subscribe}.
+     */
+    void unsubscribe(@Nonnull Consumer<Message> listener);
+
+    /**
+     * A lookup to add to the cache, or without one, a request to clear the cache.
+     */
+    final class Message implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String nodeId;
+        private final JiraLookupLog.Record lookup;
+
+        public Message(@Nonnull String nodeId, @Nullable JiraLookupLog.Record lookup) {
+            this.nodeId = checkNotNull(nodeId, "nodeId is null");
+            this.lookup = lookup;
+        }
+
+        /**
+         * Return the id of the cache that published the message.
+         */
+        @Nonnull
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        /**
+         * Return the lookup to add, or null if the cache should be cleared.
+         */
+        @Nullable
+        public JiraLookupLog.Record getLookup() {
+            return lookup;
+        }
+    }
+}
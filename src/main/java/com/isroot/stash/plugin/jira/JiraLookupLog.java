@@ -0,0 +1,321 @@
+package com.isroot.stash.plugin.jira;
+
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Append-only file of JIRA lookups, so that {@link JiraLookupCache} survives restarts.
+ * <p>
+ * Each lookup is appended as it is cached, with the time it was fetched, so that entries that
+ * are reloaded expire when they would have without the restart. Later records for the same
+ * lookup replace earlier ones. Once the file holds many more records than the cache has entries,
+ * it is compacted in the background by rewriting it with only the cache's current entries.
+ * <p>
+ * Records are written without syncing the file, so the last few lookups before a crash may be
+ * lost, and a record cut short by a crash is ignored. Both only mean a few more lookups after
+ * the restart.
+ * <p>
+ * The log must be {@link #close() closed} when it is no longer used, which closes the file and
+ * stops compacting it.
+ *
+ * @since 2026-10-18
+ */
+public class JiraLookupLog {
+    private static final Logger log = LoggerFactory.getLogger(JiraLookupLog.class);
+
+    private static final int MAGIC = 0x5941434c;
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Longer JQL queries are not written, since records store strings of at most 64 KB.
+     */
+    private static final int MAX_JQL_LENGTH = 8192;
+
+    private final File file;
+    private final int compactThreshold;
+    private final ExecutorService compactExecutor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private DataOutputStream out;
+    private int recordCount;
+    private boolean failed;
+    private boolean closed;
+
+    /**
+     * @param compactThreshold number of records after which the file is compacted.
+     */
+    public JiraLookupLog(@Nonnull File file, int compactThreshold) {
+        this.file = checkNotNull(file, "file is null");
+        this.compactThreshold = compactThreshold;
+
+        this.compactExecutor = JiraExecutors.newIdleSingleThreadExecutor("yacc-jira-lookup-log-");
+    }
+
+    /**
+     * Read every complete record in the file, oldest first.
+     */
+    @Nonnull
+    public synchronized List<Record> load() {
+        List<Record> records = new ArrayList<>();
+        if (!file.isFile()) {
+            return records;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.warn("ignoring JIRA lookup cache {} written in another format", file);
+                return records;
+            }
+
+            while (true) {
+                records.add(Record.readFrom(in));
+            }
+        } catch (EOFException e) {
+            // End of the file, or a record cut short by a crash
+        } catch (IOException e) {
+            log.warn("unable to read JIRA lookup cache {}: {}", file, e.toString());
+        }
+
+        log.debug("loaded {} JIRA lookups from {}", records.size(), file);
+
+        return records;
+    }
+
+    /**
+     * Append a record, compacting the file in the background with the records given by
+     * {@code snapshot} if it has grown too large.
+     */
+    public void append(@Nonnull Record record, @Nonnull Supplier<Collection<Record>> snapshot) {
+        if (record.jqlQuery != null && record.jqlQuery.length() > MAX_JQL_LENGTH) {
+            return;
+        }
+
+        boolean compact;
+        synchronized (this) {
+            if (failed || closed) {
+                return;
+            }
+
+            try {
+                if (out == null) {
+                    open();
+                }
+
+                record.writeTo(out);
+                out.flush();
+                recordCount++;
+            } catch (IOException e) {
+                fail("write to", e);
+                return;
+            }
+
+            compact = recordCount > compactThreshold;
+        }
+
+        if (compact && compacting.compareAndSet(false, true)) {
+            try {
+                compactExecutor.execute(() -> {
+                    try {
+                        rewrite(snapshot.get());
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Replace the contents of the file with {@code records}.
+     */
+    public synchronized void rewrite(@Nonnull Collection<Record> records) {
+        if (failed || closed) {
+            return;
+        }
+
+        try {
+            closeOutput();
+            Files.createDirectories(file.getParentFile().toPath());
+
+            // Written to a temporary file first, so that a crash never loses the whole cache
+            Path tempFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(),
+                    ".tmp");
+            try {
+                try (DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(tempFile)))) {
+                    tempOut.writeInt(MAGIC);
+                    tempOut.writeInt(FORMAT_VERSION);
+
+                    for (Record record : records) {
+                        if (record.jqlQuery == null || record.jqlQuery.length() <= MAX_JQL_LENGTH) {
+                            record.writeTo(tempOut);
+                        }
+                    }
+                }
+
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+
+            recordCount = records.size();
+            YaccMetrics.increment("jira.cache.persistent.compactions");
+
+            log.debug("compacted JIRA lookup cache {} to {} records", file, records.size());
+        } catch (IOException e) {
+            fail("compact", e);
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+
+        boolean writeHeader = !file.isFile() || file.length() == 0;
+
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+        }
+    }
+
+    /**
+     * Close the file and stop compacting it. Records appended afterwards are not written.
+     */
+    public void close() {
+        compactExecutor.shutdown();
+
+        synchronized (this) {
+            closed = true;
+
+            try {
+                closeOutput();
+            } catch (IOException e) {
+                log.debug("unable to close JIRA lookup cache {}", file, e);
+            }
+        }
+    }
+
+    private void closeOutput() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void fail(String action, IOException e) {
+        // Not retried, the cache keeps working in memory
+        log.warn("unable to {} JIRA lookup cache {}, no longer persisting lookups: {}", action,
+                file, e.toString());
+        failed = true;
+
+        try {
+            closeOutput();
+        } catch (IOException closeException) {
+            log.debug("unable to close JIRA lookup cache {}", file, closeException);
+        }
+    }
+
+    /**
+     * A cached lookup.
+     */
+    public static final class Record implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        private final String linkId;
+        private final String userKey;
+        private final String issueKey;
+        private final String jqlQuery;
+        private final boolean found;
+        private final long fetchedAtMillis;
+
+        public Record(@Nonnull String linkId, @Nonnull String userKey, @Nonnull String issueKey,
+                @Nullable String jqlQuery, boolean found, long fetchedAtMillis) {
+            this.linkId = checkNotNull(linkId, "linkId is null");
+            this.userKey = checkNotNull(userKey, "userKey is null");
+            this.issueKey = checkNotNull(issueKey, "issueKey is null");
+            this.jqlQuery = jqlQuery;
+            this.found = found;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        private static Record readFrom(DataInputStream in) throws IOException {
+            long fetchedAtMillis = in.readLong();
+            boolean found = in.readBoolean();
+            String linkId = in.readUTF();
+            String userKey = in.readUTF();
+            String issueKey = in.readUTF();
+            String jqlQuery = in.readBoolean() ? in.readUTF() : null;
+
+            return new Record(linkId, userKey, issueKey, jqlQuery, found, fetchedAtMillis);
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(fetchedAtMillis);
+            out.writeBoolean(found);
+            out.writeUTF(linkId);
+            out.writeUTF(userKey);
+            out.writeUTF(issueKey);
+            out.writeBoolean(jqlQuery != null);
+            if (jqlQuery != null) {
+                out.writeUTF(jqlQuery);
+            }
+        }
+
+        public String getLinkId() {
+            return linkId;
+        }
+
+        public String getUserKey() {
+            return userKey;
+        }
+
+        public String getIssueKey() {
+            return issueKey;
+        }
+
+        @Nullable
+        public String getJqlQuery() {
+            return jqlQuery;
+        }
+
+        public boolean isFound() {
+            return found;
+        }
+
+        public long getFetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+    }
+}
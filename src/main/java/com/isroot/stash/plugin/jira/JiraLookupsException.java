@@ -15,6 +15,7 @@ import java.util.stream.Collectors;
  */
 class JiraLookupsException extends Exception {
     private final Map<ReadOnlyApplicationLink, String> errors = new LinkedHashMap<>();
+    private int unavailableErrors;
 
     public JiraLookupsException() {
 
@@ -27,7 +28,11 @@ class JiraLookupsException extends Exception {
     public void addError(ReadOnlyApplicationLink link, Exception ex) {
         String error;
 
-        if (ex instanceof CredentialsRequiredException) {
+        if (ex instanceof JiraUnavailableException) {
+            error = ex.getMessage();
+            unavailableErrors++;
+        }
+        else if (ex instanceof CredentialsRequiredException) {
             CredentialsRequiredException credentialsRequiredException = (CredentialsRequiredException) ex;
             error = "Could not authenticate. Visit "
                     + credentialsRequiredException.getAuthorisationURI().toASCIIString()
@@ -44,6 +49,14 @@ class JiraLookupsException extends Exception {
         return !errors.isEmpty();
     }
 
+    /**
+     * Return true if every error is a {@link JiraUnavailableException}, meaning that JIRA was
+     * not asked at all. Must be checked before adding messages for other links.
+     */
+    public boolean isUnavailable() {
+        return hasErrors() && unavailableErrors == errors.size();
+    }
+
     public void addMessageForApplicationLinksNotPresent(Iterable<ReadOnlyApplicationLink> links, String message) {
         for (ReadOnlyApplicationLink link : links) {
             if (!errors.containsKey(link)) {
@@ -0,0 +1,182 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.applinks.api.ApplicationLinkRequest;
+import com.atlassian.applinks.api.CredentialsRequiredException;
+import com.atlassian.applinks.api.ReadOnlyApplicationLink;
+import com.atlassian.sal.api.net.Request;
+import com.atlassian.sal.api.net.ResponseException;
+import com.google.common.base.Ticker;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Project keys of each JIRA application link, loaded from JIRA's project list.
+ * <p>
+ * The project list is loaded the first time a link is used and then refreshed in the background
+ * once it is older than the refresh interval, while the old list keeps being used. A project key
+ * that is not in the list, for example one created since the last refresh, is only checked with
+ * JIRA once per refresh interval for each user.
+ * <p>
+ * Projects are listed as the user that triggered the load sees them, and other users may see
+ * more projects, so a key missing from the list is never taken to not exist until JIRA has been
+ * asked for the user checking it.
+ *
+ * @since 2026-10-18
+ */
+class JiraProjectKeyCache {
+    private static final Logger log = LoggerFactory.getLogger(JiraProjectKeyCache.class);
+
+    private static final String PROJECTS_PATH = "/rest/api/2/project";
+
+    private final ConcurrentMap<String, ProjectKeys> projectKeysByLink = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutorService;
+    private final Executor refreshExecutor;
+    private final Ticker ticker;
+    private final long refreshNanos;
+    private final long requestTimeoutMillis;
+
+    JiraProjectKeyCache(JiraServiceConfig config, JiraUserContext userContext) {
+        this.ticker = Ticker.systemTicker();
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(config.getProjectKeysRefreshMillis());
+        this.requestTimeoutMillis = config.getRequestTimeoutMillis();
+
+        this.refreshExecutorService = JiraExecutors.newIdleSingleThreadExecutor(
+                "yacc-jira-project-keys-");
+        this.refreshExecutor = userContext.wrap(refreshExecutorService);
+    }
+
+    boolean isEnabled() {
+        return refreshNanos > 0;
+    }
+
+    /**
+     * Return the project keys of the link, or null if the project list could not be loaded.
+     */
+    @Nullable
+    ProjectKeys getProjectKeys(@Nonnull ReadOnlyApplicationLink link) {
+        String linkId = link.getId().get();
+        ProjectKeys projectKeys = projectKeysByLink.get(linkId);
+
+        if (projectKeys == null) {
+            projectKeys = load(link);
+            projectKeysByLink.put(linkId, projectKeys);
+        } else if (ticker.read() - projectKeys.loadedAtNanos > refreshNanos
+                && projectKeys.refreshing.compareAndSet(false, true)) {
+            refreshInBackground(link, projectKeys);
+        }
+
+        return projectKeys.keys != null ? projectKeys : null;
+    }
+
+    /**
+     * Stop the refresh thread. A refresh in progress is finished, and no more are started.
+     */
+    void close() {
+        refreshExecutorService.shutdown();
+    }
+
+    private void refreshInBackground(ReadOnlyApplicationLink link, ProjectKeys current) {
+        try {
+            refreshExecutor.execute(() -> {
+                ProjectKeys refreshed = load(link);
+
+                // Keep using the old list if JIRA can't be reached, but don't retry until the
+                // next refresh interval
+                projectKeysByLink.put(link.getId().get(),
+                        refreshed.keys != null || current.keys == null ? refreshed
+                                : new ProjectKeys(current.keys, refreshed.loadedAtNanos));
+            });
+        } catch (RejectedExecutionException e) {
+            current.refreshing.set(false);
+        }
+    }
+
+    private ProjectKeys load(ReadOnlyApplicationLink link) {
+        String linkName = link.getName();
+
+        YaccMetrics.increment("jira.projects.loads");
+
+        try {
+            ApplicationLinkRequest req = JiraSearchExecutor.withTimeout(
+                    link.createAuthenticatedRequestFactory().createRequest(Request.MethodType.GET,
+                            PROJECTS_PATH),
+                    requestTimeoutMillis);
+
+            Set<String> keys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            for (JsonElement project : new JsonParser().parse(req.execute()).getAsJsonArray()) {
+                keys.add(project.getAsJsonObject().get("key").getAsString());
+            }
+
+            log.debug("loaded {} project keys from JIRA application link '{}'", keys.size(),
+                    linkName);
+
+            return new ProjectKeys(keys, ticker.read());
+        } catch (CredentialsRequiredException | ResponseException | RuntimeException e) {
+            log.debug("unable to load project keys from JIRA application link '{}'", linkName, e);
+
+            YaccMetrics.increment("jira.projects.loadFailures");
+
+            return new ProjectKeys(null, ticker.read());
+        }
+    }
+
+    static class ProjectKeys {
+        private final Set<String> keys;
+        /**
+         * Unknown project keys checked with JIRA since the list was loaded, as user key, newline,
+         * project key.
+         */
+        private final Set<String> checkedUnknownKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private final long loadedAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private ProjectKeys(@Nullable Set<String> keys, long loadedAtNanos) {
+            this.keys = keys;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+
+        boolean contains(String projectKey) {
+            return keys.contains(projectKey);
+        }
+
+        /**
+         * Record that a project that is not in the list exists after all.
+         */
+        void add(String projectKey) {
+            keys.add(projectKey);
+        }
+
+        /**
+         * Return true if an unknown project key has not been checked with JIRA for the user since
+         * the list was loaded, marking it as checked.
+         *
+         * @param userKey see {@link JiraUserContext#getCurrentUserKey()}.
+         */
+        boolean startUnknownCheck(String userKey, String projectKey) {
+            return checkedUnknownKeys.add(userKey + '\n' + projectKey);
+        }
+
+        /**
+         * Allow an unknown project key to be checked again for the user, because the last check
+         * failed.
+         */
+        void abortUnknownCheck(String userKey, String projectKey) {
+            checkedUnknownKeys.remove(userKey + '\n' + projectKey);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.applinks.api.ApplicationLinkRequest;
+import com.atlassian.applinks.api.ApplicationLinkRequestFactory;
+import com.atlassian.applinks.api.CredentialsRequiredException;
+import com.atlassian.applinks.api.ReadOnlyApplicationLink;
+import com.atlassian.sal.api.net.Request;
+import com.atlassian.sal.api.net.ResponseException;
+import com.atlassian.sal.api.net.ResponseStatusException;
+import com.google.common.base.Throwables;
+import com.google.gson.Gson;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Runs JIRA searches against one or more application links.
+ * <p>
+ * With several links, the search runs on all of them at once on an executor from
+ * {@link JiraExecutors}, so a slow link doesn't delay the others. Searches are abandoned once any
+ * link gives a satisfying response, or once the request timeout has passed. Searches on other
+ * threads are made as the user that started them, see {@link JiraUserContext}.
+ * <p>
+ * Identical searches on the same link for the same user that are in flight at the same time,
+ * for example when the same branch is pushed to several repositories at once, are coalesced into
+ * a single request whose response is shared. JIRA may answer users differently, so searches for
+ * different users are never coalesced.
+ * <p>
+ * Each link has a {@link JiraCircuitBreaker}, and the number of requests in progress across all
+ * links is limited. Requests refused by either fail immediately with a
+ * {@link JiraUnavailableException}.
+ * <p>
+ * If hedging is enabled with {@link JiraServiceConfig#setHedgePercentile(double)}, a request that
+ * is slower than that percentile of recent requests to the link is sent again, and whichever
+ * answers first is used. The second request needs a permit like any other, and is not sent when
+ * the limit is reached.
+ *
+ * @since 2026-10-18
+ */
+class JiraSearchExecutor {
+    private static final Logger log = LoggerFactory.getLogger(JiraSearchExecutor.class);
+
+    private static final String SEARCH_PATH = "/rest/api/2/search";
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Issues per page when loading every issue matching a query. JIRA may return fewer, which
+     * only means more pages.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    private static final List<String> KEY_FIELD = Collections.singletonList("key");
+
+    private static final int LATENCY_SAMPLES = 200;
+    private static final int LATENCY_MIN_SAMPLES = 20;
+
+    private final ConcurrentMap<String, CompletableFuture<JiraSearchResponse>> inFlight =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, JiraCircuitBreaker> circuitBreakers =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, JiraLatencyTracker> latencyTrackers =
+            new ConcurrentHashMap<>();
+    private final JiraServiceConfig config;
+    private final JiraUserContext userContext;
+    private final Semaphore requestPermits;
+    private final ExecutorService executorService;
+    private final ExecutorService hedgeExecutorService;
+    private final Executor executor;
+    private final Executor hedgeExecutor;
+    private final double hedgePercentile;
+    private final boolean sequential;
+    private final long timeoutMillis;
+
+    JiraSearchExecutor(JiraServiceConfig config, JiraUserContext userContext) {
+        int poolSize = Math.max(1, config.getRequestPoolSize());
+
+        this.config = config;
+        this.userContext = userContext;
+        this.sequential = poolSize == 1;
+        this.requestPermits = config.getMaxConcurrentRequests() > 0
+                ? new Semaphore(config.getMaxConcurrentRequests())
+                : null;
+        this.timeoutMillis = config.getRequestTimeoutMillis();
+        this.executorService = JiraExecutors.create(config, "yacc-jira-", poolSize, poolSize * 4);
+        this.executor = userContext.wrap(executorService);
+
+        if (config.getHedgePercentile() > 0 && config.getHedgePercentile() <= 100) {
+            this.hedgePercentile = config.getHedgePercentile();
+            // Separate from the search executor, since its threads wait on hedged requests
+            this.hedgeExecutorService = JiraExecutors.create(config, "yacc-jira-hedge-",
+                    poolSize * 2, poolSize * 8);
+            this.hedgeExecutor = userContext.wrap(hedgeExecutorService);
+        } else {
+            if (config.getHedgePercentile() != 0) {
+                log.warn("ignoring invalid JIRA hedge percentile {}", config.getHedgePercentile());
+            }
+            this.hedgePercentile = 0;
+            this.hedgeExecutorService = null;
+            this.hedgeExecutor = null;
+        }
+
+        if (requestPermits != null) {
+            YaccMetrics.registerGauge("jira.requests.inProgress", () ->
+                    config.getMaxConcurrentRequests() - requestPermits.availablePermits());
+        }
+    }
+
+    /**
+     * Search each link, stopping once a response satisfies {@code isSatisfied}.
+     *
+     * @return results in link order. Links that had not responded when a satisfying response
+     * was found are left out; links that had not responded within the request timeout otherwise
+     * have a {@link ResponseException} as their error.
+     */
+    @Nonnull
+    List<SearchResult> search(@Nonnull List<ReadOnlyApplicationLink> links,
+            @Nonnull Map<String, Object> request, @Nonnull Predicate<JiraSearchResponse> isSatisfied) {
+        if (links.size() == 1 || sequential) {
+            return searchSequentially(links, request, isSatisfied);
+        }
+
+        CompletionService<SearchResult> completionService = new ExecutorCompletionService<>(executor);
+        Map<ReadOnlyApplicationLink, Future<SearchResult>> futures = new LinkedHashMap<>();
+
+        for (ReadOnlyApplicationLink link : links) {
+            futures.put(link, completionService.submit(() -> searchLink(link, request)));
+        }
+
+        Map<ReadOnlyApplicationLink, SearchResult> completed = new HashMap<>();
+        boolean satisfied = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        try {
+            while (completed.size() < futures.size() && !satisfied) {
+                Future<SearchResult> future = completionService.poll(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    break;
+                }
+
+                SearchResult result = getResult(future);
+                completed.put(result.getLink(), result);
+                satisfied = result.getResponse() != null && isSatisfied.test(result.getResponse());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<SearchResult> future : futures.values()) {
+                if (future.cancel(true)) {
+                    YaccMetrics.increment("jira.requests.cancelled");
+                }
+            }
+        }
+
+        List<SearchResult> results = new ArrayList<>();
+        for (ReadOnlyApplicationLink link : links) {
+            SearchResult result = completed.get(link);
+
+            if (result != null) {
+                results.add(result);
+            } else if (!satisfied) {
+                YaccMetrics.increment("jira.requests.timeouts");
+
+                results.add(new SearchResult(link, null, new ResponseException(String.format(
+                        "JIRA did not respond within %d ms", timeoutMillis))));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Search a single link on the calling thread.
+     */
+    @Nonnull
+    JiraSearchResponse search(@Nonnull ReadOnlyApplicationLink link, @Nonnull Map<String, Object> request)
+            throws CredentialsRequiredException, ResponseException {
+        return execute(link, link.createAuthenticatedRequestFactory(), request);
+    }
+
+    /**
+     * Load the keys of every issue matching {@code jql} on a single link, a page at a time,
+     * passing each page to {@code consumer} as it arrives.
+     */
+    void searchIssueKeys(@Nonnull ReadOnlyApplicationLink link, @Nonnull String jql,
+            @Nonnull Consumer<List<String>> consumer)
+            throws CredentialsRequiredException, ResponseException {
+        int loaded = 0;
+
+        while (true) {
+            Map<String, Object> request = new HashMap<>();
+            request.put("jql", jql);
+            request.put("fields", KEY_FIELD);
+            request.put("startAt", loaded);
+            request.put("maxResults", PAGE_SIZE);
+
+            JiraSearchResponse response = search(link, request);
+            consumer.accept(response.getIssueKeys());
+
+            loaded += response.getIssueCount();
+
+            // Without a total, a page that isn't full is the last one
+            boolean more = response.getTotal() >= 0
+                    ? loaded < response.getTotal()
+                    : response.getIssueCount() == PAGE_SIZE;
+            if (response.getIssueCount() == 0 || !more) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop the search threads. Searches in progress are finished, and searches started
+     * afterwards are rejected.
+     */
+    void close() {
+        executorService.shutdown();
+
+        if (hedgeExecutorService != null) {
+            hedgeExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Apply the request timeout from the config to a request.
+     */
+    static ApplicationLinkRequest withTimeout(ApplicationLinkRequest req, long timeoutMillis) {
+        int timeout = (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeoutMillis));
+
+        req.setConnectionTimeout(timeout);
+        req.setSoTimeout(timeout);
+
+        return req;
+    }
+
+    private List<SearchResult> searchSequentially(List<ReadOnlyApplicationLink> links,
+            Map<String, Object> request, Predicate<JiraSearchResponse> isSatisfied) {
+        List<SearchResult> results = new ArrayList<>();
+
+        for (ReadOnlyApplicationLink link : links) {
+            SearchResult result = searchLink(link, request);
+            results.add(result);
+
+            if (result.getResponse() != null && isSatisfied.test(result.getResponse())) {
+                break;
+            }
+        }
+
+        return results;
+    }
+
+    private SearchResult searchLink(ReadOnlyApplicationLink link, Map<String, Object> request) {
+        try {
+            return new SearchResult(link, execute(link, link.createAuthenticatedRequestFactory(),
+                    request), null);
+        } catch (CredentialsRequiredException | ResponseException e) {
+            return new SearchResult(link, null, e);
+        }
+    }
+
+    private JiraSearchResponse execute(ReadOnlyApplicationLink link,
+            ApplicationLinkRequestFactory requestFactory, Map<String, Object> request)
+            throws CredentialsRequiredException, ResponseException {
+        String entity = GSON.toJson(request);
+        String flightKey = link.getId().get() + '\n' + userContext.getCurrentUserKey() + '\n'
+                + entity;
+
+        CompletableFuture<JiraSearchResponse> flight = new CompletableFuture<>();
+        CompletableFuture<JiraSearchResponse> existingFlight = inFlight.putIfAbsent(flightKey, flight);
+
+        if (existingFlight != null) {
+            YaccMetrics.increment("jira.requests.coalesced");
+
+            JiraSearchResponse response = awaitFlight(link, existingFlight);
+            if (response != null) {
+                return response;
+            }
+
+            // Make our own request, but don't coalesce with it as well
+            return execute(link, requestFactory, entity);
+        }
+
+        try {
+            JiraSearchResponse response = execute(link, requestFactory, entity);
+            flight.complete(response);
+            return response;
+        } catch (CredentialsRequiredException | ResponseException | RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled because another link answered first, which says nothing about this
+                // link, so let the waiting searches try again
+                flight.cancel(false);
+            } else {
+                flight.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * Wait for a coalesced search, returning null if it was cancelled or failed in a way that
+     * may not apply to this search.
+     */
+    @Nullable
+    private JiraSearchResponse awaitFlight(ReadOnlyApplicationLink link, CompletableFuture<JiraSearchResponse> flight)
+            throws ResponseException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseException("Interrupted while waiting for JIRA", e);
+        } catch (CancellationException e) {
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof ResponseException) {
+                // Rethrown as is, since callers check the status of ResponseStatusException
+                throw (ResponseException) cause;
+            } else if (cause instanceof CredentialsRequiredException) {
+                // Credentials are per user, so the user of this search may still be able to
+                // authenticate
+                log.debug("coalesced search on JIRA application link '{}' needed credentials",
+                        link.getName());
+                return null;
+            }
+
+            throw Throwables.propagate(cause);
+        }
+    }
+
+    private JiraSearchResponse execute(ReadOnlyApplicationLink link,
+            ApplicationLinkRequestFactory requestFactory, String entity)
+            throws CredentialsRequiredException, ResponseException {
+        if (requestPermits != null && !requestPermits.tryAcquire()) {
+            YaccMetrics.increment("jira.requests.rejected");
+
+            throw new JiraUnavailableException(String.format(
+                    "Too many JIRA requests in progress (limit %d), try again later",
+                    config.getMaxConcurrentRequests()));
+        }
+
+        try {
+            JiraCircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(link.getId().get(),
+                    id -> new JiraCircuitBreaker(config));
+
+            if (!circuitBreaker.allowRequest()) {
+                YaccMetrics.increment("jira.circuitBreaker.rejected");
+
+                throw new JiraUnavailableException(
+                        "JIRA is not responding and requests to it are suspended, try again later");
+            }
+
+            long start = System.nanoTime();
+            try {
+                JiraSearchResponse response = sendHedged(link, requestFactory, entity);
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+                return response;
+            } catch (CredentialsRequiredException e) {
+                circuitBreaker.onIgnored();
+                throw e;
+            } catch (ResponseStatusException e) {
+                // JIRA answered, so only server errors say anything about its health
+                if (e.getResponse().getStatusCode() >= 500) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess(System.nanoTime() - start);
+                }
+                throw e;
+            } catch (ResponseException | RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelled, see search()
+                    circuitBreaker.onCancelled(System.nanoTime() - start);
+                } else {
+                    circuitBreaker.onFailure();
+                }
+                throw e;
+            }
+        } finally {
+            if (requestPermits != null) {
+                requestPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Send a search, sending it again if it is slower than the hedge percentile of recent
+     * searches on the link, and return the first answer.
+     */
+    private JiraSearchResponse sendHedged(ReadOnlyApplicationLink link,
+            ApplicationLinkRequestFactory requestFactory, String entity)
+            throws CredentialsRequiredException, ResponseException {
+        JiraLatencyTracker latencies = latencyTrackers.computeIfAbsent(link.getId().get(),
+                id -> new JiraLatencyTracker(LATENCY_SAMPLES, LATENCY_MIN_SAMPLES));
+
+        long hedgeDelayMillis = getHedgeDelayMillis(latencies);
+        if (hedgeDelayMillis < 0) {
+            return timedSend(link, requestFactory, entity, latencies);
+        }
+
+        CompletionService<JiraSearchResponse> completionService =
+                new ExecutorCompletionService<>(hedgeExecutor);
+        Future<JiraSearchResponse> primary = completionService.submit(() ->
+                timedSend(link, requestFactory, entity, latencies));
+        Future<JiraSearchResponse> hedge = null;
+
+        try {
+            Future<JiraSearchResponse> first = completionService.poll(hedgeDelayMillis,
+                    TimeUnit.MILLISECONDS);
+
+            if (first == null) {
+                hedge = startHedge(completionService, link, requestFactory, entity, latencies);
+
+                // Each request has the request timeout, so this only matters if it isn't honoured
+                first = completionService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    throw new ResponseException(String.format(
+                            "JIRA did not respond within %d ms", timeoutMillis));
+                }
+            }
+
+            JiraSearchResponse response = getResponse(first);
+
+            if (first == hedge) {
+                YaccMetrics.increment("jira.hedges.won");
+            }
+
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseException("Interrupted while waiting for JIRA", e);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Return how long to wait for a search before hedging it, or -1 to not hedge it.
+     */
+    private long getHedgeDelayMillis(JiraLatencyTracker latencies) {
+        if (hedgeExecutor == null) {
+            return -1;
+        }
+
+        long percentileMillis = latencies.getPercentileMillis(hedgePercentile);
+        if (percentileMillis < 0) {
+            return -1;
+        }
+
+        long delayMillis = Math.max(config.getHedgeMinDelayMillis(), percentileMillis);
+
+        // A hedge sent after the request timeout would never be waited for
+        return delayMillis < timeoutMillis ? delayMillis : -1;
+    }
+
+    @Nullable
+    private Future<JiraSearchResponse> startHedge(CompletionService<JiraSearchResponse> completionService,
+            ReadOnlyApplicationLink link, ApplicationLinkRequestFactory requestFactory, String entity,
+            JiraLatencyTracker latencies) {
+        if (requestPermits != null && !requestPermits.tryAcquire()) {
+            YaccMetrics.increment("jira.hedges.skipped");
+            return null;
+        }
+
+        log.debug("search on JIRA application link '{}' is slow, sending it again", link.getName());
+        YaccMetrics.increment("jira.hedges.fired");
+
+        return completionService.submit(() -> {
+            try {
+                return timedSend(link, requestFactory, entity, latencies);
+            } finally {
+                if (requestPermits != null) {
+                    requestPermits.release();
+                }
+            }
+        });
+    }
+
+    private JiraSearchResponse timedSend(ReadOnlyApplicationLink link,
+            ApplicationLinkRequestFactory requestFactory, String entity, JiraLatencyTracker latencies)
+            throws CredentialsRequiredException, ResponseException {
+        long start = System.nanoTime();
+        JiraSearchResponse response = send(link, requestFactory, entity);
+        latencies.record(System.nanoTime() - start);
+
+        return response;
+    }
+
+    private JiraSearchResponse send(ReadOnlyApplicationLink link,
+            ApplicationLinkRequestFactory requestFactory, String entity)
+            throws CredentialsRequiredException, ResponseException {
+        log.debug("executing JQL query on JIRA application link '{}': {}", link.getName(), entity);
+
+        YaccMetrics.increment("jira.requests");
+
+        ApplicationLinkRequest req = withTimeout(requestFactory.createRequest(
+                Request.MethodType.POST, SEARCH_PATH), timeoutMillis);
+
+        req.setHeader("Content-Type", "application/json");
+        req.setEntity(entity);
+
+        return req.executeAndReturn(response -> {
+            if (!response.isSuccessful()) {
+                // Error responses are small, and are only readable while the request is open
+                log.debug("JIRA application link '{}' responded with status {}: {}", link.getName(),
+                        response.getStatusCode(), response.getResponseBodyAsString());
+
+                throw new ResponseStatusException("Unexpected response received. Status code: "
+                        + response.getStatusCode(), response);
+            }
+
+            try {
+                JiraSearchResponse searchResponse = JiraSearchResponse.parse(new InputStreamReader(
+                        response.getResponseBodyAsStream(), StandardCharsets.UTF_8));
+
+                log.debug("search response from JIRA application link '{}': {}", link.getName(),
+                        searchResponse);
+
+                return searchResponse;
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                throw new ResponseException("Unable to read JIRA search response", e);
+            }
+        });
+    }
+
+    private static JiraSearchResponse getResponse(Future<JiraSearchResponse> future)
+            throws CredentialsRequiredException, ResponseException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof ResponseException) {
+                throw (ResponseException) cause;
+            } else if (cause instanceof CredentialsRequiredException) {
+                throw (CredentialsRequiredException) cause;
+            }
+
+            throw Throwables.propagate(cause);
+        }
+    }
+
+    private static SearchResult getResult(Future<SearchResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Checked exceptions are part of the result, so this is a bug or a bad response
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Response or error from searching a single link.
+     */
+    static final class SearchResult {
+        private final ReadOnlyApplicationLink link;
+        private final JiraSearchResponse response;
+        private final Exception error;
+
+        private SearchResult(ReadOnlyApplicationLink link, @Nullable JiraSearchResponse response,
+                @Nullable Exception error) {
+            this.link = link;
+            this.response = response;
+            this.error = error;
+        }
+
+        ReadOnlyApplicationLink getLink() {
+            return link;
+        }
+
+        /**
+         * Return the search response, or null if the search failed.
+         */
+        @Nullable
+        JiraSearchResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * Return the {@link CredentialsRequiredException} or {@link ResponseException} that
+         * the search failed with, or null if it succeeded.
+         */
+        @Nullable
+        Exception getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.isroot.stash.plugin.jira;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a JIRA search response that are used: how many issues matched and the keys of
+ * those that were returned.
+ * <p>
+ * Responses are read with a streaming parser, which skips over issue fields without building
+ * them and stops reading once the issues have been seen, so the size of a response costs little
+ * more than the time to receive it.
+ *
+ * @since 2026-10-18
+ */
+final class JiraSearchResponse {
+    private final int total;
+    private final int issueCount;
+    private final List<String> issueKeys;
+
+    JiraSearchResponse(int total, int issueCount, @Nonnull List<String> issueKeys) {
+        this.total = total;
+        this.issueCount = issueCount;
+        this.issueKeys = ImmutableList.copyOf(issueKeys);
+    }
+
+    /**
+     * Parse a search response.
+     *
+     * @throws IOException if the response is not a JSON object or can't be read.
+     */
+    @Nonnull
+    static JiraSearchResponse parse(@Nonnull Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+
+        int total = -1;
+        int issueCount = 0;
+        List<String> issueKeys = new ArrayList<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+
+            if ("total".equals(name) && json.peek() == JsonToken.NUMBER) {
+                total = json.nextInt();
+            } else if ("issues".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    String key = readIssueKey(json);
+                    if (key != null) {
+                        issueKeys.add(key);
+                    }
+                    issueCount++;
+                }
+                json.endArray();
+
+                // JIRA sends the total before the issues, and nothing after them is used
+                break;
+            } else {
+                json.skipValue();
+            }
+        }
+
+        return new JiraSearchResponse(total, issueCount, issueKeys);
+    }
+
+    private static String readIssueKey(JsonReader json) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return null;
+        }
+
+        String key = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            if ("key".equals(json.nextName()) && json.peek() == JsonToken.STRING) {
+                key = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return key;
+    }
+
+    /**
+     * Return true if any issue matched the search, even if none were returned.
+     */
+    boolean hasIssues() {
+        return issueCount > 0 || total > 0;
+    }
+
+    /**
+     * Return the number of issues that matched the search, or -1 if JIRA didn't say.
+     */
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     * Return the number of issues returned, which is limited by {@code maxResults}.
+     */
+    int getIssueCount() {
+        return issueCount;
+    }
+
+    /**
+     * Return the keys of the issues returned.
+     */
+    @Nonnull
+    List<String> getIssueKeys() {
+        return issueKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "JiraSearchResponse{" +
+                "total=" + total +
+                ", issueCount=" + issueCount +
+                '}';
+    }
+}
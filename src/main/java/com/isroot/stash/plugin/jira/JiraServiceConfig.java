@@ -0,0 +1,496 @@
+package com.isroot.stash.plugin.jira;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning for {@link JiraServiceImpl}.
+ * <p>
+ * These are server wide settings rather than hook settings, so they are read from system
+ * properties prefixed with {@code yacc.jira.}, for example
+ * {@code -Dyacc.jira.cache.positiveTtlMillis=300000}. Invalid values are ignored and the
+ * default is used.
+ *
+ * @since 2026-10-18
+ */
+public class JiraServiceConfig {
+    static final String PROPERTY_PREFIX = "yacc.jira.";
+
+    /**
+     * What to do with a JIRA issue that can't be checked because JIRA is unavailable.
+     */
+    public enum UnavailablePolicy {
+        /** Reject the push with an error saying JIRA is unavailable. */
+        REJECT,
+        /** Accept the issue without checking it, and log a warning. */
+        ACCEPT
+    }
+
+    /**
+     * Where cached JIRA lookups are shared.
+     */
+    public enum CacheReplication {
+        /** Each node caches its own lookups. */
+        LOCAL,
+        /** Lookups cached on one node of a Data Center cluster are shared with the others. */
+        CLUSTER
+    }
+
+    private int cacheMaxEntries = 10000;
+    private long cachePositiveTtlMillis = TimeUnit.MINUTES.toMillis(10);
+    private long cacheNegativeTtlMillis = TimeUnit.SECONDS.toMillis(30);
+    private boolean cachePersistent = true;
+    private CacheReplication cacheReplication = CacheReplication.LOCAL;
+    private long projectKeysRefreshMillis = TimeUnit.MINUTES.toMillis(10);
+    private int requestPoolSize = 8;
+    private long requestTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+    private int maxConcurrentRequests = 32;
+    private double hedgePercentile = 0;
+    private long hedgeMinDelayMillis = 50;
+    private int circuitBreakerFailureThreshold = 5;
+    private long circuitBreakerSlowCallMillis = TimeUnit.SECONDS.toMillis(5);
+    private long circuitBreakerOpenMillis = TimeUnit.SECONDS.toMillis(30);
+    private UnavailablePolicy unavailablePolicy = UnavailablePolicy.REJECT;
+    private int asyncPoolSize = 4;
+    private boolean virtualThreads = true;
+    private Set<String> issueIndexProjects = ImmutableSet.of();
+    private long issueIndexSyncMillis = TimeUnit.MINUTES.toMillis(5);
+    private String issueIndexUser;
+    private long jqlMatcherRefreshMillis = 0;
+    private long jqlMatcherFullRefreshMillis = TimeUnit.MINUTES.toMillis(30);
+    private int jqlMatcherMaxQueries = 20;
+
+    /**
+     * Return the default config, overridden by any {@code yacc.jira.*} system properties.
+     */
+    public static JiraServiceConfig fromSystemProperties() {
+        JiraServiceConfig config = new JiraServiceConfig();
+
+        config.cacheMaxEntries = Integer.getInteger(PROPERTY_PREFIX + "cache.maxEntries",
+                config.cacheMaxEntries);
+        config.cachePositiveTtlMillis = Long.getLong(PROPERTY_PREFIX + "cache.positiveTtlMillis",
+                config.cachePositiveTtlMillis);
+        config.cacheNegativeTtlMillis = Long.getLong(PROPERTY_PREFIX + "cache.negativeTtlMillis",
+                config.cacheNegativeTtlMillis);
+        config.projectKeysRefreshMillis = Long.getLong(PROPERTY_PREFIX + "projectKeys.refreshMillis",
+                config.projectKeysRefreshMillis);
+        config.requestPoolSize = Integer.getInteger(PROPERTY_PREFIX + "requests.poolSize",
+                config.requestPoolSize);
+        config.requestTimeoutMillis = Long.getLong(PROPERTY_PREFIX + "requests.timeoutMillis",
+                config.requestTimeoutMillis);
+        config.maxConcurrentRequests = Integer.getInteger(PROPERTY_PREFIX + "requests.maxConcurrent",
+                config.maxConcurrentRequests);
+        config.hedgeMinDelayMillis = Long.getLong(PROPERTY_PREFIX + "requests.hedgeMinDelayMillis",
+                config.hedgeMinDelayMillis);
+
+        String hedgePercentile = System.getProperty(PROPERTY_PREFIX + "requests.hedgePercentile");
+        if (hedgePercentile != null) {
+            try {
+                config.hedgePercentile = Double.parseDouble(hedgePercentile.trim());
+            } catch (NumberFormatException e) {
+                // Keep the default, like invalid integers
+            }
+        }
+
+        config.circuitBreakerFailureThreshold = Integer.getInteger(
+                PROPERTY_PREFIX + "circuitBreaker.failureThreshold",
+                config.circuitBreakerFailureThreshold);
+        config.circuitBreakerSlowCallMillis = Long.getLong(
+                PROPERTY_PREFIX + "circuitBreaker.slowCallMillis",
+                config.circuitBreakerSlowCallMillis);
+        config.circuitBreakerOpenMillis = Long.getLong(PROPERTY_PREFIX + "circuitBreaker.openMillis",
+                config.circuitBreakerOpenMillis);
+
+        config.asyncPoolSize = Integer.getInteger(PROPERTY_PREFIX + "async.poolSize",
+                config.asyncPoolSize);
+
+        String cachePersistent = System.getProperty(PROPERTY_PREFIX + "cache.persistent");
+        if (cachePersistent != null) {
+            config.cachePersistent = Boolean.parseBoolean(cachePersistent.trim());
+        }
+
+        String virtualThreads = System.getProperty(PROPERTY_PREFIX + "virtualThreads");
+        if (virtualThreads != null) {
+            config.virtualThreads = Boolean.parseBoolean(virtualThreads.trim());
+        }
+
+        String issueIndexProjects = System.getProperty(PROPERTY_PREFIX + "issueIndex.projects");
+        if (issueIndexProjects != null) {
+            config.issueIndexProjects = ImmutableSet.copyOf(Splitter.on(',')
+                    .trimResults()
+                    .omitEmptyStrings()
+                    .split(issueIndexProjects));
+        }
+        config.issueIndexSyncMillis = Long.getLong(PROPERTY_PREFIX + "issueIndex.syncMillis",
+                config.issueIndexSyncMillis);
+
+        String issueIndexUser = System.getProperty(PROPERTY_PREFIX + "issueIndex.user");
+        if (issueIndexUser != null && !issueIndexUser.trim().isEmpty()) {
+            config.issueIndexUser = issueIndexUser.trim();
+        }
+
+        config.jqlMatcherRefreshMillis = Long.getLong(PROPERTY_PREFIX + "jqlMatcher.refreshMillis",
+                config.jqlMatcherRefreshMillis);
+        config.jqlMatcherFullRefreshMillis = Long.getLong(
+                PROPERTY_PREFIX + "jqlMatcher.fullRefreshMillis",
+                config.jqlMatcherFullRefreshMillis);
+        config.jqlMatcherMaxQueries = Integer.getInteger(PROPERTY_PREFIX + "jqlMatcher.maxQueries",
+                config.jqlMatcherMaxQueries);
+
+        String unavailablePolicy = System.getProperty(PROPERTY_PREFIX + "unavailablePolicy");
+        if (unavailablePolicy != null) {
+            try {
+                config.unavailablePolicy = UnavailablePolicy.valueOf(unavailablePolicy.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Keep the default, like invalid numbers
+            }
+        }
+
+        String cacheReplication = System.getProperty(PROPERTY_PREFIX + "cache.replication");
+        if (cacheReplication != null) {
+            try {
+                config.cacheReplication = CacheReplication.valueOf(cacheReplication.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Keep the default, like invalid numbers
+            }
+        }
+
+        return config;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    /**
+     * Maximum number of issue lookups to cache. Zero disables the cache.
+     */
+    public JiraServiceConfig setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+        return this;
+    }
+
+    public long getCachePositiveTtlMillis() {
+        return cachePositiveTtlMillis;
+    }
+
+    /**
+     * How long an issue that was found, or that matched the issue JQL query, is cached. Zero
+     * disables caching of found issues.
+     */
+    public JiraServiceConfig setCachePositiveTtlMillis(long cachePositiveTtlMillis) {
+        this.cachePositiveTtlMillis = cachePositiveTtlMillis;
+        return this;
+    }
+
+    public long getCacheNegativeTtlMillis() {
+        return cacheNegativeTtlMillis;
+    }
+
+    /**
+     * How long an issue that was not found, or that did not match the issue JQL query, is
+     * cached. Kept short so that a push is accepted soon after a missing issue is created.
+     * Zero disables caching of missing issues.
+     */
+    public JiraServiceConfig setCacheNegativeTtlMillis(long cacheNegativeTtlMillis) {
+        this.cacheNegativeTtlMillis = cacheNegativeTtlMillis;
+        return this;
+    }
+
+    public boolean isCachePersistent() {
+        return cachePersistent;
+    }
+
+    /**
+     * Whether cached lookups are saved in the plugin's data directory and reloaded after a
+     * restart.
+     */
+    public JiraServiceConfig setCachePersistent(boolean cachePersistent) {
+        this.cachePersistent = cachePersistent;
+        return this;
+    }
+
+    public CacheReplication getCacheReplication() {
+        return cacheReplication;
+    }
+
+    /**
+     * Whether cached lookups are shared between the nodes of a cluster.
+     */
+    public JiraServiceConfig setCacheReplication(CacheReplication cacheReplication) {
+        this.cacheReplication = cacheReplication;
+        return this;
+    }
+
+    public long getProjectKeysRefreshMillis() {
+        return projectKeysRefreshMillis;
+    }
+
+    /**
+     * How often the list of project keys of each JIRA application link is refreshed. Zero
+     * disables the list, so that every project key is checked with a JIRA search.
+     */
+    public JiraServiceConfig setProjectKeysRefreshMillis(long projectKeysRefreshMillis) {
+        this.projectKeysRefreshMillis = projectKeysRefreshMillis;
+        return this;
+    }
+
+    public int getRequestPoolSize() {
+        return requestPoolSize;
+    }
+
+    /**
+     * Maximum number of JIRA requests run at once when there are several JIRA application links.
+     * One makes the links be searched one after another.
+     */
+    public JiraServiceConfig setRequestPoolSize(int requestPoolSize) {
+        this.requestPoolSize = requestPoolSize;
+        return this;
+    }
+
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /**
+     * How long to wait for a JIRA application link to respond before treating the request as
+     * failed.
+     */
+    public JiraServiceConfig setRequestTimeoutMillis(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        return this;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Maximum number of JIRA requests in progress at once across all pushes. Lookups beyond this
+     * fail immediately, like lookups on a link whose circuit breaker is open. Zero removes the
+     * limit.
+     */
+    public JiraServiceConfig setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Percentile of recent response times of a JIRA application link after which a search that
+     * hasn't been answered is sent again, and the first answer is used. For example, 95 sends a
+     * second request for searches slower than 19 out of 20 recent ones. Zero disables hedging.
+     */
+    public JiraServiceConfig setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+        return this;
+    }
+
+    public long getHedgeMinDelayMillis() {
+        return hedgeMinDelayMillis;
+    }
+
+    /**
+     * Minimum time to wait for a search before hedging it, so that a JIRA instance that is
+     * usually fast isn't sent many duplicate requests.
+     */
+    public JiraServiceConfig setHedgeMinDelayMillis(long hedgeMinDelayMillis) {
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+        return this;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Number of failed or slow requests in a row after which requests to a JIRA application link
+     * are suspended. Zero disables the circuit breaker.
+     */
+    public JiraServiceConfig setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+        return this;
+    }
+
+    public long getCircuitBreakerSlowCallMillis() {
+        return circuitBreakerSlowCallMillis;
+    }
+
+    /**
+     * Requests that take longer than this count as failures for the circuit breaker, even if
+     * they succeed.
+     */
+    public JiraServiceConfig setCircuitBreakerSlowCallMillis(long circuitBreakerSlowCallMillis) {
+        this.circuitBreakerSlowCallMillis = circuitBreakerSlowCallMillis;
+        return this;
+    }
+
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    /**
+     * How long requests to a JIRA application link are suspended before a single request is let
+     * through to check whether it has recovered.
+     */
+    public JiraServiceConfig setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+        return this;
+    }
+
+    public UnavailablePolicy getUnavailablePolicy() {
+        return unavailablePolicy;
+    }
+
+    /**
+     * What to do with issues that can't be checked because every JIRA application link is
+     * suspended by its circuit breaker or the request limit is reached.
+     */
+    public JiraServiceConfig setUnavailablePolicy(UnavailablePolicy unavailablePolicy) {
+        this.unavailablePolicy = unavailablePolicy;
+        return this;
+    }
+
+    public int getAsyncPoolSize() {
+        return asyncPoolSize;
+    }
+
+    /**
+     * Number of threads running lookups started through {@link JiraServiceImpl#async()}. Zero
+     * runs them on the calling thread.
+     */
+    public JiraServiceConfig setAsyncPoolSize(int asyncPoolSize) {
+        this.asyncPoolSize = asyncPoolSize;
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Whether to run JIRA requests on virtual threads when the JDK has them, instead of on the
+     * thread pools sized by {@link #setRequestPoolSize(int)} and {@link #setAsyncPoolSize(int)}.
+     */
+    public JiraServiceConfig setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public Set<String> getIssueIndexProjects() {
+        return issueIndexProjects;
+    }
+
+    /**
+     * Keys of the projects whose issue keys are kept in a local index, so that their issues can
+     * be checked for existence without asking JIRA. Only suitable if issues of these projects
+     * are never deleted. Empty disables the index.
+     */
+    public JiraServiceConfig setIssueIndexProjects(Collection<String> issueIndexProjects) {
+        this.issueIndexProjects = ImmutableSet.copyOf(issueIndexProjects);
+        return this;
+    }
+
+    public long getIssueIndexSyncMillis() {
+        return issueIndexSyncMillis;
+    }
+
+    /**
+     * How often the issue index is synced with JIRA, loading issues updated since the last
+     * sync.
+     */
+    public JiraServiceConfig setIssueIndexSyncMillis(long issueIndexSyncMillis) {
+        this.issueIndexSyncMillis = issueIndexSyncMillis;
+        return this;
+    }
+
+    public String getIssueIndexUser() {
+        return issueIndexUser;
+    }
+
+    /**
+     * Name of the Bitbucket user the issue index is synced as. Issues in the index are accepted
+     * for every pushing user, so this should be a user that can see every issue of the indexed
+     * projects in JIRA. Null disables the index.
+     */
+    public JiraServiceConfig setIssueIndexUser(String issueIndexUser) {
+        this.issueIndexUser = issueIndexUser;
+        return this;
+    }
+
+    public long getJqlMatcherRefreshMillis() {
+        return jqlMatcherRefreshMillis;
+    }
+
+    /**
+     * How often the sets of issues matching each issue JQL matcher are refreshed with the issues
+     * updated since the last refresh. Issues in a set are matched without asking JIRA, so this
+     * is how long an issue that stopped matching may still be accepted. Zero disables the sets.
+     */
+    public JiraServiceConfig setJqlMatcherRefreshMillis(long jqlMatcherRefreshMillis) {
+        this.jqlMatcherRefreshMillis = jqlMatcherRefreshMillis;
+        return this;
+    }
+
+    public long getJqlMatcherFullRefreshMillis() {
+        return jqlMatcherFullRefreshMillis;
+    }
+
+    /**
+     * How often the sets of issues matching each issue JQL matcher are loaded in full again.
+     */
+    public JiraServiceConfig setJqlMatcherFullRefreshMillis(long jqlMatcherFullRefreshMillis) {
+        this.jqlMatcherFullRefreshMillis = jqlMatcherFullRefreshMillis;
+        return this;
+    }
+
+    public int getJqlMatcherMaxQueries() {
+        return jqlMatcherMaxQueries;
+    }
+
+    /**
+     * Maximum number of issue JQL matchers whose matching issues are kept, counting a matcher
+     * once for each user it is checked for. Further queries are checked with JIRA as usual.
+     */
+    public JiraServiceConfig setJqlMatcherMaxQueries(int jqlMatcherMaxQueries) {
+        this.jqlMatcherMaxQueries = jqlMatcherMaxQueries;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "JiraServiceConfig{" +
+                "cacheMaxEntries=" + cacheMaxEntries +
+                ", cachePositiveTtlMillis=" + cachePositiveTtlMillis +
+                ", cacheNegativeTtlMillis=" + cacheNegativeTtlMillis +
+                ", cachePersistent=" + cachePersistent +
+                ", cacheReplication=" + cacheReplication +
+                ", projectKeysRefreshMillis=" + projectKeysRefreshMillis +
+                ", requestPoolSize=" + requestPoolSize +
+                ", requestTimeoutMillis=" + requestTimeoutMillis +
+                ", maxConcurrentRequests=" + maxConcurrentRequests +
+                ", hedgePercentile=" + hedgePercentile +
+                ", hedgeMinDelayMillis=" + hedgeMinDelayMillis +
+                ", circuitBreakerFailureThreshold=" + circuitBreakerFailureThreshold +
+                ", circuitBreakerSlowCallMillis=" + circuitBreakerSlowCallMillis +
+                ", circuitBreakerOpenMillis=" + circuitBreakerOpenMillis +
+                ", unavailablePolicy=" + unavailablePolicy +
+                ", asyncPoolSize=" + asyncPoolSize +
+                ", virtualThreads=" + virtualThreads +
+                ", issueIndexProjects=" + issueIndexProjects +
+                ", issueIndexSyncMillis=" + issueIndexSyncMillis +
+                ", issueIndexUser=" + issueIndexUser +
+                ", jqlMatcherRefreshMillis=" + jqlMatcherRefreshMillis +
+                ", jqlMatcherFullRefreshMillis=" + jqlMatcherFullRefreshMillis +
+                ", jqlMatcherMaxQueries=" + jqlMatcherMaxQueries +
+                '}';
+    }
+}
@@ -1,30 +1,43 @@
 package com.isroot.stash.plugin.jira;
 
-import com.atlassian.applinks.api.ApplicationLink;
-import com.atlassian.applinks.api.ApplicationLinkRequest;
 import com.atlassian.applinks.api.ApplicationLinkService;
 import com.atlassian.applinks.api.CredentialsRequiredException;
 import com.atlassian.applinks.api.ReadOnlyApplicationLink;
-import com.atlassian.applinks.api.application.jira.JiraApplicationType;
-import com.atlassian.sal.api.net.Request;
+import com.atlassian.applinks.api.event.ApplicationLinkEvent;
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.user.SecurityService;
+import com.atlassian.bitbucket.user.UserService;
+import com.atlassian.cache.CacheFactory;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.sal.api.ApplicationProperties;
 import com.atlassian.sal.api.net.ResponseException;
 import com.atlassian.sal.api.net.ResponseStatusException;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.isroot.stash.plugin.AsyncJiraService;
 import com.isroot.stash.plugin.IssueKey;
 import com.isroot.stash.plugin.JiraService;
+import com.isroot.stash.plugin.PushTimeBudget;
+import com.isroot.stash.plugin.YaccMetrics;
 import com.isroot.stash.plugin.errors.YaccError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -39,31 +52,158 @@ public class JiraServiceImpl implements JiraService {
     private static final String ISSUE_NOT_FOUND = "%s: JIRA Issue does not exist";
     private static final String JQL_NO_MATCH = "%s: JIRA Issue does not match JQL Query: %s";
 
-    private final ApplicationLinkService applicationLinkService;
+    /**
+     * Limits for a single batched lookup. JIRA has no hard limit on JQL length for POST
+     * searches, but very long queries are slow to parse and may be rejected by proxies.
+     */
+    private static final int MAX_ISSUES_PER_QUERY = 50;
+    private static final int MAX_JQL_LENGTH = 2000;
+
+    /**
+     * Fields requested by searches. Issue keys are returned regardless, and asking for the key
+     * alone leaves out every other field; an empty list would return the default fields.
+     */
+    private static final List<String> NO_FIELDS = Collections.singletonList("key");
+
+    private static final String LOOKUP_LOG_FILE_NAME = "jira-lookup-cache.log";
+
+    private final JiraUserContext userContext;
+    private final JiraApplicationLinkCache applicationLinks;
+    private final JiraLookupCache lookupCache;
+    private final JiraProjectKeyCache projectKeyCache;
+    private final JiraSearchExecutor searchExecutor;
+    private final JiraIssueIndexSync issueIndex;
+    private final JiraJqlMatcherSets jqlMatcherSets;
+    private final JiraServiceConfig.UnavailablePolicy unavailablePolicy;
+    private final long requestTimeoutMillis;
+    private final AsyncJiraServiceImpl asyncJiraService;
 
     public JiraServiceImpl(ApplicationLinkService applicationLinkService) {
-        this.applicationLinkService = applicationLinkService;
+        this(applicationLinkService, JiraServiceConfig.fromSystemProperties());
     }
 
-    private Iterable<ReadOnlyApplicationLink> getJiraApplicationLinks() {
-        List<ReadOnlyApplicationLink> links = new ArrayList<>();
+    public JiraServiceImpl(ApplicationLinkService applicationLinkService,
+            ApplicationProperties applicationProperties, CacheFactory cacheFactory,
+            AuthenticationContext authenticationContext, SecurityService securityService,
+            UserService userService) {
+        this(applicationLinkService, JiraServiceConfig.fromSystemProperties(),
+                new File(applicationProperties.getHomeDirectory(), "yacc"),
+                new AtlassianCacheLookupBus(cacheFactory), authenticationContext, securityService,
+                userService);
+    }
 
-        for (ApplicationLink link : applicationLinkService.getApplicationLinks(JiraApplicationType.class)) {
-            links.add(link);
+    public JiraServiceImpl(ApplicationLinkService applicationLinkService, JiraServiceConfig config) {
+        this(applicationLinkService, config, null);
+    }
+
+    public JiraServiceImpl(ApplicationLinkService applicationLinkService, JiraServiceConfig config,
+            @Nullable File dataDirectory) {
+        this(applicationLinkService, config, dataDirectory, null);
+    }
+
+    public JiraServiceImpl(ApplicationLinkService applicationLinkService, JiraServiceConfig config,
+            @Nullable File dataDirectory, @Nullable JiraLookupCacheBus cacheBus) {
+        this(applicationLinkService, config, dataDirectory, cacheBus, null, null);
+    }
+
+    public JiraServiceImpl(ApplicationLinkService applicationLinkService, JiraServiceConfig config,
+            @Nullable File dataDirectory, @Nullable JiraLookupCacheBus cacheBus,
+            @Nullable AuthenticationContext authenticationContext,
+            @Nullable SecurityService securityService) {
+        this(applicationLinkService, config, dataDirectory, cacheBus, authenticationContext,
+                securityService, null);
+    }
+
+    /**
+     * @param dataDirectory         where to keep the lookup cache and issue index, or null to not
+     *                              keep them between restarts.
+     * @param cacheBus              how cached lookups are shared with other nodes when
+     *                              {@link JiraServiceConfig#getCacheReplication()} is
+     *                              {@link JiraServiceConfig.CacheReplication#CLUSTER CLUSTER}.
+     * @param authenticationContext the pushing user, or null if lookups are never made for a
+     *                              user.
+     * @param securityService       used to make JIRA requests on other threads as the pushing
+     *                              user, or null to make them as whoever the thread runs as.
+     * @param userService           used to find the user the issue index is synced as, or null
+     *                              if there is none.
+     */
+    public JiraServiceImpl(ApplicationLinkService applicationLinkService, JiraServiceConfig config,
+            @Nullable File dataDirectory, @Nullable JiraLookupCacheBus cacheBus,
+            @Nullable AuthenticationContext authenticationContext,
+            @Nullable SecurityService securityService, @Nullable UserService userService) {
+        this.userContext = new JiraUserContext(authenticationContext, securityService,
+                userService);
+        this.applicationLinks = new JiraApplicationLinkCache(applicationLinkService);
+        this.lookupCache = createLookupCache(config, dataDirectory,
+                config.getCacheReplication() == JiraServiceConfig.CacheReplication.CLUSTER
+                        ? cacheBus : null);
+        this.projectKeyCache = new JiraProjectKeyCache(config, userContext);
+        this.searchExecutor = new JiraSearchExecutor(config, userContext);
+        this.issueIndex = new JiraIssueIndexSync(config, dataDirectory, searchExecutor,
+                userContext);
+        this.jqlMatcherSets = new JiraJqlMatcherSets(config, searchExecutor, userContext);
+        this.unavailablePolicy = config.getUnavailablePolicy();
+        this.requestTimeoutMillis = config.getRequestTimeoutMillis();
+        this.asyncJiraService = new AsyncJiraServiceImpl(this,
+                AsyncJiraServiceImpl.createExecutor(config), userContext);
+
+        log.debug("JIRA service config: {}", config);
+    }
+
+    private static JiraLookupCache createLookupCache(JiraServiceConfig config,
+            @Nullable File dataDirectory, @Nullable JiraLookupCacheBus cacheBus) {
+        JiraLookupLog lookupLog = null;
+        if (dataDirectory != null && config.isCachePersistent()) {
+            // Compacted once it holds twice as many records as the cache can, or after every
+            // thousand lookups for a small cache
+            lookupLog = new JiraLookupLog(new File(dataDirectory, LOOKUP_LOG_FILE_NAME),
+                    Math.max(1000, 2 * config.getCacheMaxEntries()));
         }
 
+        return new JiraLookupCache(config, Ticker.systemTicker(), lookupLog, cacheBus);
+    }
+
+    @Nonnull
+    @Override
+    public AsyncJiraService async() {
+        return asyncJiraService;
+    }
+
+    List<ReadOnlyApplicationLink> getJiraApplicationLinks() {
+        List<ReadOnlyApplicationLink> links = applicationLinks.getLinks();
+
         if (links.isEmpty()) {
             throw new IllegalStateException("No JIRA application links exist.");
         }
 
-        log.debug("number of JIRA application links: {}", links.size());
-
         return links;
     }
 
     @Override
     public boolean doesJiraApplicationLinkExist() {
-        return applicationLinkService.getPrimaryApplicationLink(JiraApplicationType.class) != null;
+        return applicationLinks.hasPrimaryLink();
+    }
+
+    /**
+     * Reload the JIRA application links after any of them is added, removed or changed.
+     */
+    @EventListener
+    public void onApplicationLinkEvent(ApplicationLinkEvent event) {
+        applicationLinks.invalidate();
+    }
+
+    /**
+     * Stop the background threads, and release the lookup cache's file and cluster listener,
+     * when the plugin is disabled or uninstalled.
+     */
+    @PreDestroy
+    public void destroy() {
+        asyncJiraService.close();
+        issueIndex.close();
+        jqlMatcherSets.close();
+        projectKeyCache.close();
+        searchExecutor.close();
+        lookupCache.close();
     }
 
     @Override
@@ -72,6 +212,10 @@ public class JiraServiceImpl implements JiraService {
 
         List<YaccError> errors = new ArrayList<>();
 
+        if (isIndexed(issueKey)) {
+            return errors;
+        }
+
         try {
             // JIRA response to this query can be different depending on how the issue key is
             // invalid.
@@ -79,28 +223,75 @@ public class JiraServiceImpl implements JiraService {
             // 2) If project key exists but issue number does not exist, a 400 response due to
             //    invalid JQL is returned
             if (!execute("issueKey='" + issueKey.getFullyQualifiedIssueKey() + "'",
-                    SUCCESS_ON.NON_ZERO_RESULT, false)) {
+                    SUCCESS_ON.NON_ZERO_RESULT, false, issueKey, null)) {
                 errors.add(new YaccError(YaccError.Type.ISSUE_JQL, "%s: JIRA Issue does not exist",
                         issueKey.getFullyQualifiedIssueKey()));
             }
         } catch (JiraLookupsException e) {
-            e.addMessageForApplicationLinksNotPresent(getJiraApplicationLinks(),
-                    String.format(ISSUE_NOT_FOUND, issueKey.getFullyQualifiedIssueKey()));
-
-            errors.addAll(e.getYaccErrors());
+            errors.addAll(getIssueNotFoundErrors(e, issueKey));
         }
 
         return errors;
     }
 
+    /**
+     * Return the errors for an issue whose lookup failed with {@code cause}, the same as
+     * {@link #doesIssueExist} gives when every JIRA request fails that way. A
+     * {@link TimeoutException} means that the lookup did not finish within the request timeout.
+     */
+    @Nonnull
+    List<YaccError> getFailedLookupErrors(@Nonnull IssueKey issueKey, @Nonnull Throwable cause) {
+        checkNotNull(issueKey, "issueKey is null");
+        checkNotNull(cause, "cause is null");
+
+        Exception error;
+        if (cause instanceof TimeoutException) {
+            error = new ResponseException(String.format("JIRA did not respond within %d ms",
+                    requestTimeoutMillis));
+        } else if (cause instanceof Exception) {
+            error = (Exception) cause;
+        } else {
+            error = new ResponseException(cause);
+        }
+
+        JiraLookupsException e = new JiraLookupsException();
+        for (ReadOnlyApplicationLink link : getJiraApplicationLinks()) {
+            e.addError(link, error);
+        }
+
+        return getIssueNotFoundErrors(e, issueKey);
+    }
+
+    /**
+     * Return how long a JIRA request is waited for before it is treated as failed.
+     */
+    long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    private List<YaccError> getIssueNotFoundErrors(JiraLookupsException e, IssueKey issueKey) {
+        if (isAcceptedWhileUnavailable(e, issueKey)) {
+            return new ArrayList<>();
+        }
+
+        e.addMessageForApplicationLinksNotPresent(getJiraApplicationLinks(),
+                String.format(ISSUE_NOT_FOUND, issueKey.getFullyQualifiedIssueKey()));
+
+        return e.getYaccErrors();
+    }
+
     @Override
     public boolean doesProjectExist(IssueKey issueKey) {
         checkNotNull(issueKey, "issueKey is null");
 
+        if (projectKeyCache.isEnabled()) {
+            return doesProjectExistInProjectKeys(issueKey.getProjectKey());
+        }
+
         try {
             String jql = String.format("project = '%s'", issueKey.getProjectKey());
 
-            return execute(jql, SUCCESS_ON.STATUS_200, false);
+            return execute(jql, SUCCESS_ON.STATUS_200, false, null, null);
         } catch (JiraLookupsException e) {
 
             // Assume project exists if there is any sort of error. If there
@@ -111,6 +302,64 @@ public class JiraServiceImpl implements JiraService {
         }
     }
 
+    /**
+     * Same as the search based check in {@link #doesProjectExist}, but uses the cached project
+     * keys of each link. Links are only searched for a project key that is missing from their
+     * project list, at most once per refresh for each user, or if the project list could not be
+     * loaded.
+     */
+    private boolean doesProjectExistInProjectKeys(String projectKey) {
+        String jql = String.format("project = '%s'", projectKey);
+        String userKey = userContext.getCurrentUserKey();
+        boolean hasErrors = false;
+
+        for (ReadOnlyApplicationLink link : getJiraApplicationLinks()) {
+            JiraProjectKeyCache.ProjectKeys projectKeys = projectKeyCache.getProjectKeys(link);
+
+            if (projectKeys != null) {
+                if (projectKeys.contains(projectKey)) {
+                    return true;
+                } else if (!projectKeys.startUnknownCheck(userKey, projectKey)) {
+                    log.debug("project {} is not in project list of JIRA application link '{}'",
+                            projectKey, link.getName());
+                    continue;
+                }
+            }
+
+            boolean failed = false;
+            try {
+                Map<String, Object> request = new HashMap<>();
+                request.put("jql", jql);
+                request.put("maxResults", 0);
+                searchExecutor.search(link, request);
+
+                if (projectKeys != null) {
+                    projectKeys.add(projectKey);
+                }
+                return true;
+            } catch (ResponseStatusException e) {
+                // 400 means the project does not exist
+                if (e.getResponse().getStatusCode() != 400) {
+                    log.error("response", e);
+                    failed = true;
+                }
+            } catch (CredentialsRequiredException | ResponseException e) {
+                log.error("unable to check project {}", projectKey, e);
+                failed = true;
+            }
+
+            if (failed) {
+                hasErrors = true;
+                if (projectKeys != null) {
+                    projectKeys.abortUnknownCheck(userKey, projectKey);
+                }
+            }
+        }
+
+        // Assume project exists if there is any sort of error, see doesProjectExist
+        return hasErrors;
+    }
+
     @Override
     public List<YaccError> doesIssueMatchJqlQuery(String jqlQuery, IssueKey issueKey) {
         checkNotNull(jqlQuery, "jqlQuery is null");
@@ -118,15 +367,24 @@ public class JiraServiceImpl implements JiraService {
 
         List<YaccError> errors = new ArrayList<>();
 
+        if (isMaterializedMatch(issueKey, jqlQuery)) {
+            return errors;
+        }
+
         String jqlQueryWithIssueExpression = String.format("issueKey=%s and (%s)",
                 issueKey.getFullyQualifiedIssueKey(), jqlQuery);
 
         try {
-            if (!execute(jqlQueryWithIssueExpression, SUCCESS_ON.NON_ZERO_RESULT, true)) {
+            if (!execute(jqlQueryWithIssueExpression, SUCCESS_ON.NON_ZERO_RESULT, true, issueKey,
+                    jqlQuery)) {
                 errors.add(new YaccError(YaccError.Type.ISSUE_JQL, "%s: JIRA Issue does not match JQL Query: %s",
                         issueKey.getFullyQualifiedIssueKey(), jqlQuery));
             }
         } catch (JiraLookupsException e) {
+            if (isAcceptedWhileUnavailable(e, issueKey)) {
+                return errors;
+            }
+
             e.addMessageForApplicationLinksNotPresent(getJiraApplicationLinks(),
                     String.format(JQL_NO_MATCH, issueKey.getFullyQualifiedIssueKey(), jqlQuery));
 
@@ -136,13 +394,30 @@ public class JiraServiceImpl implements JiraService {
         return errors;
     }
 
+    /**
+     * Return true if the issue should be accepted without checking it, because JIRA was not
+     * asked at all and the unavailable policy says to accept.
+     */
+    private boolean isAcceptedWhileUnavailable(JiraLookupsException e, IssueKey issueKey) {
+        if (!e.isUnavailable() || unavailablePolicy != JiraServiceConfig.UnavailablePolicy.ACCEPT) {
+            return false;
+        }
+
+        log.warn("JIRA is unavailable, accepting {} without checking it: {}",
+                issueKey.getFullyQualifiedIssueKey(), e.getYaccErrors());
+
+        YaccMetrics.increment("jira.unavailable.accepted");
+
+        return true;
+    }
+
     @Override
     public List<String> checkJqlQuery(@Nonnull String jqlQuery) {
         checkNotNull(jqlQuery, "jqlQuery is null");
 
         try {
             // This will throw an exception if the jql query is invalid.
-            if(execute(jqlQuery, SUCCESS_ON.STATUS_200, false)) {
+            if(execute(jqlQuery, SUCCESS_ON.STATUS_200, false, null, null)) {
                 return ImmutableList.<String>of();
             } else {
                 return ImmutableList.of("JQL Query is invalid.");
@@ -157,78 +432,344 @@ public class JiraServiceImpl implements JiraService {
         }
     }
 
-    private boolean execute(String jqlQuery, SUCCESS_ON successOn, boolean trackInvalidJqlAsError)
+    @Nonnull
+    @Override
+    public List<YaccError> checkIssue(@Nonnull IssueKey issueKey, @Nullable String jqlQuery) {
+        checkNotNull(issueKey, "issueKey is null");
+
+        if (jqlQuery != null && isMaterializedMatch(issueKey, jqlQuery)) {
+            return new ArrayList<>();
+        }
+
+        if (jqlQuery != null && !isCached(issueKey, jqlQuery)
+                && findIssues(Collections.singleton(issueKey), jqlQuery).contains(issueKey)) {
+            return new ArrayList<>();
+        }
+
+        return checkIssueSeparately(issueKey, jqlQuery);
+    }
+
+    @Nonnull
+    @Override
+    public Map<IssueKey, List<YaccError>> checkIssues(@Nonnull Collection<IssueKey> issueKeys,
+            @Nullable String jqlQuery) {
+        return checkIssues(issueKeys, jqlQuery,
+                new PushTimeBudget(0, PushTimeBudget.ExhaustedPolicy.REJECT));
+    }
+
+    @Nonnull
+    @Override
+    public Map<IssueKey, List<YaccError>> checkIssues(@Nonnull Collection<IssueKey> issueKeys,
+            @Nullable String jqlQuery, @Nonnull PushTimeBudget budget) {
+        checkNotNull(issueKeys, "issueKeys is null");
+        checkNotNull(budget, "budget is null");
+
+        Set<IssueKey> distinctKeys = new LinkedHashSet<>(issueKeys);
+
+        // Issues with cached results are checked individually below without contacting JIRA,
+        // and issues in the index or in the set of issues matching the query need no checking
+        Set<IssueKey> found = new HashSet<>();
+        Set<IssueKey> uncachedKeys = new LinkedHashSet<>();
+        for (IssueKey issueKey : distinctKeys) {
+            if (jqlQuery == null ? isIndexed(issueKey) : isMaterializedMatch(issueKey, jqlQuery)) {
+                found.add(issueKey);
+            } else if (!isCached(issueKey, jqlQuery)) {
+                uncachedKeys.add(issueKey);
+            }
+        }
+
+        // A single issue is cheaper to check with the specific queries, unless there is a JQL
+        // query, where the batched query checks existence and the JQL query at once
+        boolean batch = uncachedKeys.size() > 1 || (jqlQuery != null && !uncachedKeys.isEmpty());
+        if (batch && !budget.isExhausted()) {
+            found.addAll(findIssues(uncachedKeys, jqlQuery));
+        }
+
+        Map<IssueKey, List<YaccError>> results = new LinkedHashMap<>();
+
+        for (IssueKey issueKey : distinctKeys) {
+            if (found.contains(issueKey)) {
+                results.put(issueKey, new ArrayList<>());
+                continue;
+            }
+
+            if (budget.isExhausted()) {
+                log.debug("push time budget exhausted, not checking {}", issueKey);
+                continue;
+            }
+
+            // Not found by the batched query, so look up the issue on its own. This gives the
+            // same error messages as checking the issue directly, and covers issues that were
+            // moved and are returned by JIRA under a different key.
+            results.put(issueKey, checkIssueSeparately(issueKey, jqlQuery));
+        }
+
+        return results;
+    }
+
+    /**
+     * Check existence and then the JQL query with separate searches, which tells apart an issue
+     * that does not exist from one that does not match, and an invalid query from both.
+     */
+    private List<YaccError> checkIssueSeparately(IssueKey issueKey, @Nullable String jqlQuery) {
+        List<YaccError> errors = doesIssueExist(issueKey);
+        if (errors.isEmpty() && jqlQuery != null) {
+            errors.addAll(doesIssueMatchJqlQuery(jqlQuery, issueKey));
+        }
+
+        return errors;
+    }
+
+    /**
+     * Find which issues exist, and match {@code jqlQuery} if not null, using as few searches as
+     * possible. Errors are not reported; issues that can't be confirmed are simply not returned.
+     */
+    private Set<IssueKey> findIssues(Collection<IssueKey> issueKeys, @Nullable String jqlQuery) {
+        String userKey = userContext.getCurrentUserKey();
+        Set<IssueKey> found = new HashSet<>();
+
+        for (List<IssueKey> chunk : chunkIssueKeys(issueKeys, jqlQuery)) {
+            Map<String, IssueKey> remaining = new HashMap<>();
+            for (IssueKey issueKey : chunk) {
+                remaining.put(issueKey.getFullyQualifiedIssueKey(), issueKey);
+            }
+
+            String jql = buildIssueKeysJql(chunk, jqlQuery);
+
+            Map<String, Object> request = new HashMap<>();
+            request.put("jql", jql);
+            request.put("fields", NO_FIELDS);
+            request.put("maxResults", chunk.size());
+            // Keys that don't exist are reported as warnings instead of failing the query
+            request.put("validateQuery", false);
+
+            // Moved issues are returned under their new key, so a link returning as many issues
+            // as were asked for doesn't always mean that all of them were found
+            List<JiraSearchExecutor.SearchResult> results = searchExecutor.search(
+                    getJiraApplicationLinks(), request,
+                    response -> response.getIssueCount() == chunk.size());
+
+            for (JiraSearchExecutor.SearchResult result : results) {
+                ReadOnlyApplicationLink link = result.getLink();
+
+                if (result.getResponse() == null) {
+                    log.debug("batched JQL query failed on JIRA application link '{}'",
+                            link.getName(), result.getError());
+                    continue;
+                }
+
+                for (String key : result.getResponse().getIssueKeys()) {
+                    IssueKey issueKey = remaining.remove(key);
+                    if (issueKey != null) {
+                        found.add(issueKey);
+
+                        lookupCache.put(getLinkId(link), userKey, issueKey, null, true);
+                        if (jqlQuery != null) {
+                            lookupCache.put(getLinkId(link), userKey, issueKey, jqlQuery, true);
+                        }
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Return true if the issue is in the local issue index, and so exists.
+     */
+    private boolean isIndexed(IssueKey issueKey) {
+        return issueIndex.isEnabled() && issueIndex.contains(getJiraApplicationLinks(), issueKey);
+    }
+
+    /**
+     * Return true if the issue is in the set of issues matching the query, and so exists and
+     * matches it.
+     */
+    private boolean isMaterializedMatch(IssueKey issueKey, String jqlQuery) {
+        return jqlMatcherSets.isEnabled()
+                && jqlMatcherSets.contains(getJiraApplicationLinks(), jqlQuery, issueKey);
+    }
+
+    /**
+     * Return true if the issue can be checked using only cached results.
+     */
+    private boolean isCached(IssueKey issueKey, @Nullable String jqlQuery) {
+        Boolean exists = getCachedResult(issueKey, null);
+        if (exists == null) {
+            return false;
+        }
+
+        return !exists || jqlQuery == null || getCachedResult(issueKey, jqlQuery) != null;
+    }
+
+    /**
+     * Return the result {@link #execute} would give using only cached results, or null if a
+     * link would have to be queried.
+     */
+    @Nullable
+    private Boolean getCachedResult(IssueKey issueKey, @Nullable String jqlQuery) {
+        String userKey = userContext.getCurrentUserKey();
+
+        for (ReadOnlyApplicationLink link : getJiraApplicationLinks()) {
+            Boolean cached = lookupCache.peek(getLinkId(link), userKey, issueKey, jqlQuery);
+            if (cached == null) {
+                return null;
+            } else if (cached) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String getLinkId(ReadOnlyApplicationLink link) {
+        return link.getId().get();
+    }
+
+    private List<List<IssueKey>> chunkIssueKeys(Collection<IssueKey> issueKeys,
+            @Nullable String jqlQuery) {
+        List<List<IssueKey>> chunks = new ArrayList<>();
+        List<IssueKey> chunk = new ArrayList<>();
+        int length = buildIssueKeysJql(chunk, jqlQuery).length();
+
+        for (IssueKey issueKey : issueKeys) {
+            int keyLength = issueKey.getFullyQualifiedIssueKey().length() + 2;
+
+            if (!chunk.isEmpty() && (chunk.size() == MAX_ISSUES_PER_QUERY
+                    || length + keyLength > MAX_JQL_LENGTH)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                length = buildIssueKeysJql(chunk, jqlQuery).length();
+            }
+
+            chunk.add(issueKey);
+            length += keyLength;
+        }
+
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    private static String buildIssueKeysJql(List<IssueKey> issueKeys, @Nullable String jqlQuery) {
+        String jql = issueKeys.stream()
+                .map(IssueKey::getFullyQualifiedIssueKey)
+                .collect(Collectors.joining(", ", "issueKey in (", ")"));
+
+        return jqlQuery != null ? String.format("%s and (%s)", jql, jqlQuery) : jql;
+    }
+
+    /**
+     * Run a JQL query against every JIRA application link until one succeeds. Links are queried
+     * concurrently, and errors are only reported if no link succeeds.
+     *
+     * @param cachedIssueKey if not null, results are cached per link for this issue and
+     *                       {@code cachedJqlQuery}.
+     */
+    private boolean execute(String jqlQuery, SUCCESS_ON successOn, boolean trackInvalidJqlAsError,
+            @Nullable IssueKey cachedIssueKey, @Nullable String cachedJqlQuery)
             throws JiraLookupsException {
         checkNotNull(jqlQuery, "jqlQuery is null");
 
-        JiraLookupsException ex = new JiraLookupsException();
+        String userKey = userContext.getCurrentUserKey();
+        List<ReadOnlyApplicationLink> links = new ArrayList<>();
 
-        for (final ReadOnlyApplicationLink link : getJiraApplicationLinks()) {
-            try {
-                log.debug("executing JQL query on JIRA application link '{}': {}", link.getName(),
-                        jqlQuery);
+        for (ReadOnlyApplicationLink link : getJiraApplicationLinks()) {
+            if (cachedIssueKey != null) {
+                Boolean cached = lookupCache.get(getLinkId(link), userKey, cachedIssueKey,
+                        cachedJqlQuery);
+                if (cached != null) {
+                    log.debug("cached result on JIRA application link '{}' for {}: {}",
+                            link.getName(), jqlQuery, cached);
 
-                ApplicationLinkRequest req = link.createAuthenticatedRequestFactory()
-                        .createRequest(Request.MethodType.POST, "/rest/api/2/search");
+                    if (cached) {
+                        return true;
+                    }
+                    continue;
+                }
+            }
 
-                req.setHeader("Content-Type", "application/json");
+            links.add(link);
+        }
 
-                Map<String, Object> request = new HashMap<>();
-                request.put("jql", jqlQuery);
+        if (links.isEmpty()) {
+            return false;
+        }
 
-                List<String> requestedFields = new ArrayList<>();
-                requestedFields.add("summary");
-                request.put("fields", requestedFields);
+        // Only whether any issue matched is used, so at most one issue is returned, without fields
+        Map<String, Object> request = new HashMap<>();
+        request.put("jql", jqlQuery);
+        request.put("fields", NO_FIELDS);
+        request.put("maxResults", successOn == SUCCESS_ON.NON_ZERO_RESULT ? 1 : 0);
 
-                req.setEntity(new Gson().toJson(request));
+        List<JiraSearchExecutor.SearchResult> results = searchExecutor.search(links, request,
+                response -> successOn == SUCCESS_ON.STATUS_200 || response.hasIssues());
 
-                String jsonResponse = req.execute();
+        JiraLookupsException ex = new JiraLookupsException();
+        boolean succeeded = false;
 
-                log.debug("json response: {}", jsonResponse);
+        // Results are in link order, so errors are reported in the same order every time
+        for (JiraSearchExecutor.SearchResult result : results) {
+            ReadOnlyApplicationLink link = result.getLink();
 
-                JsonObject response = new JsonParser().parse(jsonResponse).getAsJsonObject();
-                JsonArray issues = response.get("issues").getAsJsonArray();
+            if (result.getResponse() != null) {
+                boolean hasIssues = result.getResponse().hasIssues();
 
-                if (successOn == SUCCESS_ON.NON_ZERO_RESULT && issues.size() > 0) {
-                    return true;
+                if (cachedIssueKey != null) {
+                    lookupCache.put(getLinkId(link), userKey, cachedIssueKey, cachedJqlQuery,
+                            hasIssues);
+                }
+
+                if (successOn == SUCCESS_ON.NON_ZERO_RESULT && hasIssues) {
+                    succeeded = true;
                 }
                 else if (successOn == SUCCESS_ON.STATUS_200) {
-                    return true;
+                    succeeded = true;
                 }
-            } catch (CredentialsRequiredException e) {
-                log.error("credentials", e);
+            } else if (result.getError() instanceof CredentialsRequiredException) {
+                log.error("credentials", result.getError());
+
+                ex.addError(link, result.getError());
+            } else {
+                ResponseException e = (ResponseException) result.getError();
 
-                ex.addError(link, e);
-            } catch (ResponseException e) {
                 if (e instanceof ResponseStatusException) {
                     ResponseStatusException statusException = (ResponseStatusException) e;
 
                     log.debug("status code {}", statusException.getResponse().getStatusCode(), e);
 
-                    try {
-                        log.debug("response entity: {}", statusException.getResponse().getResponseBodyAsString());
-                    } catch (ResponseException e1) {
-                        log.error("error getting response body", e);
-                    }
-
                     if (statusException.getResponse().getStatusCode() == 400) {
                         log.debug("400 check, {}", trackInvalidJqlAsError);
 
                         if(trackInvalidJqlAsError) {
                             ex.addError(link, "Query is not valid for JIRA instance: " + jqlQuery);
+                        } else if (cachedIssueKey != null) {
+                            // Issue number does not exist in an existing project
+                            lookupCache.put(getLinkId(link), userKey, cachedIssueKey,
+                                    cachedJqlQuery, false);
                         }
 
                         continue;
                     }
                 }
 
-                log.error("response", e);
+                if (e instanceof JiraUnavailableException) {
+                    log.debug("JIRA application link '{}' is unavailable: {}", link.getName(),
+                            e.getMessage());
+                } else {
+                    log.error("response", e);
+                }
 
                 ex.addError(link, e);
             }
         }
 
-        if (ex.hasErrors()) {
+        if (succeeded) {
+            return true;
+        } else if (ex.hasErrors()) {
             throw ex;
         }
 
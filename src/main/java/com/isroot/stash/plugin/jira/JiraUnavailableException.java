@@ -0,0 +1,15 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.sal.api.net.ResponseException;
+
+/**
+ * A JIRA request was refused without contacting JIRA, because the circuit breaker of the link is
+ * open or too many requests are already in progress.
+ *
+ * @since 2026-10-18
+ */
+class JiraUnavailableException extends ResponseException {
+    JiraUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,105 @@
+package com.isroot.stash.plugin.jira;
+
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.user.ApplicationUser;
+import com.atlassian.bitbucket.user.SecurityService;
+import com.atlassian.bitbucket.user.UserService;
+import com.atlassian.bitbucket.util.UncheckedOperation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The Bitbucket user that JIRA requests are made for.
+ * <p>
+ * Application link request factories look up the user to authenticate as when a request is
+ * created, not when the factory is, so a request made on another thread has to run as the user
+ * as well. Executors returned by {@link #wrap(Executor)} run each task as the user that
+ * submitted it, using {@link SecurityService#impersonating}. Executors returned by
+ * {@link #wrapAs(Executor, String)} run them as a named user instead, for work whose results
+ * are shared by every user.
+ * <p>
+ * Without an {@link AuthenticationContext} there is never a user, and without a
+ * {@link SecurityService} tasks run as whoever their thread runs as.
+ *
+ * @since 2026-10-18
+ */
+class JiraUserContext {
+    private final AuthenticationContext authenticationContext;
+    private final SecurityService securityService;
+    private final UserService userService;
+
+    JiraUserContext(@Nullable AuthenticationContext authenticationContext,
+            @Nullable SecurityService securityService, @Nullable UserService userService) {
+        this.authenticationContext = authenticationContext;
+        this.securityService = securityService;
+        this.userService = userService;
+    }
+
+    /**
+     * Return the current user, or null if there is none.
+     */
+    @Nullable
+    ApplicationUser getCurrentUser() {
+        return authenticationContext != null ? authenticationContext.getCurrentUser() : null;
+    }
+
+    /**
+     * Return a key for the current user, for keeping apart what JIRA answers different users,
+     * or an empty string if there is no user.
+     */
+    @Nonnull
+    String getCurrentUserKey() {
+        ApplicationUser user = getCurrentUser();
+        return user != null ? String.valueOf(user.getId()) : "";
+    }
+
+    /**
+     * Return an executor that runs each task as the user that submitted it.
+     */
+    @Nonnull
+    Executor wrap(@Nonnull Executor executor) {
+        if (securityService == null) {
+            return executor;
+        }
+
+        return task -> {
+            ApplicationUser user = getCurrentUser();
+            executor.execute(user != null
+                    ? runAs(user, "Make JIRA requests for the pushing user", task) : task);
+        };
+    }
+
+    /**
+     * Return an executor that runs each task as the user named {@code userName}, whoever
+     * submitted it.
+     * <p>
+     * The user is looked up when a task is submitted. If there is no such user, the task is
+     * rejected with a {@link RejectedExecutionException} rather than run as someone else.
+     */
+    @Nonnull
+    Executor wrapAs(@Nonnull Executor executor, @Nonnull String userName) {
+        if (securityService == null) {
+            return executor;
+        }
+
+        return task -> {
+            ApplicationUser user = userService != null ? userService.getUserByName(userName) : null;
+            if (user == null) {
+                throw new RejectedExecutionException("user " + userName + " does not exist");
+            }
+
+            executor.execute(runAs(user, "Make JIRA requests shared by every user", task));
+        };
+    }
+
+    private Runnable runAs(ApplicationUser user, String reason, Runnable task) {
+        return () -> securityService.impersonating(user, reason)
+                .call((UncheckedOperation<Void>) () -> {
+                    task.run();
+                    return null;
+                });
+    }
+}
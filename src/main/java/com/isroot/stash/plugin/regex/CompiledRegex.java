@@ -0,0 +1,49 @@
+package com.isroot.stash.plugin.regex;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.regex.MatchResult;
+
+/**
+ * A compiled regex that can be evaluated by either {@link java.util.regex} or the
+ * {@link LinearRegex} engine.
+ *
+ * @since 2026-10-18
+ */
+public interface CompiledRegex {
+    /**
+     * Return the source regex.
+     */
+    @Nonnull
+    String pattern();
+
+    /**
+     * Return the {@link java.util.regex.Pattern} flags the regex was compiled with.
+     */
+    int flags();
+
+    /**
+     * Return the number of capturing groups in the regex.
+     */
+    int groupCount();
+
+    /**
+     * Return true if the entire input matches the regex.
+     */
+    boolean matches(@Nonnull CharSequence input);
+
+    /**
+     * Return true if any part of the input matches the regex.
+     */
+    boolean find(@Nonnull CharSequence input);
+
+    /**
+     * Match the entire input against the regex, like {@link #matches(CharSequence)}, but also
+     * return the capturing groups. Prefer {@link #matches(CharSequence)} when the groups are not
+     * needed, since tracking them costs extra.
+     *
+     * @return the match, or null if the input does not match.
+     */
+    @Nullable
+    MatchResult match(@Nonnull CharSequence input);
+}
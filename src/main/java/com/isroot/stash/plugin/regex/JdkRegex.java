@@ -0,0 +1,63 @@
+package com.isroot.stash.plugin.regex;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link CompiledRegex} backed by a backtracking {@link Pattern}.
+ *
+ * @since 2026-10-18
+ */
+public class JdkRegex implements CompiledRegex {
+    private final Pattern pattern;
+
+    public JdkRegex(@Nonnull Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    @Nonnull
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    @Nonnull
+    @Override
+    public String pattern() {
+        return pattern.pattern();
+    }
+
+    @Override
+    public int flags() {
+        return pattern.flags();
+    }
+
+    @Override
+    public int groupCount() {
+        return pattern.matcher("").groupCount();
+    }
+
+    @Override
+    public boolean matches(@Nonnull CharSequence input) {
+        return pattern.matcher(input).matches();
+    }
+
+    @Override
+    public boolean find(@Nonnull CharSequence input) {
+        return pattern.matcher(input).find();
+    }
+
+    @Nullable
+    @Override
+    public MatchResult match(@Nonnull CharSequence input) {
+        Matcher matcher = pattern.matcher(input);
+        return matcher.matches() ? matcher : null;
+    }
+
+    @Override
+    public String toString() {
+        return pattern.pattern();
+    }
+}
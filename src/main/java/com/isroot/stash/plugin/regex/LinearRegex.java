@@ -0,0 +1,402 @@
+package com.isroot.stash.plugin.regex;
+
+import com.isroot.stash.plugin.regex.LinearRegexCompiler.Program;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.regex.MatchResult;
+
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_BEGIN_LINE;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_BEGIN_TEXT;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_END_LINE;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_END_TEXT;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_END_TEXT_OR_FINAL_TERMINATOR;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_NOT_WORD_BOUNDARY;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.ASSERT_WORD_BOUNDARY;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.OP_ASSERT;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.OP_CHAR;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.OP_JMP;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.OP_MATCH;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.OP_SAVE;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.OP_SPLIT;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.isLineTerminator;
+import static com.isroot.stash.plugin.regex.LinearRegexCompiler.isWord;
+
+/**
+ * Regex engine that runs in time linear to the input length, in the style of RE2.
+ * <p>
+ * The regex is compiled into a small program which is then simulated for all possible paths at
+ * once (a Pike VM), so every input character is looked at a bounded number of times no matter
+ * how the regex is written. Regexes like {@code (a+)+$} that make {@link java.util.regex.Pattern}
+ * backtrack exponentially are evaluated as quickly as any other regex.
+ * <p>
+ * The supported syntax is the part of {@link java.util.regex.Pattern} that does not need
+ * backtracking: literals, character classes, {@code \d \w \s}, anchors, word boundaries,
+ * capturing and non-capturing groups, alternation and greedy or lazy quantifiers. Backreferences,
+ * lookaround, atomic groups, possessive quantifiers and nested character classes are rejected
+ * with {@link UnsupportedRegexException}, and so are repetitions that
+ * {@link java.util.regex.Pattern} evaluates in ways this engine can't reproduce: repeating an
+ * expression that can match the empty string, and groups inside counted repetition or inside a repeated
+ * non-capturing group. Everything else gives the same results as
+ * {@link java.util.regex.Pattern}, with submatches following the same leftmost-first rules.
+ * <p>
+ * Instances are immutable and thread safe.
+ *
+ * @since 2026-10-18
+ */
+public class LinearRegex implements CompiledRegex {
+    private final String regex;
+    private final int flags;
+    private final Program program;
+
+    private LinearRegex(String regex, int flags, Program program) {
+        this.regex = regex;
+        this.flags = flags;
+        this.program = program;
+    }
+
+    /**
+     * Compile a regex using the same syntax and flags as {@link java.util.regex.Pattern}.
+     *
+     * @throws UnsupportedRegexException if the regex uses a feature this engine does not support.
+     */
+    @Nonnull
+    public static LinearRegex compile(@Nonnull String regex, int flags) {
+        return new LinearRegex(regex, flags, LinearRegexCompiler.compile(regex, flags));
+    }
+
+    /**
+     * Return null if the regex can be evaluated by this engine, otherwise the reason it cannot.
+     */
+    @Nullable
+    public static String getUnsupportedReason(@Nonnull String regex, int flags) {
+        try {
+            LinearRegexCompiler.compile(regex, flags);
+            return null;
+        } catch (UnsupportedRegexException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String pattern() {
+        return regex;
+    }
+
+    @Override
+    public int flags() {
+        return flags;
+    }
+
+    @Override
+    public int groupCount() {
+        return program.groupCount;
+    }
+
+    @Override
+    public boolean matches(@Nonnull CharSequence input) {
+        return new Simulation(input, false).run(true, true) != null;
+    }
+
+    @Override
+    public boolean find(@Nonnull CharSequence input) {
+        return new Simulation(input, false).run(false, false) != null;
+    }
+
+    @Nullable
+    @Override
+    public MatchResult match(@Nonnull CharSequence input) {
+        int[] captures = new Simulation(input, true).run(true, true);
+        return captures != null ? new Match(input, captures) : null;
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    private static class Match implements MatchResult {
+        private final CharSequence input;
+        private final int[] captures;
+
+        Match(CharSequence input, int[] captures) {
+            this.input = input;
+            this.captures = captures;
+        }
+
+        @Override
+        public int start() {
+            return start(0);
+        }
+
+        @Override
+        public int start(int group) {
+            checkGroup(group);
+            return captures[group * 2];
+        }
+
+        @Override
+        public int end() {
+            return end(0);
+        }
+
+        @Override
+        public int end(int group) {
+            checkGroup(group);
+            return captures[group * 2 + 1];
+        }
+
+        @Override
+        public String group() {
+            return group(0);
+        }
+
+        @Override
+        public String group(int group) {
+            checkGroup(group);
+            int start = captures[group * 2];
+            int end = captures[group * 2 + 1];
+            if (start < 0 || end < 0) {
+                return null;
+            }
+
+            return input.subSequence(start, end).toString();
+        }
+
+        @Override
+        public int groupCount() {
+            return captures.length / 2 - 1;
+        }
+
+        private void checkGroup(int group) {
+            if (group < 0 || group > groupCount()) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+    }
+
+    /**
+     * Ordered set of threads, one per program counter. Order is thread priority.
+     */
+    private static class ThreadList {
+        private final int[] pcs;
+        private final int[][] captures;
+        private final int[] onList;
+        private int size;
+        private int generation = 1;
+
+        ThreadList(int programSize) {
+            pcs = new int[programSize];
+            captures = new int[programSize][];
+            onList = new int[programSize];
+        }
+
+        /**
+         * Mark {@code pc} as visited, returning false if it already was.
+         */
+        boolean visit(int pc) {
+            if (onList[pc] == generation) {
+                return false;
+            }
+
+            onList[pc] = generation;
+            return true;
+        }
+
+        void add(int pc, int[] caps) {
+            pcs[size] = pc;
+            captures[size] = caps;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(captures, 0, size, null);
+            size = 0;
+            generation++;
+        }
+    }
+
+    private class Simulation {
+        private final CharSequence input;
+        private final int length;
+        private final boolean trackCaptures;
+
+        Simulation(CharSequence input, boolean trackCaptures) {
+            this.input = input;
+            this.length = input.length();
+            this.trackCaptures = trackCaptures;
+        }
+
+        /**
+         * Run the program over the input.
+         *
+         * @param anchored   only consider matches starting at the beginning of the input.
+         * @param fullMatch  only consider matches ending at the end of the input.
+         * @return the capture positions of the highest priority match, or null if there is no
+         * match. When captures are not tracked, any non-null array means there is a match.
+         */
+        int[] run(boolean anchored, boolean fullMatch) {
+            int programSize = program.size();
+            ThreadList current = new ThreadList(programSize);
+            ThreadList next = new ThreadList(programSize);
+
+            int[] matched = null;
+            int pos = 0;
+
+            while (true) {
+                if (matched == null && (!anchored || pos == 0)) {
+                    // Lowest priority, so earlier starting positions win
+                    addThread(current, 0, pos, trackCaptures ? newCaptures() : null);
+                }
+
+                if (current.size == 0 && (anchored || matched != null)) {
+                    break;
+                }
+
+                int c = pos < length ? Character.codePointAt(input, pos) : -1;
+                int nextPos = c < 0 ? pos : pos + Character.charCount(c);
+
+                for (int i = 0; i < current.size; i++) {
+                    int pc = current.pcs[i];
+                    int[] caps = current.captures[i];
+
+                    if (program.op[pc] == OP_CHAR) {
+                        if (c >= 0 && program.predicates[pc].matches(c)) {
+                            addThread(next, pc + 1, nextPos, caps);
+                        }
+                    } else if (!fullMatch || pos == length) {
+                        // OP_MATCH
+                        if (!trackCaptures) {
+                            return new int[0];
+                        }
+
+                        matched = caps;
+
+                        // Lower priority threads can't produce a preferred match
+                        break;
+                    }
+                }
+
+                if (c < 0) {
+                    break;
+                }
+
+                ThreadList swap = current;
+                current = next;
+                next = swap;
+                next.clear();
+                pos = nextPos;
+            }
+
+            return matched;
+        }
+
+        private int[] newCaptures() {
+            int[] caps = new int[(program.groupCount + 1) * 2];
+            Arrays.fill(caps, -1);
+            return caps;
+        }
+
+        /**
+         * Follow empty transitions from {@code pc}, adding the character and match instructions
+         * that are reached to {@code list} in priority order.
+         */
+        private void addThread(ThreadList list, int pc, int pos, int[] caps) {
+            if (!list.visit(pc)) {
+                return;
+            }
+
+            switch (program.op[pc]) {
+                case OP_JMP:
+                    addThread(list, program.x[pc], pos, caps);
+                    break;
+                case OP_SPLIT:
+                    addThread(list, program.x[pc], pos, caps);
+                    addThread(list, program.y[pc], pos, caps);
+                    break;
+                case OP_SAVE:
+                    if (caps != null) {
+                        caps = caps.clone();
+                        caps[program.x[pc]] = pos;
+                    }
+                    addThread(list, pc + 1, pos, caps);
+                    break;
+                case OP_ASSERT:
+                    if (assertion(program.x[pc], pos)) {
+                        addThread(list, pc + 1, pos, caps);
+                    }
+                    break;
+                case OP_CHAR:
+                case OP_MATCH:
+                default:
+                    list.add(pc, caps);
+                    break;
+            }
+        }
+
+        private boolean assertion(int kind, int pos) {
+            switch (kind) {
+                case ASSERT_BEGIN_TEXT:
+                    return pos == 0;
+                case ASSERT_BEGIN_LINE:
+                    // Like Pattern, never at the end of input, even at the start of empty input
+                    if (pos == length) {
+                        return false;
+                    }
+                    if (pos == 0) {
+                        return true;
+                    }
+                    if (!isLineTerminator(input.charAt(pos - 1))) {
+                        return false;
+                    }
+                    // Not between \r and \n
+                    return !(input.charAt(pos - 1) == '\r' && input.charAt(pos) == '\n');
+                case ASSERT_END_TEXT:
+                    return pos == length;
+                case ASSERT_END_TEXT_OR_FINAL_TERMINATOR:
+                    return isEndOfText(pos);
+                case ASSERT_END_LINE:
+                    if (pos == length) {
+                        return true;
+                    }
+                    if (!isLineTerminator(input.charAt(pos))) {
+                        return false;
+                    }
+                    return !(input.charAt(pos) == '\n' && pos > 0 && input.charAt(pos - 1) == '\r');
+                case ASSERT_WORD_BOUNDARY:
+                    return isWordBoundary(pos);
+                case ASSERT_NOT_WORD_BOUNDARY:
+                    return !isWordBoundary(pos);
+                default:
+                    throw new IllegalStateException("unknown assertion " + kind);
+            }
+        }
+
+        /**
+         * Same as {@code $} without MULTILINE: the end of input, or before a line terminator
+         * that ends the input.
+         */
+        private boolean isEndOfText(int pos) {
+            int remaining = length - pos;
+            if (remaining == 0) {
+                return true;
+            }
+            if (remaining == 2) {
+                return input.charAt(pos) == '\r' && input.charAt(pos + 1) == '\n';
+            }
+            if (remaining == 1 && isLineTerminator(input.charAt(pos))) {
+                return !(input.charAt(pos) == '\n' && pos > 0 && input.charAt(pos - 1) == '\r');
+            }
+
+            return false;
+        }
+
+        private boolean isWordBoundary(int pos) {
+            boolean before = pos > 0 && isWord(Character.codePointBefore(input, pos));
+            boolean after = pos < length && isWord(Character.codePointAt(input, pos));
+            return before != after;
+        }
+    }
+}
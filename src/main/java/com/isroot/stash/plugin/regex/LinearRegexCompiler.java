@@ -0,0 +1,922 @@
+package com.isroot.stash.plugin.regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a {@link java.util.regex} compatible regex and compiles it into a program for the
+ * {@link LinearRegex} virtual machine.
+ * <p>
+ * Only the subset of the syntax that can be evaluated without backtracking is accepted. Anything
+ * else results in an {@link UnsupportedRegexException}, in which case the caller is expected to
+ * fall back to {@link Pattern}. The regex is assumed to already have been validated by
+ * {@link Pattern#compile(String, int)}, so syntax errors are also reported as unsupported.
+ *
+ * @since 2026-10-18
+ */
+class LinearRegexCompiler {
+    static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL;
+
+    /**
+     * Counted repetition is expanded, so large counts can blow up the program size. The
+     * simulation cost grows with program size, so keep it bounded.
+     */
+    static final int MAX_INSTRUCTIONS = 10000;
+
+    static final int OP_CHAR = 0;
+    static final int OP_MATCH = 1;
+    static final int OP_JMP = 2;
+    static final int OP_SPLIT = 3;
+    static final int OP_SAVE = 4;
+    static final int OP_ASSERT = 5;
+
+    static final int ASSERT_BEGIN_TEXT = 0;
+    static final int ASSERT_BEGIN_LINE = 1;
+    static final int ASSERT_END_TEXT = 2;
+    static final int ASSERT_END_TEXT_OR_FINAL_TERMINATOR = 3;
+    static final int ASSERT_END_LINE = 4;
+    static final int ASSERT_WORD_BOUNDARY = 5;
+    static final int ASSERT_NOT_WORD_BOUNDARY = 6;
+
+    private static final CharPredicate DIGIT = c -> c >= '0' && c <= '9';
+    private static final CharPredicate WORD = c -> (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+            || (c >= '0' && c <= '9') || c == '_';
+    private static final CharPredicate SPACE = c -> c == ' ' || c == '\t' || c == '\n'
+            || c == '\u000B' || c == '\f' || c == '\r';
+    private static final CharPredicate NOT_LINE_TERMINATOR = c -> !isLineTerminator(c);
+    private static final CharPredicate ANY = c -> true;
+
+    private final String regex;
+    private int pos;
+    private int flags;
+    private int groups;
+
+    private final List<int[]> code = new ArrayList<>();
+    private final List<CharPredicate> predicates = new ArrayList<>();
+
+    private LinearRegexCompiler(String regex, int flags) {
+        this.regex = regex;
+        this.flags = flags;
+    }
+
+    /**
+     * Compiled program. Instruction {@code i} is {@code op[i]} with operands {@code x[i]} and
+     * {@code y[i]}; character instructions use {@code predicates[i]}.
+     */
+    static class Program {
+        final int[] op;
+        final int[] x;
+        final int[] y;
+        final CharPredicate[] predicates;
+        final int groupCount;
+
+        private Program(List<int[]> code, List<CharPredicate> predicates, int groupCount) {
+            int size = code.size();
+            this.op = new int[size];
+            this.x = new int[size];
+            this.y = new int[size];
+            this.predicates = predicates.toArray(new CharPredicate[size]);
+            this.groupCount = groupCount;
+
+            for (int i = 0; i < size; i++) {
+                op[i] = code.get(i)[0];
+                x[i] = code.get(i)[1];
+                y[i] = code.get(i)[2];
+            }
+        }
+
+        int size() {
+            return op.length;
+        }
+    }
+
+    interface CharPredicate {
+        boolean matches(int c);
+
+        default CharPredicate negate() {
+            return c -> !matches(c);
+        }
+    }
+
+    static Program compile(String regex, int flags) {
+        if ((flags & ~SUPPORTED_FLAGS) != 0) {
+            throw new UnsupportedRegexException("only the CASE_INSENSITIVE, MULTILINE and DOTALL "
+                    + "flags are supported");
+        }
+
+        LinearRegexCompiler compiler = new LinearRegexCompiler(regex, flags);
+        Node node = compiler.parseAlternation();
+        if (compiler.pos < regex.length()) {
+            throw compiler.unsupported("unmatched ')'");
+        }
+
+        // Group 0 spans the whole match
+        compiler.emit(OP_SAVE, 0, 0, null);
+        node.emit(compiler);
+        compiler.emit(OP_SAVE, 1, 0, null);
+        compiler.emit(OP_MATCH, 0, 0, null);
+
+        return new Program(compiler.code, compiler.predicates, compiler.groups);
+    }
+
+    static boolean isLineTerminator(int c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    static boolean isWord(int c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private UnsupportedRegexException unsupported(String reason) {
+        return new UnsupportedRegexException(reason + " near index " + pos);
+    }
+
+    private int emit(int op, int x, int y, CharPredicate predicate) {
+        if (code.size() >= MAX_INSTRUCTIONS) {
+            throw new UnsupportedRegexException("regex is too large, reduce counted repetitions "
+                    + "like {1000}");
+        }
+
+        code.add(new int[] {op, x, y});
+        predicates.add(predicate);
+        return code.size() - 1;
+    }
+
+    private void patch(int pc, int x, int y) {
+        code.get(pc)[1] = x;
+        code.get(pc)[2] = y;
+    }
+
+    private int next() {
+        return code.size();
+    }
+
+    // Parsing
+
+    private boolean more() {
+        return pos < regex.length();
+    }
+
+    private int peek() {
+        return regex.codePointAt(pos);
+    }
+
+    private boolean lookingAt(String s) {
+        return regex.startsWith(s, pos);
+    }
+
+    private int read() {
+        int c = regex.codePointAt(pos);
+        pos += Character.charCount(c);
+        return c;
+    }
+
+    private void expect(int c) {
+        if (!more() || read() != c) {
+            throw unsupported("expected '" + new String(Character.toChars(c)) + "'");
+        }
+    }
+
+    private Node parseAlternation() {
+        List<Node> alternatives = new ArrayList<>();
+        alternatives.add(parseConcatenation());
+
+        while (more() && peek() == '|') {
+            pos++;
+            alternatives.add(parseConcatenation());
+        }
+
+        return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+    }
+
+    private Node parseConcatenation() {
+        List<Node> nodes = new ArrayList<>();
+
+        while (more() && peek() != '|' && peek() != ')') {
+            Node atom = parseAtom();
+            if (atom != null) {
+                nodes.add(parseQuantifier(atom));
+            }
+        }
+
+        return nodes.size() == 1 ? nodes.get(0) : new Concatenation(nodes);
+    }
+
+    private Node parseQuantifier(Node atom) {
+        if (!more() || !isQuantifier(peek())) {
+            return atom;
+        }
+
+        int min;
+        int max;
+
+        boolean counted = false;
+
+        int c = read();
+        if (c == '*') {
+            min = 0;
+            max = -1;
+        } else if (c == '+') {
+            min = 1;
+            max = -1;
+        } else if (c == '?') {
+            min = 0;
+            max = 1;
+        } else {
+            counted = true;
+            min = readNumber();
+            max = min;
+            if (more() && peek() == ',') {
+                pos++;
+                max = more() && peek() == '}' ? -1 : readNumber();
+            }
+            expect('}');
+        }
+
+        boolean greedy = true;
+        if (more() && peek() == '?') {
+            pos++;
+            greedy = false;
+        } else if (more() && peek() == '+') {
+            throw unsupported("possessive quantifiers are not supported");
+        }
+
+        if (more() && isQuantifier(peek())) {
+            // Pattern applies a quantifier that follows another one in its own way, for
+            // example a{2}{3} matches "aa" but not "aaaaaa"
+            throw unsupported("a quantifier directly after another quantifier is not supported");
+        }
+
+        if (atom.isNullable()) {
+            // Pattern ends a repetition at the first iteration that matches nothing, which
+            // changes both groups and, for counted repetition, whether the regex matches
+            throw unsupported("repetition of an expression that can match nothing is not "
+                    + "supported");
+        }
+
+        // Pattern only restores the groups of an abandoned iteration when the repetition is
+        // not counted and applies to a single capturing group without groups inside it
+        boolean nestedGroups = atom instanceof Group
+                ? ((Group) atom).node.hasGroup()
+                : atom.hasGroup();
+        if (nestedGroups || (counted && atom.hasGroup())) {
+            throw unsupported("groups inside counted repetition or inside a repeated "
+                    + "non-capturing group are not supported");
+        }
+
+        return new Repeat(atom, min, max, greedy);
+    }
+
+    private static boolean isQuantifier(int c) {
+        return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    private int readNumber() {
+        int start = pos;
+        while (more() && peek() >= '0' && peek() <= '9') {
+            pos++;
+        }
+
+        if (start == pos || pos - start > 6) {
+            throw unsupported("invalid repetition count");
+        }
+
+        return Integer.parseInt(regex.substring(start, pos));
+    }
+
+    /**
+     * Parse a single atom. Returns null for constructs that only change parser state, like
+     * {@code (?i)}.
+     */
+    private Node parseAtom() {
+        int c = read();
+
+        switch (c) {
+            case '(':
+                return parseGroup();
+            case '[':
+                return new CharNode(foldCase(parseCharacterClass()));
+            case '.':
+                return new CharNode(has(Pattern.DOTALL) ? ANY : NOT_LINE_TERMINATOR);
+            case '^':
+                return new AssertNode(has(Pattern.MULTILINE) ? ASSERT_BEGIN_LINE : ASSERT_BEGIN_TEXT);
+            case '$':
+                return new AssertNode(has(Pattern.MULTILINE) ? ASSERT_END_LINE
+                        : ASSERT_END_TEXT_OR_FINAL_TERMINATOR);
+            case '\\':
+                return parseEscape();
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw unsupported("dangling quantifier");
+            default:
+                return new CharNode(literal(c));
+        }
+    }
+
+    private Node parseGroup() {
+        int savedFlags = flags;
+        int group = -1;
+
+        if (lookingAt("?")) {
+            pos++;
+            if (lookingAt(":")) {
+                pos++;
+            } else if (lookingAt("<=") || lookingAt("<!") || lookingAt("=") || lookingAt("!")) {
+                throw unsupported("lookaround is not supported");
+            } else if (lookingAt(">")) {
+                throw unsupported("atomic groups are not supported");
+            } else if (lookingAt("<")) {
+                pos++;
+                while (more() && peek() != '>') {
+                    pos++;
+                }
+                expect('>');
+                group = ++groups;
+            } else {
+                parseInlineFlags();
+                if (lookingAt(")")) {
+                    // (?i) applies to the rest of the enclosing group, so keep the new flags
+                    pos++;
+                    return null;
+                }
+                expect(':');
+            }
+        } else {
+            group = ++groups;
+        }
+
+        Node node = parseAlternation();
+        expect(')');
+        flags = savedFlags;
+
+        if (group < 0) {
+            // Kept apart from a capturing group directly inside it, which is repeated differently
+            return new Concatenation(Collections.singletonList(node));
+        }
+
+        return new Group(node, group);
+    }
+
+    private void parseInlineFlags() {
+        boolean enable = true;
+
+        while (more() && peek() != ')' && peek() != ':') {
+            int c = read();
+            int flag;
+            switch (c) {
+                case '-':
+                    enable = false;
+                    continue;
+                case 'i':
+                    flag = Pattern.CASE_INSENSITIVE;
+                    break;
+                case 'm':
+                    flag = Pattern.MULTILINE;
+                    break;
+                case 's':
+                    flag = Pattern.DOTALL;
+                    break;
+                default:
+                    throw unsupported("embedded flag '" + (char) c + "' is not supported");
+            }
+
+            flags = enable ? flags | flag : flags & ~flag;
+        }
+    }
+
+    private Node parseEscape() {
+        if (!more()) {
+            throw unsupported("trailing backslash");
+        }
+
+        int c = peek();
+        switch (c) {
+            case 'b':
+                pos++;
+                return new AssertNode(ASSERT_WORD_BOUNDARY);
+            case 'B':
+                pos++;
+                return new AssertNode(ASSERT_NOT_WORD_BOUNDARY);
+            case 'A':
+                pos++;
+                return new AssertNode(ASSERT_BEGIN_TEXT);
+            case 'z':
+                pos++;
+                return new AssertNode(ASSERT_END_TEXT);
+            case 'Z':
+                pos++;
+                return new AssertNode(ASSERT_END_TEXT_OR_FINAL_TERMINATOR);
+            case 'Q':
+                pos++;
+                return parseQuoted();
+            default:
+                CharPredicate predicate = parseCharacterEscape();
+                return new CharNode(predicate);
+        }
+    }
+
+    private Node parseQuoted() {
+        int end = regex.indexOf("\\E", pos);
+        String quoted = end < 0 ? regex.substring(pos) : regex.substring(pos, end);
+        pos = end < 0 ? regex.length() : end + 2;
+
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < quoted.length(); ) {
+            int c = quoted.codePointAt(i);
+            nodes.add(new CharNode(literal(c)));
+            i += Character.charCount(c);
+        }
+
+        return new Concatenation(nodes);
+    }
+
+    /**
+     * Parse an escape that matches a single character, after the backslash. Used both inside
+     * and outside of character classes.
+     */
+    private CharPredicate parseCharacterEscape() {
+        int c = read();
+
+        switch (c) {
+            case 'd':
+                return DIGIT;
+            case 'D':
+                return DIGIT.negate();
+            case 'w':
+                return WORD;
+            case 'W':
+                return WORD.negate();
+            case 's':
+                return SPACE;
+            case 'S':
+                return SPACE.negate();
+            case 't':
+                return literal('\t');
+            case 'n':
+                return literal('\n');
+            case 'r':
+                return literal('\r');
+            case 'f':
+                return literal('\f');
+            case 'a':
+                return literal('\u0007');
+            case 'e':
+                return literal('\u001B');
+            case 'x':
+                return literal(parseHexEscape());
+            case 'u':
+                return literal(parseHex(4));
+            case '0':
+                return literal(parseOctalEscape());
+            case 'c':
+                if (!more()) {
+                    throw unsupported("missing control character");
+                }
+                return literal(read() ^ 64);
+            default:
+                if (c >= '1' && c <= '9') {
+                    throw unsupported("backreferences are not supported");
+                }
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                    throw unsupported("escape '\\" + (char) c + "' is not supported");
+                }
+                return literal(c);
+        }
+    }
+
+    private int parseHexEscape() {
+        if (lookingAt("{")) {
+            pos++;
+            int end = regex.indexOf('}', pos);
+            if (end < 0) {
+                throw unsupported("unclosed hexadecimal escape");
+            }
+            int value = parseHex(end - pos);
+            pos++;
+            return value;
+        }
+
+        return parseHex(2);
+    }
+
+    private int parseHex(int digits) {
+        if (digits <= 0 || digits > 6 || pos + digits > regex.length()) {
+            throw unsupported("invalid hexadecimal escape");
+        }
+
+        try {
+            int value = Integer.parseInt(regex.substring(pos, pos + digits), 16);
+            pos += digits;
+            return value;
+        } catch (NumberFormatException e) {
+            throw unsupported("invalid hexadecimal escape");
+        }
+    }
+
+    private int parseOctalEscape() {
+        int value = 0;
+        int digits = 0;
+
+        // Same rules as Pattern: up to three digits, as long as the value stays below 0377
+        while (more() && peek() >= '0' && peek() <= '7' && digits < 3) {
+            int candidate = value * 8 + (peek() - '0');
+            if (candidate > 0377) {
+                break;
+            }
+            value = candidate;
+            digits++;
+            pos++;
+        }
+
+        if (digits == 0) {
+            throw unsupported("invalid octal escape");
+        }
+
+        return value;
+    }
+
+    /**
+     * Parse a character class after the opening bracket.
+     */
+    private CharPredicate parseCharacterClass() {
+        boolean negated = false;
+        if (lookingAt("^")) {
+            pos++;
+            negated = true;
+        }
+
+        List<CharPredicate> members = new ArrayList<>();
+        boolean first = true;
+
+        while (true) {
+            if (!more()) {
+                throw unsupported("unclosed character class");
+            }
+
+            int c = peek();
+            if (c == ']' && !first) {
+                pos++;
+                break;
+            }
+            if (c == '[' || lookingAt("&&") || (c == ']' && first)) {
+                throw unsupported("nested character classes are not supported");
+            }
+            first = false;
+
+            CharPredicate member;
+            int low;
+            if (c == '\\') {
+                pos++;
+                int escapeStart = pos;
+                member = parseCharacterEscape();
+                low = singleCharacter(escapeStart);
+            } else {
+                low = read();
+                member = literalExact(low);
+            }
+
+            // Range, unless the dash is the last character of the class
+            if (low >= 0 && lookingAt("-") && pos + 1 < regex.length()
+                    && regex.charAt(pos + 1) != ']') {
+                pos++;
+                int high;
+                if (lookingAt("\\")) {
+                    pos++;
+                    int escapeStart = pos;
+                    parseCharacterEscape();
+                    high = singleCharacter(escapeStart);
+                } else if (lookingAt("[")) {
+                    throw unsupported("nested character classes are not supported");
+                } else {
+                    high = read();
+                }
+
+                if (high < 0 || high < low) {
+                    throw unsupported("invalid character range");
+                }
+
+                final int rangeLow = low;
+                final int rangeHigh = high;
+                member = ch -> ch >= rangeLow && ch <= rangeHigh;
+            }
+
+            members.add(member);
+        }
+
+        CharPredicate[] union = members.toArray(new CharPredicate[members.size()]);
+        CharPredicate predicate = ch -> {
+            for (CharPredicate member : union) {
+                if (member.matches(ch)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+
+        if (negated) {
+            // Case folding has to apply before negation, so [^a] with CASE_INSENSITIVE does not
+            // match 'A'. The caller folds case again, which is harmless for a negated class.
+            return foldCase(predicate).negate();
+        }
+
+        return predicate;
+    }
+
+    /**
+     * Return the character an escape starting at {@code start} denotes, or -1 if the escape is
+     * a character class like {@code \d}.
+     */
+    private int singleCharacter(int start) {
+        int c = regex.codePointAt(start);
+        switch (c) {
+            case 'd':
+            case 'D':
+            case 'w':
+            case 'W':
+            case 's':
+            case 'S':
+                return -1;
+            default:
+                // Re-parse the escape to get its value without building a predicate
+                int end = pos;
+                pos = start;
+                int value = escapeValue();
+                pos = end;
+                return value;
+        }
+    }
+
+    private int escapeValue() {
+        int c = read();
+        switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'a':
+                return '\u0007';
+            case 'e':
+                return '\u001B';
+            case 'x':
+                return parseHexEscape();
+            case 'u':
+                return parseHex(4);
+            case '0':
+                return parseOctalEscape();
+            case 'c':
+                return read() ^ 64;
+            default:
+                return c;
+        }
+    }
+
+    private boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    private CharPredicate literal(int c) {
+        return foldCase(literalExact(c));
+    }
+
+    private static CharPredicate literalExact(int c) {
+        return ch -> ch == c;
+    }
+
+    /**
+     * Apply {@link Pattern#CASE_INSENSITIVE} if it is enabled. Like {@link Pattern} without
+     * UNICODE_CASE, only US-ASCII letters are folded.
+     */
+    private CharPredicate foldCase(CharPredicate predicate) {
+        if (!has(Pattern.CASE_INSENSITIVE)) {
+            return predicate;
+        }
+
+        return ch -> predicate.matches(ch) || (isAsciiLetter(ch) && predicate.matches(ch ^ 0x20));
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    // Syntax tree
+
+    private interface Node {
+        void emit(LinearRegexCompiler compiler);
+
+        /**
+         * Return true if the node can match without consuming any input.
+         */
+        boolean isNullable();
+
+        /**
+         * Return true if the node contains a capturing group.
+         */
+        boolean hasGroup();
+    }
+
+    private static class CharNode implements Node {
+        private final CharPredicate predicate;
+
+        CharNode(CharPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public void emit(LinearRegexCompiler compiler) {
+            compiler.emit(OP_CHAR, 0, 0, predicate);
+        }
+
+        @Override
+        public boolean isNullable() {
+            return false;
+        }
+
+        @Override
+        public boolean hasGroup() {
+            return false;
+        }
+
+    }
+
+    private static class AssertNode implements Node {
+        private final int kind;
+
+        AssertNode(int kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public void emit(LinearRegexCompiler compiler) {
+            compiler.emit(OP_ASSERT, kind, 0, null);
+        }
+
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+
+        @Override
+        public boolean hasGroup() {
+            return false;
+        }
+
+    }
+
+    private static class Concatenation implements Node {
+        private final List<Node> nodes;
+
+        Concatenation(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public void emit(LinearRegexCompiler compiler) {
+            for (Node node : nodes) {
+                node.emit(compiler);
+            }
+        }
+
+        @Override
+        public boolean isNullable() {
+            return nodes.stream().allMatch(Node::isNullable);
+        }
+
+        @Override
+        public boolean hasGroup() {
+            return nodes.stream().anyMatch(Node::hasGroup);
+        }
+
+    }
+
+    private static class Alternation implements Node {
+        private final List<Node> alternatives;
+
+        Alternation(List<Node> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        @Override
+        public void emit(LinearRegexCompiler compiler) {
+            List<Integer> jumps = new ArrayList<>();
+
+            for (int i = 0; i < alternatives.size() - 1; i++) {
+                int split = compiler.emit(OP_SPLIT, 0, 0, null);
+                alternatives.get(i).emit(compiler);
+                jumps.add(compiler.emit(OP_JMP, 0, 0, null));
+                compiler.patch(split, split + 1, compiler.next());
+            }
+            alternatives.get(alternatives.size() - 1).emit(compiler);
+
+            for (int jump : jumps) {
+                compiler.patch(jump, compiler.next(), 0);
+            }
+        }
+
+        @Override
+        public boolean isNullable() {
+            return alternatives.stream().anyMatch(Node::isNullable);
+        }
+
+        @Override
+        public boolean hasGroup() {
+            return alternatives.stream().anyMatch(Node::hasGroup);
+        }
+
+    }
+
+    private static class Group implements Node {
+        private final Node node;
+        private final int group;
+
+        Group(Node node, int group) {
+            this.node = node;
+            this.group = group;
+        }
+
+        @Override
+        public void emit(LinearRegexCompiler compiler) {
+            compiler.emit(OP_SAVE, group * 2, 0, null);
+            node.emit(compiler);
+            compiler.emit(OP_SAVE, group * 2 + 1, 0, null);
+        }
+
+        @Override
+        public boolean isNullable() {
+            return node.isNullable();
+        }
+
+        @Override
+        public boolean hasGroup() {
+            return true;
+        }
+
+    }
+
+    private static class Repeat implements Node {
+        private final Node node;
+        private final int min;
+        private final int max;
+        private final boolean greedy;
+
+        Repeat(Node node, int min, int max, boolean greedy) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.greedy = greedy;
+        }
+
+        @Override
+        public void emit(LinearRegexCompiler compiler) {
+            for (int i = 0; i < min; i++) {
+                node.emit(compiler);
+            }
+
+            if (max < 0) {
+                // L: split body, out; body; jmp L
+                int split = compiler.emit(OP_SPLIT, 0, 0, null);
+                node.emit(compiler);
+                compiler.emit(OP_JMP, split, 0, null);
+                branch(compiler, split, split + 1, compiler.next());
+                return;
+            }
+
+            // x{0,3} is compiled as (x(x(x)?)?)?, every split skips to the end
+            List<Integer> splits = new ArrayList<>();
+            for (int i = min; i < max; i++) {
+                splits.add(compiler.emit(OP_SPLIT, 0, 0, null));
+                node.emit(compiler);
+            }
+
+            for (int split : splits) {
+                branch(compiler, split, split + 1, compiler.next());
+            }
+        }
+
+        @Override
+        public boolean isNullable() {
+            return min == 0 || node.isNullable();
+        }
+
+        @Override
+        public boolean hasGroup() {
+            return node.hasGroup();
+        }
+
+
+        private void branch(LinearRegexCompiler compiler, int split, int body, int out) {
+            if (greedy) {
+                compiler.patch(split, body, out);
+            } else {
+                compiler.patch(split, out, body);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.isroot.stash.plugin.regex;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.isroot.stash.plugin.YaccMetrics;
+
+import javax.annotation.Nonnull;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded cache of compiled {@link Pattern}s keyed by regex and flags.
+ * <p>
+ * Most repositories share the same handful of global or project level regexes, so a single
+ * process-wide instance is used by every place in the plugin that compiles a user supplied
+ * regex. Least recently used patterns are evicted once the cache is full. Its hit, miss and
+ * eviction counts are shown as the {@code regex.cache.*} metrics.
+ *
+ * @since 2026-10-18
+ */
+public class PatternCache {
+    private static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private static final PatternCache INSTANCE = createInstance();
+
+    private final Cache<Key, Pattern> cache;
+
+    public PatternCache(int maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    private static PatternCache createInstance() {
+        PatternCache instance = new PatternCache(DEFAULT_MAXIMUM_SIZE);
+
+        YaccMetrics.registerGauge("regex.cache.size", instance::size);
+        YaccMetrics.registerGauge("regex.cache.hits", () -> instance.getStats().hitCount());
+        YaccMetrics.registerGauge("regex.cache.misses", () -> instance.getStats().missCount());
+        YaccMetrics.registerGauge("regex.cache.evictions",
+                () -> instance.getStats().evictionCount());
+
+        return instance;
+    }
+
+    /**
+     * Return the process-wide pattern cache.
+     */
+    public static PatternCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return compiled pattern for regex.
+     *
+     * @throws PatternSyntaxException if the regex is invalid. Invalid regexes are not cached.
+     */
+    @Nonnull
+    public Pattern compile(@Nonnull String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Return compiled pattern for regex and {@link Pattern} flags.
+     *
+     * @throws PatternSyntaxException if the regex is invalid. Invalid regexes are not cached.
+     */
+    @Nonnull
+    public Pattern compile(@Nonnull String regex, int flags) {
+        checkNotNull(regex, "regex is null");
+
+        Key key = new Key(regex, flags);
+
+        Pattern pattern = cache.getIfPresent(key);
+        if (pattern == null) {
+            // Compiling twice under a race is harmless, Patterns are immutable.
+            pattern = Pattern.compile(regex, flags);
+            cache.put(key, pattern);
+        }
+
+        return pattern;
+    }
+
+    /**
+     * Return hit, miss and eviction counts.
+     */
+    @Nonnull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static final class Key {
+        private final String regex;
+        private final int flags;
+
+        private Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return flags == key.flags && regex.equals(key.regex);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + flags;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.isroot.stash.plugin.regex;
+
+import javax.annotation.Nonnull;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a regex against synthetic inputs that tend to trigger catastrophic backtracking, so that
+ * dangerous regexes can be reported when settings are saved rather than when a push hangs.
+ * <p>
+ * The inputs are long runs of a single character followed by a character that is unlikely to
+ * match. Runs are built from a few common characters plus the literal characters used in the
+ * regex itself, which covers the classic nested quantifier cases like {@code (a+)+$} or
+ * {@code (.*,)*x}. The probe is a heuristic; a regex that passes is not guaranteed to be safe.
+ *
+ * @since 2026-10-18
+ */
+public class RegexProbe {
+    private static final int[] RUN_LENGTHS = {32, 4096};
+    private static final String COMMON_CHARACTERS = "aA0 -_.,:\n";
+    private static final int MAX_PROBE_CHARACTERS = 24;
+    private static final char TERMINATOR = '\u0000';
+
+    private RegexProbe() {
+    }
+
+    /**
+     * Return true if any probe input makes {@link java.util.regex.Matcher#matches()} run longer
+     * than {@code budgetMillis}.
+     */
+    public static boolean exceedsMatchBudget(@Nonnull Pattern pattern, long budgetMillis) {
+        return exceedsBudget(pattern, budgetMillis, false);
+    }
+
+    /**
+     * Return true if any probe input makes {@link java.util.regex.Matcher#find()} run longer
+     * than {@code budgetMillis}.
+     */
+    public static boolean exceedsFindBudget(@Nonnull Pattern pattern, long budgetMillis) {
+        return exceedsBudget(pattern, budgetMillis, true);
+    }
+
+    private static boolean exceedsBudget(Pattern pattern, long budgetMillis, boolean find) {
+        // Slow but finite regexes could otherwise take budget * probes to check
+        long probeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis * 4);
+
+        for (char c : getProbeCharacters(pattern.pattern())) {
+            for (int length : RUN_LENGTHS) {
+                CharSequence input = new TimeLimitedCharSequence(repeat(c, length) + TERMINATOR,
+                        budgetMillis);
+
+                try {
+                    if (find) {
+                        pattern.matcher(input).find();
+                    } else {
+                        pattern.matcher(input).matches();
+                    }
+                } catch (RegexTimeoutException e) {
+                    return true;
+                }
+
+                if (System.nanoTime() - probeDeadline > 0) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Set<Character> getProbeCharacters(String regex) {
+        Set<Character> characters = new LinkedHashSet<>();
+
+        for (char c : COMMON_CHARACTERS.toCharArray()) {
+            characters.add(c);
+        }
+
+        for (int i = 0; i < regex.length() && characters.size() < MAX_PROBE_CHARACTERS; i++) {
+            char c = regex.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '@' || c == '/' || c == '#') {
+                characters.add(c);
+            }
+        }
+
+        return characters;
+    }
+
+    private static String repeat(char c, int length) {
+        StringBuilder sb = new StringBuilder(length + 1);
+        for (int i = 0; i < length; i++) {
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.isroot.stash.plugin.regex;
+
+/**
+ * Thrown when evaluating a regex takes longer than its time budget.
+ *
+ * @since 2026-10-18
+ */
+public class RegexTimeoutException extends RuntimeException {
+    private final long budgetMillis;
+
+    public RegexTimeoutException(long budgetMillis) {
+        super("Regex evaluation exceeded time budget of " + budgetMillis + " ms");
+        this.budgetMillis = budgetMillis;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
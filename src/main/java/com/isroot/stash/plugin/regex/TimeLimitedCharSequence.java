@@ -0,0 +1,63 @@
+package com.isroot.stash.plugin.regex;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CharSequence} that throws {@link RegexTimeoutException} once a deadline has passed.
+ * <p>
+ * java.util.regex has no way to interrupt a running match, however, a match that is stuck
+ * backtracking keeps reading characters from its input. Wrapping the input in this class bounds
+ * how long a single match can run. The clock is only checked every {@link #CHECK_INTERVAL} reads
+ * to keep the overhead for normal matches low.
+ * <p>
+ * Instances are not thread safe and are meant to be used for a single match.
+ *
+ * @since 2026-10-18
+ */
+public class TimeLimitedCharSequence implements CharSequence {
+    static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence sequence;
+    private final long deadlineNanos;
+    private final long budgetMillis;
+
+    private int reads;
+
+    public TimeLimitedCharSequence(@Nonnull CharSequence sequence, long budgetMillis) {
+        this(sequence, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis),
+                budgetMillis);
+    }
+
+    private TimeLimitedCharSequence(CharSequence sequence, long deadlineNanos, long budgetMillis) {
+        this.sequence = sequence;
+        this.deadlineNanos = deadlineNanos;
+        this.budgetMillis = budgetMillis;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if ((++reads & (CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new RegexTimeoutException(budgetMillis);
+        }
+
+        return sequence.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return sequence.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new TimeLimitedCharSequence(sequence.subSequence(start, end), deadlineNanos,
+                budgetMillis);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return sequence.toString();
+    }
+}
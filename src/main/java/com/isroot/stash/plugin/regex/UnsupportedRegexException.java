@@ -0,0 +1,13 @@
+package com.isroot.stash.plugin.regex;
+
+/**
+ * Thrown when a regex uses a feature that the {@link LinearRegex} engine cannot evaluate in
+ * linear time, such as backreferences or lookaround.
+ *
+ * @since 2026-10-18
+ */
+public class UnsupportedRegexException extends RuntimeException {
+    public UnsupportedRegexException(String message) {
+        super(message);
+    }
+}
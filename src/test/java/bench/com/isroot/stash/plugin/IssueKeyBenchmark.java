@@ -0,0 +1,89 @@
+package bench.com.isroot.stash.plugin;
+
+import com.isroot.stash.plugin.IssueKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link IssueKey#parseIssueKeys(CharSequence)} against the regex based implementation
+ * it replaced, on commit messages of a few typical shapes.
+ * <p>
+ * Run with:
+ * <pre>
+ * atlas-mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main IssueKeyBenchmark
+ * </pre>
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IssueKeyBenchmark {
+    private static final Pattern ISSUE_PATTERN = Pattern.compile("([A-Z][A-Z_0-9]+)-([0-9]+)");
+
+    private static final String SUBJECT_ONLY = "PROJ-123: Fix NPE when saving empty settings";
+
+    private static final String NO_ISSUE = "Merge branch 'master' into feature/cleanup\n\n"
+            + "Conflicts:\n\tsrc/main/java/com/isroot/stash/plugin/YaccServiceImpl.java";
+
+    private static final String WITH_BODY = "PROJ-123: Support UTF-8 commit messages\n\n"
+            + "Messages were decoded with the platform charset, which broke on\n"
+            + "servers running with a non UTF-8 default. See also PROJ-99 and\n"
+            + "OTHER_TEAM-4521 for the original reports.\n\n"
+            + "Signed-off-by: Jane Smith <jsmith@example.com>";
+
+    @Param({"subjectOnly", "noIssue", "withBody"})
+    public String message;
+
+    private String input;
+
+    @Setup
+    public void setup() {
+        switch (message) {
+            case "subjectOnly":
+                input = SUBJECT_ONLY;
+                break;
+            case "noIssue":
+                input = NO_ISSUE;
+                break;
+            default:
+                input = WITH_BODY;
+                break;
+        }
+    }
+
+    @Benchmark
+    public List<IssueKey> scanner() {
+        return IssueKey.parseIssueKeys(input);
+    }
+
+    @Benchmark
+    public List<IssueKey> regex() {
+        List<IssueKey> issueKeys = new ArrayList<>();
+        Matcher matcher = ISSUE_PATTERN.matcher(input);
+        while (matcher.find()) {
+            issueKeys.add(new IssueKey(matcher.group(1), matcher.group(2)));
+        }
+
+        return issueKeys;
+    }
+}
@@ -3,6 +3,7 @@ package ut.com.isroot.stash.plugin;
 import com.atlassian.bitbucket.scope.Scope;
 import com.atlassian.bitbucket.setting.Settings;
 import com.atlassian.bitbucket.setting.SettingsValidationErrors;
+import com.google.common.collect.ImmutableMap;
 import com.isroot.stash.plugin.ConfigValidator;
 import com.isroot.stash.plugin.JiraService;
 import org.junit.Before;
@@ -12,8 +13,11 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -27,6 +31,7 @@ public class ConfigValidatorTest {
     @Mock private Settings settings;
     @Mock private SettingsValidationErrors settingsValidationErrors;
     @Mock private Scope scope;
+    @Mock private BiConsumer<String, String> warnings;
 
     private ConfigValidator configValidator;
 
@@ -189,6 +194,88 @@ public class ConfigValidatorTest {
                 ")");
     }
 
+    @Test
+    public void testValidate_commitMessageRegex_catastrophicBacktrackingIsAWarning() {
+        when(settings.getString("commitMessageRegex")).thenReturn("(a+)+$");
+
+        configValidator.validate(settings, settingsValidationErrors, scope, warnings);
+
+        verify(warnings).accept(eq("commitMessageRegex"),
+                startsWith("Regex took longer than 1000 ms on a test input"));
+        verifyZeroInteractions(settingsValidationErrors);
+    }
+
+    @Test
+    public void testValidate_regexTimeoutMillis_zeroDisablesProbe() {
+        when(settings.asMap()).thenReturn(ImmutableMap.<String, Object>of("regexTimeoutMillis", "0"));
+        when(settings.getString("commitMessageRegex")).thenReturn("(a+)+$");
+
+        configValidator.validate(settings, settingsValidationErrors, scope, warnings);
+
+        verifyZeroInteractions(settingsValidationErrors, warnings);
+    }
+
+    @Test
+    public void testValidate_regexTimeoutMillis_mustBeNonNegativeNumber() {
+        when(settings.asMap()).thenReturn(ImmutableMap.<String, Object>of("regexTimeoutMillis", "-5"));
+
+        configValidator.validate(settings, settingsValidationErrors, scope);
+
+        verify(settingsValidationErrors).addFieldError("regexTimeoutMillis",
+                "Must be zero or a positive number of milliseconds.");
+    }
+
+    @Test
+    public void testValidate_pushTimeBudget_invalidValues() {
+        when(settings.asMap()).thenReturn(ImmutableMap.<String, Object>of(
+                "pushTimeBudgetMillis", "soon",
+                "pushTimeBudgetPolicy", "ignore"));
+
+        configValidator.validate(settings, settingsValidationErrors, scope);
+
+        verify(settingsValidationErrors).addFieldError("pushTimeBudgetMillis",
+                "Must be zero or a positive number of milliseconds.");
+        verify(settingsValidationErrors).addFieldError("pushTimeBudgetPolicy",
+                "Must be one of reject, accept or audit.");
+    }
+
+    @Test
+    public void testValidate_useLinearRegexEngine_skipsBacktrackingProbe() {
+        when(settings.getBoolean("useLinearRegexEngine", false)).thenReturn(true);
+        when(settings.getString("commitMessageRegex")).thenReturn("(a+)+$");
+
+        configValidator.validate(settings, settingsValidationErrors, scope);
+
+        verifyZeroInteractions(settingsValidationErrors);
+    }
+
+    @Test
+    public void testValidate_useLinearRegexEngine_unsupportedRegexIsAWarning() {
+        when(settings.getBoolean("useLinearRegexEngine", false)).thenReturn(true);
+        when(settings.getString("excludeByRegex")).thenReturn("(\\w+) \\1");
+
+        configValidator.validate(settings, settingsValidationErrors, scope, warnings);
+
+        verify(warnings).accept("excludeByRegex",
+                "Regex is not supported by the linear-time regex engine: backreferences are not "
+                        + "supported near index 8. The standard java.util.regex engine will be used "
+                        + "for it.");
+        verifyZeroInteractions(settingsValidationErrors);
+    }
+
+    @Test
+    public void testValidate_useLinearRegexEngine_unsupportedRegexIsProbed() {
+        when(settings.getBoolean("useLinearRegexEngine", false)).thenReturn(true);
+        when(settings.getString("commitMessageRegex")).thenReturn("(a+)+(?=b)$");
+
+        configValidator.validate(settings, settingsValidationErrors, scope, warnings);
+
+        verify(warnings).accept(eq("commitMessageRegex"),
+                startsWith("Regex is not supported by the linear-time regex engine"));
+        verify(warnings).accept(eq("commitMessageRegex"),
+                startsWith("Regex took longer than 1000 ms on a test input"));
+    }
+
     @Test
     public void testValidate_committerEmailRegex_isValidated() {
         when(settings.getString("committerEmailRegex")).thenReturn(")");
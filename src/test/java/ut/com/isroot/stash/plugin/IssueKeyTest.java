@@ -27,6 +27,22 @@ public class IssueKeyTest {
                 new IssueKey("CBA", "321"), new IssueKey("UNDER_SCORE", "123"));
     }
 
+    @Test
+    public void testParseIssueKeys_sameMatchesAsRegex() {
+        assertThat(IssueKey.parseIssueKeys("xABC-12 A-1 AB-CD-3 1EF-4GH-5 IJ-"))
+                .containsExactly(new IssueKey("ABC", "12"), new IssueKey("CD", "3"),
+                        new IssueKey("EF", "4"), new IssueKey("GH", "5"));
+    }
+
+    @Test
+    public void testParseIssueKeys_noKeysReturnsEmptyModifiableList() {
+        List<IssueKey> issueKeys = IssueKey.parseIssueKeys("utf-8 is not an issue");
+        assertThat(issueKeys).isEmpty();
+
+        issueKeys.add(new IssueKey("ABC", "123"));
+        assertThat(issueKeys).hasSize(1);
+    }
+
     @Test
     public void testParseValidIssueKey() throws InvalidIssueKeyException {
         final IssueKey parsed = new IssueKey("ABC-123");
@@ -2,27 +2,53 @@ package ut.com.isroot.stash.plugin;
 
 import com.atlassian.applinks.api.ApplicationLink;
 import com.atlassian.applinks.api.ApplicationLinkService;
+import com.atlassian.applinks.api.event.ApplicationLinkEvent;
+import com.atlassian.bitbucket.user.ApplicationUser;
 import com.atlassian.sal.api.net.Request;
 import com.google.gson.Gson;
 import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.PushTimeBudget;
+import com.isroot.stash.plugin.YaccMetrics;
 import com.isroot.stash.plugin.errors.YaccError;
+import com.isroot.stash.plugin.jira.JiraServiceConfig;
 import com.isroot.stash.plugin.jira.JiraServiceImpl;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import ut.com.isroot.stash.plugin.mock.MockApplicationLink;
 import ut.com.isroot.stash.plugin.mock.MockApplicationLinkService;
+import ut.com.isroot.stash.plugin.mock.MockJiraLookupCacheBus;
+import ut.com.isroot.stash.plugin.mock.MockUserContext;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
 
 /**
  * @author Sean Ford
  * @since 2014-01-15
  */
 public class JiraServiceImplTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testDoesIssueExist_returnsEmptyListIfJiraSearchResultsIsNonZero() {
         JiraServiceImpl jiraService = setupTest(
@@ -115,6 +141,39 @@ public class JiraServiceImplTest {
                 .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL, "TEST-123: JIRA Issue does not exist"));
     }
 
+    @Test
+    public void testDoesIssueExist_totalIsEnoughWithoutIssues() {
+        JiraServiceImpl jiraService = setupTest(
+                MockApplicationLink.requestReturnsResponse(Request.MethodType.POST, "/rest/api/2/search",
+                        "{\"startAt\":0,\"maxResults\":0,\"total\":1,\"issues\":[]}")
+        );
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+    }
+
+    @Test
+    public void testDoesIssueExist_issueFieldsAreSkipped() {
+        JiraServiceImpl jiraService = setupTest(
+                MockApplicationLink.requestReturnsResponse(Request.MethodType.POST, "/rest/api/2/search",
+                        "{\"expand\":\"names\",\"issues\":[{\"id\":\"10000\",\"fields\":"
+                                + "{\"summary\":\"key: not this one\",\"labels\":[\"a\",{\"key\":\"x\"}]},"
+                                + "\"key\":\"TEST-123\"}],\"total\":\"unused\"}")
+        );
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+    }
+
+    @Test
+    public void testDoesIssueExist_malformedResponseIsAnError() {
+        JiraServiceImpl jiraService = setupTest(
+                MockApplicationLink.requestReturnsResponse(Request.MethodType.POST, "/rest/api/2/search",
+                        "[\"not a search response\"]").setName("jira")
+        );
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).containsExactly(
+                new YaccError(YaccError.Type.OTHER, "jira: Internal error: Unable to read JIRA search response. Check server logs for details."));
+    }
+
     @Test
     public void testDoesIssueMatchJqlQuery_returnsEmptyListIfIssueMatchesJqlQuery() {
         JiraServiceImpl jiraService = setupTest(
@@ -212,6 +271,93 @@ public class JiraServiceImplTest {
                 .isFalse();
     }
 
+    @Test
+    public void testDoesProjectExist_projectListIsUsedForKnownProjects() {
+        MockApplicationLink link = MockApplicationLink.projectsAndSearchReturnResponse(
+                Arrays.asList("TEST", "ABC"), jql -> null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.doesProjectExist(new IssueKey("TEST", "1"))).isTrue();
+        assertThat(jiraService.doesProjectExist(new IssueKey("ABC", "1"))).isTrue();
+        assertThat(link.getProjectListRequestCount()).isEqualTo(1);
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesProjectExist_unknownProjectIsOnlySearchedOncePerRefresh() {
+        MockApplicationLink link = MockApplicationLink.projectsAndSearchReturnResponse(
+                Collections.singletonList("TEST"), jql -> null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.doesProjectExist(new IssueKey("UTF", "8"))).isFalse();
+        assertThat(jiraService.doesProjectExist(new IssueKey("UTF", "8"))).isFalse();
+        assertThat(link.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesProjectExist_unknownProjectIsSearchedOncePerRefreshForEachUser() {
+        MockUserContext userContext = new MockUserContext();
+        List<String> searchUsers = new CopyOnWriteArrayList<>();
+
+        // Only bob can see the SECRET project, and alice loads the project list
+        MockApplicationLink link = MockApplicationLink.projectsAndSearchAsCurrentUser(userContext::getCurrentUserName,
+                user -> Collections.singletonList("TEST"),
+                (user, jql) -> {
+                    searchUsers.add(user);
+                    return user.equals("bob") ? jiraResponse(0) : null;
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig(), null, null, userContext.getAuthenticationContext(),
+                userContext.getSecurityService());
+
+        try {
+            userContext.setCurrentUser(MockUserContext.user(1, "alice"));
+            assertThat(jiraService.doesProjectExist(new IssueKey("SECRET", "1"))).isFalse();
+            assertThat(jiraService.doesProjectExist(new IssueKey("SECRET", "1"))).isFalse();
+
+            userContext.setCurrentUser(MockUserContext.user(2, "bob"));
+            assertThat(jiraService.doesProjectExist(new IssueKey("SECRET", "1"))).isTrue();
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+
+        assertThat(searchUsers).containsExactly("alice", "bob");
+    }
+
+    @Test
+    public void testDoesProjectExist_projectCreatedSinceProjectListWasLoadedIsFound() {
+        MockApplicationLink link = MockApplicationLink.projectsAndSearchReturnResponse(
+                Collections.singletonList("TEST"), jql -> jql.equals("project = 'NEW'") ? jiraResponse(0) : null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.doesProjectExist(new IssueKey("NEW", "1"))).isTrue();
+        assertThat(jiraService.doesProjectExist(new IssueKey("NEW", "1"))).isTrue();
+        assertThat(link.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesProjectExist_multipleLinks_projectListOfEachLinkIsChecked() {
+        MockApplicationLink link1 = MockApplicationLink.projectsAndSearchReturnResponse(
+                Collections.singletonList("TEST"), jql -> null);
+        MockApplicationLink link2 = MockApplicationLink.projectsAndSearchReturnResponse(
+                Collections.singletonList("ABC"), jql -> null);
+        JiraServiceImpl jiraService = setupTest(link1, link2);
+
+        assertThat(jiraService.doesProjectExist(new IssueKey("ABC", "1"))).isTrue();
+        assertThat(link2.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesProjectExist_projectListCanBeDisabled() {
+        MockApplicationLink link = MockApplicationLink.projectsAndSearchReturnResponse(
+                Collections.singletonList("TEST"), jql -> jiraResponse(0));
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig().setProjectKeysRefreshMillis(0));
+
+        assertThat(jiraService.doesProjectExist(new IssueKey("TEST", "1"))).isTrue();
+        assertThat(link.getProjectListRequestCount()).isEqualTo(0);
+    }
+
     @Test
     public void testCheckJqlQuery_returnsEmptyListIfQueryIsValid() {
         JiraServiceImpl jiraService = setupTest(
@@ -251,6 +397,883 @@ public class JiraServiceImplTest {
                         "jira1: JQL Query is invalid.");
     }
 
+    @Test
+    public void testCheckIssues_existingIssuesAreFoundWithOneRequest() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql ->
+                jql.equals("issueKey in (TEST-1, TEST-2)") ? jiraResponse("TEST-1", "TEST-2") : null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        Map<IssueKey, List<YaccError>> results = jiraService.checkIssues(
+                Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2"), new IssueKey("TEST-1")), null);
+
+        assertThat(results.keySet()).containsExactly(new IssueKey("TEST-1"), new IssueKey("TEST-2"));
+        assertThat(results.get(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(results.get(new IssueKey("TEST-2"))).isEmpty();
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCheckIssues_issuesMissingFromBatchAreCheckedIndividually() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            if (jql.startsWith("issueKey in (")) {
+                return jiraResponse("TEST-1");
+            } else if (jql.equals("issueKey='TEST-2'")) {
+                return jiraResponse(0);
+            }
+            return null;
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        Map<IssueKey, List<YaccError>> results = jiraService.checkIssues(
+                Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2")), null);
+
+        assertThat(results.get(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(results.get(new IssueKey("TEST-2")))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL, "TEST-2: JIRA Issue does not exist"));
+        assertThat(link.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCheckIssues_jqlQueryIsAddedToBatch() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            if (jql.equals("issueKey in (TEST-1, TEST-2) and (status = Done)")) {
+                return jiraResponse("TEST-2");
+            } else if (jql.equals("issueKey='TEST-1'")) {
+                return jiraResponse(1);
+            } else if (jql.equals("issueKey=TEST-1 and (status = Done)")) {
+                return jiraResponse(0);
+            }
+            return null;
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        Map<IssueKey, List<YaccError>> results = jiraService.checkIssues(
+                Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2")), "status = Done");
+
+        assertThat(results.get(new IssueKey("TEST-1")))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL,
+                        "TEST-1: JIRA Issue does not match JQL Query: status = Done"));
+        assertThat(results.get(new IssueKey("TEST-2"))).isEmpty();
+    }
+
+    @Test
+    public void testCheckIssues_multipleLinks_issuesCanBeFoundOnDifferentLinks() throws Exception {
+        MockApplicationLink link1 = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse("TEST-1"));
+        MockApplicationLink link2 = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse("TEST-2"));
+        JiraServiceImpl jiraService = setupTest(link1, link2);
+
+        Map<IssueKey, List<YaccError>> results = jiraService.checkIssues(
+                Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2")), null);
+
+        assertThat(results.get(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(results.get(new IssueKey("TEST-2"))).isEmpty();
+        assertThat(link1.getRequestCount()).isEqualTo(1);
+        assertThat(link2.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCheckIssues_largeBatchesAreSplitIntoMultipleQueries() throws Exception {
+        List<IssueKey> issueKeys = new ArrayList<>();
+        for (int i = 1; i <= 120; i++) {
+            issueKeys.add(new IssueKey("TEST-" + i));
+        }
+
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            String keys = jql.substring("issueKey in (".length(), jql.length() - 1);
+            return jiraResponse(keys.split(", "));
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        Map<IssueKey, List<YaccError>> results = jiraService.checkIssues(issueKeys, null);
+
+        assertThat(results).hasSize(120);
+        assertThat(results.values()).containsOnly(Collections.<YaccError>emptyList());
+        assertThat(link.getRequestCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDoesIssueExist_resultIsCached() {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1));
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesIssueExist_missingIssueIsCached() {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123")))
+                    .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL, "TEST-123: JIRA Issue does not exist"));
+        }
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesIssueExist_credentialErrorsAreNotCached() {
+        MockApplicationLink link = MockApplicationLink.requestThrowsCredentialException();
+        JiraServiceImpl jiraService = setupTest(link);
+
+        jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+        jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+
+        assertThat(link.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesIssueExist_cacheCanBeDisabled() {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1));
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig().setCacheMaxEntries(0));
+
+        jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+        jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+
+        assertThat(link.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesIssueMatchJqlQuery_resultIsCachedPerQuery() {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql ->
+                jql.endsWith("(status = Done)") ? jiraResponse(1) : jiraResponse(0));
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.doesIssueMatchJqlQuery("status = Done", new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(jiraService.doesIssueMatchJqlQuery("status = Done", new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(jiraService.doesIssueMatchJqlQuery("status = Open", new IssueKey("TEST", "123")))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL,
+                        "TEST-123: JIRA Issue does not match JQL Query: status = Open"));
+        assertThat(link.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCheckIssue_matchingIssueIsConfirmedWithOneRequest() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql ->
+                jql.equals("issueKey in (TEST-1) and (status = Open)") ? jiraResponse("TEST-1") : null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.checkIssue(new IssueKey("TEST-1"), "status = Open")).isEmpty();
+        assertThat(jiraService.checkIssue(new IssueKey("TEST-1"), "status = Open")).isEmpty();
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCheckIssue_errorsAreTheSameAsSeparateChecks() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            if (jql.startsWith("issueKey in (")) {
+                return jiraResponse(0);
+            } else if (jql.equals("issueKey='TEST-2'")) {
+                return jiraResponse(1);
+            } else if (jql.equals("issueKey=TEST-2 and (status = Open)")) {
+                return jiraResponse(0);
+            }
+            return null;
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.checkIssue(new IssueKey("TEST-1"), "status = Open"))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL, "TEST-1: JIRA Issue does not exist"));
+        assertThat(jiraService.checkIssue(new IssueKey("TEST-2"), "status = Open"))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL,
+                        "TEST-2: JIRA Issue does not match JQL Query: status = Open"));
+    }
+
+    @Test
+    public void testCheckIssue_withoutJqlQueryOnlyChecksExistence() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql ->
+                jql.equals("issueKey='TEST-1'") ? jiraResponse(1) : null);
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.checkIssue(new IssueKey("TEST-1"), null)).isEmpty();
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesIssueExist_missingIssueIsOnlyCachedForUserThatLookedItUp() {
+        MockUserContext userContext = new MockUserContext();
+        List<String> searchUsers = new CopyOnWriteArrayList<>();
+
+        // Only bob can see the issue
+        MockApplicationLink link = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    searchUsers.add(user);
+                    return user.equals("bob") ? jiraResponse(1) : null;
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig(), null, null, userContext.getAuthenticationContext(),
+                userContext.getSecurityService());
+
+        try {
+            userContext.setCurrentUser(MockUserContext.user(1, "alice"));
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "1"))).hasSize(1);
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "1"))).hasSize(1);
+
+            userContext.setCurrentUser(MockUserContext.user(2, "bob"));
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "1"))).isEmpty();
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+
+        assertThat(searchUsers).containsExactly("alice", "bob");
+    }
+
+    @Test
+    public void testCheckIssues_cachedIssuesAreNotSearchedAgain() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            String keys = jql.substring("issueKey in (".length(), jql.length() - 1);
+            return jiraResponse(keys.split(", "));
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        jiraService.checkIssues(Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2")), null);
+        Map<IssueKey, List<YaccError>> results = jiraService.checkIssues(
+                Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2")), null);
+
+        assertThat(results.get(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(results.get(new IssueKey("TEST-2"))).isEmpty();
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesIssueExist_multipleLinks_slowLinkDoesNotDelayResult() {
+        JiraServiceImpl jiraService = setupTest(
+                MockApplicationLink.searchReturnsResponse(jql -> respondAfter(10000, jiraResponse(1))),
+                MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1))
+        );
+
+        long start = System.currentTimeMillis();
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+    }
+
+    @Test
+    public void testDoesIssueExist_multipleLinks_linkThatDoesNotRespondInTimeIsAnError() {
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(
+                MockApplicationLink.searchReturnsResponse(jql -> respondAfter(10000, jiraResponse(1))).setName("jira1"),
+                MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(0)).setName("jira2")),
+                new JiraServiceConfig().setRequestTimeoutMillis(100));
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).containsExactly(
+                new YaccError(YaccError.Type.OTHER, "jira1: Internal error: JIRA did not respond within 100 ms. Check server logs for details."),
+                new YaccError(YaccError.Type.OTHER, "jira2: TEST-123: JIRA Issue does not exist"));
+    }
+
+    @Test
+    public void testDoesIssueExist_multipleLinks_linksCanBeQueriedSequentially() {
+        MockApplicationLink link1 = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1));
+        MockApplicationLink link2 = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1));
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link1, link2),
+                new JiraServiceConfig().setRequestPoolSize(1));
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(link1.getRequestCount()).isEqualTo(1);
+        assertThat(link2.getRequestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDoesIssueExist_slowSearchIsHedged() throws Exception {
+        AtomicInteger searchCount = new AtomicInteger();
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            // Only the first search after the warm up is slow
+            if (searchCount.incrementAndGet() == 21) {
+                return respondAfter(10000, jiraResponse(1));
+            }
+            return jiraResponse(1);
+        });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig()
+                        .setCacheMaxEntries(0)
+                        .setHedgePercentile(95)
+                        .setHedgeMinDelayMillis(50));
+
+        long firedBefore = YaccMetrics.get("jira.hedges.fired");
+        long wonBefore = YaccMetrics.get("jira.hedges.won");
+
+        for (int i = 1; i <= 20; i++) {
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "" + i))).isEmpty();
+        }
+        assertThat(YaccMetrics.get("jira.hedges.fired")).isEqualTo(firedBefore);
+
+        long start = System.currentTimeMillis();
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+        assertThat(searchCount.get()).isEqualTo(22);
+        assertThat(YaccMetrics.get("jira.hedges.fired")).isEqualTo(firedBefore + 1);
+        assertThat(YaccMetrics.get("jira.hedges.won")).isEqualTo(wonBefore + 1);
+    }
+
+    @Test
+    public void testDoesIssueExist_fastSearchIsNotHedged() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1));
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig()
+                        .setCacheMaxEntries(0)
+                        .setHedgePercentile(95)
+                        .setHedgeMinDelayMillis(1000));
+
+        long firedBefore = YaccMetrics.get("jira.hedges.fired");
+
+        for (int i = 1; i <= 30; i++) {
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "" + i))).isEmpty();
+        }
+
+        assertThat(link.getRequestCount()).isEqualTo(30);
+        assertThat(YaccMetrics.get("jira.hedges.fired")).isEqualTo(firedBefore);
+    }
+
+    @Test
+    public void testDoesIssueExist_multipleLinks_linksAreSearchedAsPushingUser() {
+        MockUserContext userContext = new MockUserContext();
+        List<String> requestUsers = new CopyOnWriteArrayList<>();
+        MockApplicationLink link1 = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    requestUsers.add(user);
+                    return jiraResponse(0);
+                });
+        MockApplicationLink link2 = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    requestUsers.add(user);
+                    return jiraResponse(1);
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link1, link2),
+                new JiraServiceConfig(), null, null, userContext.getAuthenticationContext(),
+                userContext.getSecurityService());
+
+        userContext.setCurrentUser(MockUserContext.user(1, "alice"));
+        try {
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+
+        assertThat(requestUsers).containsExactly("alice", "alice");
+    }
+
+    @Test
+    public void testDoesIssueExist_concurrentIdenticalLookupsAreCoalesced() throws Exception {
+        CountDownLatch searchStarted = new CountDownLatch(1);
+        CountDownLatch releaseSearch = new CountDownLatch(1);
+        AtomicInteger searchCount = new AtomicInteger();
+
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            searchCount.incrementAndGet();
+            searchStarted.countDown();
+            try {
+                releaseSearch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return jiraResponse(1);
+        });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig().setCacheMaxEntries(0));
+
+        long coalescedBefore = YaccMetrics.get("jira.requests.coalesced");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<YaccError>> first = executor.submit(() ->
+                    jiraService.doesIssueExist(new IssueKey("TEST", "123")));
+            searchStarted.await();
+
+            Future<List<YaccError>> second = executor.submit(() ->
+                    jiraService.doesIssueExist(new IssueKey("TEST", "123")));
+            while (YaccMetrics.get("jira.requests.coalesced") == coalescedBefore) {
+                Thread.sleep(5);
+            }
+            releaseSearch.countDown();
+
+            assertThat(first.get()).isEmpty();
+            assertThat(second.get()).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(searchCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoesIssueExist_concurrentLookupsForDifferentUsersAreNotCoalesced() throws Exception {
+        MockUserContext userContext = new MockUserContext();
+        CountDownLatch searchStarted = new CountDownLatch(1);
+        CountDownLatch releaseSearch = new CountDownLatch(1);
+
+        // Only alice can see the issue
+        MockApplicationLink link = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    if (!user.equals("alice")) {
+                        return null;
+                    }
+
+                    searchStarted.countDown();
+                    try {
+                        releaseSearch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return jiraResponse(1);
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig().setCacheMaxEntries(0), null, null,
+                userContext.getAuthenticationContext(), userContext.getSecurityService());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<YaccError>> alice = executor.submit(() -> {
+                userContext.setCurrentUser(MockUserContext.user(1, "alice"));
+                return jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+            });
+            searchStarted.await();
+
+            Future<List<YaccError>> bob = executor.submit(() -> {
+                userContext.setCurrentUser(MockUserContext.user(2, "bob"));
+                return jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+            });
+
+            assertThat(bob.get(5, TimeUnit.SECONDS)).hasSize(1);
+            releaseSearch.countDown();
+            assertThat(alice.get()).isEmpty();
+        } finally {
+            releaseSearch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDoesIssueExist_failingLinkIsNotQueriedOnceCircuitBreakerOpens() {
+        MockApplicationLink link = MockApplicationLink.requestReturnsResponse(
+                Request.MethodType.POST, "/rest/api/2/search", 500).setName("jira");
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig().setCircuitBreakerFailureThreshold(2));
+
+        long requestsBefore = YaccMetrics.get("jira.requests");
+        jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+        jiraService.doesIssueExist(new IssueKey("TEST", "123"));
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).containsExactly(
+                new YaccError(YaccError.Type.OTHER, "jira: JIRA is not responding and requests to it are suspended, try again later"));
+        assertThat(YaccMetrics.get("jira.requests") - requestsBefore).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesIssueExist_issueIsAcceptedWhileJiraIsUnavailableIfConfigured() {
+        MockApplicationLink link = MockApplicationLink.requestReturnsResponse(
+                Request.MethodType.POST, "/rest/api/2/search", 500);
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig()
+                        .setCircuitBreakerFailureThreshold(1)
+                        .setUnavailablePolicy(JiraServiceConfig.UnavailablePolicy.ACCEPT));
+
+        // Server errors are still reported until the circuit breaker opens
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).hasSize(1);
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST", "123"))).isEmpty();
+    }
+
+    @Test
+    public void testAsync_lookupRunsInBackground() throws Exception {
+        List<String> requestThreads = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            requestThreads.add(Thread.currentThread().getName());
+            return jiraResponse(1);
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        assertThat(jiraService.async().doesIssueExist(new IssueKey("TEST", "123"))
+                .get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(requestThreads).hasSize(1);
+        assertThat(requestThreads.get(0)).startsWith("yacc-jira-async-");
+        assertThat(link.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAsync_lookupIsMadeAsPushingUser() throws Exception {
+        MockUserContext userContext = new MockUserContext();
+        List<String> requestUsers = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    requestUsers.add(user);
+                    return jiraResponse(1);
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig(), null, null, userContext.getAuthenticationContext(),
+                userContext.getSecurityService());
+
+        userContext.setCurrentUser(MockUserContext.user(1, "alice"));
+        try {
+            assertThat(jiraService.async().doesIssueExist(new IssueKey("TEST", "123"))
+                    .get(5, TimeUnit.SECONDS)).isEmpty();
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+
+        assertThat(requestUsers).containsExactly("alice");
+    }
+
+    @Test
+    public void testAsync_checkIssuesGivesSameResultsAsSynchronousCheck() throws Exception {
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            if (jql.startsWith("issueKey in (")) {
+                return jiraResponse("TEST-1");
+            } else if (jql.equals("issueKey='TEST-2'")) {
+                return jiraResponse(0);
+            }
+            return null;
+        });
+        JiraServiceImpl jiraService = setupTest(link);
+
+        Map<IssueKey, List<YaccError>> results = jiraService.async().checkIssues(
+                Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-2")), null,
+                new PushTimeBudget(0, PushTimeBudget.ExhaustedPolicy.REJECT)).get(5, TimeUnit.SECONDS);
+
+        assertThat(results.get(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(results.get(new IssueKey("TEST-2")))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL, "TEST-2: JIRA Issue does not exist"));
+    }
+
+    @Test
+    public void testAsync_failedLookupErrorsAreTheSameAsForFailedRequests() {
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(
+                MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1)).setName("jira1"),
+                MockApplicationLink.searchReturnsResponse(jql -> jiraResponse(1)).setName("jira2")),
+                new JiraServiceConfig().setRequestTimeoutMillis(100));
+
+        assertThat(jiraService.async().getTimeoutMillis()).isEqualTo(100);
+        assertThat(jiraService.async().getFailedLookupErrors(new IssueKey("TEST", "123"),
+                new TimeoutException())).containsExactly(
+                new YaccError(YaccError.Type.OTHER, "jira1: Internal error: JIRA did not respond within 100 ms. Check server logs for details."),
+                new YaccError(YaccError.Type.OTHER, "jira2: Internal error: JIRA did not respond within 100 ms. Check server logs for details."));
+        assertThat(jiraService.async().getFailedLookupErrors(new IssueKey("TEST", "123"),
+                new IllegalStateException("broken"))).containsExactly(
+                new YaccError(YaccError.Type.OTHER, "jira1: Internal error: broken. Check server logs for details."),
+                new YaccError(YaccError.Type.OTHER, "jira2: Internal error: broken. Check server logs for details."));
+    }
+
+    @Test
+    public void testAsync_zeroPoolSizeRunsOnCallingThread() throws Exception {
+        List<Thread> requestThreads = new CopyOnWriteArrayList<>();
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(
+                MockApplicationLink.searchReturnsResponse(jql -> {
+                    requestThreads.add(Thread.currentThread());
+                    return jiraResponse(1);
+                })),
+                new JiraServiceConfig().setAsyncPoolSize(0));
+
+        assertThat(jiraService.async().doesIssueExist(new IssueKey("TEST", "123")).isDone()).isTrue();
+        assertThat(requestThreads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    public void testAsync_platformThreadsWhenVirtualThreadsDisabled() throws Exception {
+        List<Thread> requestThreads = new CopyOnWriteArrayList<>();
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(
+                MockApplicationLink.searchReturnsResponse(jql -> {
+                    requestThreads.add(Thread.currentThread());
+                    return jiraResponse(1);
+                })),
+                new JiraServiceConfig().setVirtualThreads(false));
+
+        assertThat(jiraService.async().doesIssueExist(new IssueKey("TEST", "123"))
+                .get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(requestThreads).hasSize(1);
+        assertThat(requestThreads.get(0).getName()).startsWith("yacc-jira-async-");
+        assertThat(requestThreads.get(0).isDaemon()).isTrue();
+    }
+
+    @Test
+    public void testDestroy_backgroundThreadsAreStopped() throws Exception {
+        List<Thread> requestThreads = new CopyOnWriteArrayList<>();
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(
+                MockApplicationLink.searchReturnsResponse(jql -> {
+                    requestThreads.add(Thread.currentThread());
+                    return jiraResponse(1);
+                })),
+                new JiraServiceConfig().setVirtualThreads(false));
+
+        assertThat(jiraService.async().doesIssueExist(new IssueKey("TEST", "123"))
+                .get(5, TimeUnit.SECONDS)).isEmpty();
+
+        jiraService.destroy();
+
+        // The idle thread exits right away rather than once its keep alive time has passed
+        requestThreads.get(0).join(5000);
+        assertThat(requestThreads.get(0).isAlive()).isFalse();
+        assertThatThrownBy(() -> jiraService.async().doesIssueExist(new IssueKey("TEST", "123")))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void testIssueIndex_indexedIssuesAreCheckedWithoutJira() throws Exception {
+        List<String> searches = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            searches.add(jql);
+            if (jql.startsWith("project = 'TEST'")) {
+                return jiraResponse("TEST-1", "TEST-2");
+            } else if (jql.equals("issueKey='TEST-1'")) {
+                return jiraResponse(1);
+            }
+            return null;
+        });
+        File dataDirectory = temporaryFolder.newFolder();
+        JiraServiceConfig config = new JiraServiceConfig()
+                .setIssueIndexProjects(Collections.singletonList("TEST"))
+                .setIssueIndexUser("yacc-index");
+
+        // The first lookup starts the sync, which saves the index once done
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                config, dataDirectory);
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST-1"))).isEmpty();
+
+        File indexFile = new File(dataDirectory, "jira-issue-index.bin");
+        for (int i = 0; i < 500 && !indexFile.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(indexFile).exists();
+        assertThat(searches).contains("project = 'TEST' order by created asc");
+
+        searches.clear();
+
+        // A new instance loads the saved index, and is not due for a sync yet
+        JiraServiceImpl restarted = new JiraServiceImpl(new MockApplicationLinkService(link),
+                config.setIssueIndexSyncMillis(TimeUnit.HOURS.toMillis(1)), dataDirectory);
+
+        assertThat(restarted.doesIssueExist(new IssueKey("TEST-2"))).isEmpty();
+        assertThat(restarted.checkIssues(Arrays.asList(new IssueKey("TEST-1"),
+                new IssueKey("TEST-2")), null).values()).containsOnly(Collections.emptyList());
+        assertThat(restarted.doesIssueExist(new IssueKey("TEST-3"))).containsExactly(
+                new YaccError(YaccError.Type.ISSUE_JQL, "TEST-3: JIRA Issue does not exist"));
+        assertThat(searches).containsExactly("issueKey='TEST-3'");
+    }
+
+    @Test
+    public void testIssueIndex_syncIsMadeAsIndexUser() throws Exception {
+        MockUserContext userContext = new MockUserContext();
+        userContext.addUser(2, "yacc-index");
+        List<String> syncUsers = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    if (jql.startsWith("project = 'TEST'")) {
+                        syncUsers.add(user);
+                        return jiraResponse("TEST-1");
+                    }
+                    return jiraResponse(1);
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig()
+                        .setIssueIndexProjects(Collections.singletonList("TEST"))
+                        .setIssueIndexUser("yacc-index"),
+                null, null, userContext.getAuthenticationContext(), userContext.getSecurityService(),
+                userContext.getUserService());
+
+        userContext.setCurrentUser(MockUserContext.user(1, "alice"));
+        try {
+            assertThat(jiraService.doesIssueExist(new IssueKey("TEST-1"))).isEmpty();
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+
+        for (int i = 0; i < 500 && syncUsers.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(syncUsers).containsOnly("yacc-index");
+    }
+
+    @Test
+    public void testIssueIndex_disabledWithoutIndexUser() {
+        List<String> searches = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            searches.add(jql);
+            return jiraResponse(1);
+        });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig().setIssueIndexProjects(Collections.singletonList("TEST")));
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(searches).containsExactly("issueKey='TEST-1'");
+    }
+
+    @Test
+    public void testJqlMatcherSets_matchingIssuesAreCheckedWithoutJira() throws Exception {
+        List<String> searches = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            searches.add(jql);
+            if (jql.startsWith("(status = Open)")) {
+                return jiraResponse("TEST-1", "TEST-2");
+            } else if (jql.startsWith("issueKey=TEST-1 and") || jql.equals("issueKey='TEST-3'")) {
+                return jiraResponse(1);
+            } else if (jql.startsWith("issueKey=TEST-3 and")) {
+                return jiraResponse(0);
+            }
+            return null;
+        });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig()
+                        .setCacheMaxEntries(0)
+                        .setJqlMatcherRefreshMillis(TimeUnit.HOURS.toMillis(1)));
+
+        // The first check loads the set in the background
+        long loadsBefore = YaccMetrics.get("jira.jqlMatcher.fullRefreshes");
+        assertThat(jiraService.doesIssueMatchJqlQuery("status = Open", new IssueKey("TEST-1")))
+                .isEmpty();
+        for (int i = 0; i < 500 && YaccMetrics.get("jira.jqlMatcher.fullRefreshes") == loadsBefore; i++) {
+            Thread.sleep(10);
+        }
+
+        searches.clear();
+
+        assertThat(jiraService.doesIssueMatchJqlQuery("status = Open", new IssueKey("TEST-2")))
+                .isEmpty();
+        assertThat(jiraService.checkIssues(Arrays.asList(new IssueKey("TEST-1"),
+                new IssueKey("TEST-2")), "status = Open").values())
+                .containsOnly(Collections.emptyList());
+        assertThat(searches).isEmpty();
+
+        // Issues not in the set are checked with JIRA
+        assertThat(jiraService.doesIssueMatchJqlQuery("status = Open", new IssueKey("TEST-3")))
+                .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL,
+                        "TEST-3: JIRA Issue does not match JQL Query: status = Open"));
+        assertThat(searches).hasSize(1);
+    }
+
+    @Test
+    public void testJqlMatcherSets_eachUserHasTheirOwnMatchingIssues() throws Exception {
+        MockUserContext userContext = new MockUserContext();
+        List<String> searches = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchAsCurrentUser(userContext::getCurrentUserName,
+                (user, jql) -> {
+                    searches.add(user + ": " + jql);
+                    if (jql.startsWith("(assignee = currentUser())")) {
+                        return user.equals("alice") ? jiraResponse("TEST-1") : jiraResponse();
+                    }
+                    return jiraResponse(user.equals("alice") ? 1 : 0);
+                });
+        JiraServiceImpl jiraService = new JiraServiceImpl(new MockApplicationLinkService(link),
+                new JiraServiceConfig()
+                        .setCacheMaxEntries(0)
+                        .setJqlMatcherRefreshMillis(TimeUnit.HOURS.toMillis(1)),
+                null, null, userContext.getAuthenticationContext(), userContext.getSecurityService());
+        ApplicationUser alice = MockUserContext.user(1, "alice");
+        ApplicationUser bob = MockUserContext.user(2, "bob");
+        IssueKey issueKey = new IssueKey("TEST-1");
+        String jqlQuery = "assignee = currentUser()";
+
+        // Each user's first check loads their own set in the background
+        for (ApplicationUser user : Arrays.asList(alice, bob)) {
+            long loadsBefore = YaccMetrics.get("jira.jqlMatcher.fullRefreshes");
+            userContext.setCurrentUser(user);
+            try {
+                jiraService.doesIssueMatchJqlQuery(jqlQuery, issueKey);
+            } finally {
+                userContext.setCurrentUser(null);
+            }
+            for (int i = 0; i < 500 && YaccMetrics.get("jira.jqlMatcher.fullRefreshes") == loadsBefore; i++) {
+                Thread.sleep(10);
+            }
+        }
+        assertThat(searches).contains("alice: (assignee = currentUser()) order by created asc",
+                "bob: (assignee = currentUser()) order by created asc");
+
+        searches.clear();
+
+        userContext.setCurrentUser(alice);
+        try {
+            assertThat(jiraService.doesIssueMatchJqlQuery(jqlQuery, issueKey)).isEmpty();
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+        assertThat(searches).isEmpty();
+
+        // Alice's match is not accepted for Bob, who is checked with JIRA as himself
+        userContext.setCurrentUser(bob);
+        try {
+            assertThat(jiraService.doesIssueMatchJqlQuery(jqlQuery, issueKey))
+                    .containsExactly(new YaccError(YaccError.Type.ISSUE_JQL,
+                            "TEST-1: JIRA Issue does not match JQL Query: assignee = currentUser()"));
+        } finally {
+            userContext.setCurrentUser(null);
+        }
+        assertThat(searches).hasSize(1);
+        assertThat(searches.get(0)).startsWith("bob: issueKey=TEST-1 and");
+    }
+
+    @Test
+    public void testApplicationLinks_reloadedOnlyAfterApplicationLinkEvent() {
+        MockApplicationLinkService linkService = new MockApplicationLinkService(
+                MockApplicationLink.requestReturnsResponse(Request.MethodType.POST, "/rest/api/2/search", jiraResponse(0)));
+        JiraServiceImpl jiraService = new JiraServiceImpl(linkService);
+        long loads = YaccMetrics.get("jira.applicationLinks.loads");
+
+        assertThat(jiraService.doesJiraApplicationLinkExist()).isTrue();
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST-1"))).isNotEmpty();
+
+        // Not seen until an application link event
+        linkService.addLink(MockApplicationLink.requestReturnsResponse(Request.MethodType.POST, "/rest/api/2/search", jiraResponse(1)));
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST-2"))).isNotEmpty();
+        assertThat(YaccMetrics.get("jira.applicationLinks.loads") - loads).isEqualTo(1);
+
+        jiraService.onApplicationLinkEvent(mock(ApplicationLinkEvent.class));
+
+        assertThat(jiraService.doesIssueExist(new IssueKey("TEST-3"))).isEmpty();
+        assertThat(YaccMetrics.get("jira.applicationLinks.loads") - loads).isEqualTo(2);
+    }
+
+    @Test
+    public void testCacheReplication_lookupsAreSharedBetweenNodes() {
+        List<String> searches = new CopyOnWriteArrayList<>();
+        MockApplicationLink link = MockApplicationLink.searchReturnsResponse(jql -> {
+            searches.add(jql);
+            return jiraResponse(1);
+        });
+        MockJiraLookupCacheBus bus = new MockJiraLookupCacheBus();
+        JiraServiceConfig config = new JiraServiceConfig()
+                .setCacheReplication(JiraServiceConfig.CacheReplication.CLUSTER);
+
+        JiraServiceImpl node1 = new JiraServiceImpl(new MockApplicationLinkService(link), config,
+                null, bus);
+        JiraServiceImpl node2 = new JiraServiceImpl(new MockApplicationLinkService(link), config,
+                null, bus);
+
+        assertThat(node1.doesIssueExist(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(node2.doesIssueExist(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(searches).hasSize(1);
+
+        // Local caches ignore the bus
+        config.setCacheReplication(JiraServiceConfig.CacheReplication.LOCAL);
+        JiraServiceImpl local = new JiraServiceImpl(new MockApplicationLinkService(link), config,
+                null, bus);
+
+        assertThat(local.doesIssueExist(new IssueKey("TEST-1"))).isEmpty();
+        assertThat(searches).hasSize(2);
+    }
+
+    private String respondAfter(long millis, String response) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return response;
+    }
+
+    private String jiraResponse(String... issueKeys) {
+        List<Map<String, String>> results = new ArrayList<>();
+
+        for (String issueKey : issueKeys) {
+            Map<String, String> issue = new HashMap<>();
+            issue.put("key", issueKey);
+            results.add(issue);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("issues", results);
+
+        return new Gson().toJson(response);
+    }
 
     private String jiraResponse(int searchResults) {
         List<String> results = new ArrayList<>();
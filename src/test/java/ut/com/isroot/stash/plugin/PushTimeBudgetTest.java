@@ -0,0 +1,114 @@
+package ut.com.isroot.stash.plugin;
+
+import com.google.common.base.Ticker;
+import com.isroot.stash.plugin.PushTimeBudget;
+import com.isroot.stash.plugin.PushTimeBudget.ExhaustedPolicy;
+import com.isroot.stash.plugin.YaccMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * @since 2026-10-18
+ */
+public class PushTimeBudgetTest {
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Before
+    public void setup() {
+        YaccMetrics.reset();
+    }
+
+    @Test
+    public void testIsExhausted_afterBudgetRunsOut() {
+        PushTimeBudget budget = new PushTimeBudget(100, ExhaustedPolicy.REJECT, ticker);
+
+        ticker.advance(99);
+        assertThat(budget.isExhausted()).isFalse();
+        assertThat(budget.getRemainingMillis()).isEqualTo(1);
+
+        ticker.advance(1);
+        assertThat(budget.isExhausted()).isTrue();
+        assertThat(budget.getRemainingMillis()).isEqualTo(0);
+        assertThat(YaccMetrics.get("push.budget.exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    public void testIsExhausted_neverWithoutBudget() {
+        PushTimeBudget budget = new PushTimeBudget(0, ExhaustedPolicy.REJECT, ticker);
+
+        ticker.advance(TimeUnit.DAYS.toMillis(1));
+
+        assertThat(budget.isLimited()).isFalse();
+        assertThat(budget.isExhausted()).isFalse();
+        assertThat(budget.getRemainingMillis()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testIsExhausted_countedOnce() {
+        PushTimeBudget budget = new PushTimeBudget(10, ExhaustedPolicy.REJECT, ticker);
+
+        ticker.advance(20);
+        budget.isExhausted();
+        budget.isExhausted();
+
+        assertThat(YaccMetrics.get("push.budget.exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    public void testStartStage_timeIsAddedUpPerStage() {
+        PushTimeBudget budget = new PushTimeBudget(0, ExhaustedPolicy.REJECT, ticker);
+
+        try (PushTimeBudget.Stage ignored = budget.startStage("regex")) {
+            ticker.advance(5);
+        }
+        try (PushTimeBudget.Stage ignored = budget.startStage("jira")) {
+            ticker.advance(300);
+        }
+        try (PushTimeBudget.Stage ignored = budget.startStage("regex")) {
+            ticker.advance(7);
+        }
+
+        assertThat(budget.getStageMillis()).containsExactly(entry("regex", 12L), entry("jira", 300L));
+        assertThat(budget.describeStages()).isEqualTo("regex 12 ms, jira 300 ms");
+        assertThat(budget.getElapsedMillis()).isEqualTo(312);
+    }
+
+    @Test
+    public void testRecordMetrics() {
+        PushTimeBudget budget = new PushTimeBudget(0, ExhaustedPolicy.REJECT, ticker);
+
+        try (PushTimeBudget.Stage ignored = budget.startStage("regex")) {
+            ticker.advance(5);
+        }
+        budget.recordMetrics();
+
+        assertThat(YaccMetrics.get("push.checked")).isEqualTo(1);
+        assertThat(YaccMetrics.get("push.stage.regex.millis")).isEqualTo(5);
+    }
+
+    @Test
+    public void testExhaustedPolicyParse() {
+        assertThat(ExhaustedPolicy.parse("audit")).isEqualTo(ExhaustedPolicy.AUDIT);
+        assertThat(ExhaustedPolicy.parse(" Accept ")).isEqualTo(ExhaustedPolicy.ACCEPT);
+        assertThat(ExhaustedPolicy.parse("bogus")).isEqualTo(ExhaustedPolicy.REJECT);
+        assertThat(ExhaustedPolicy.parse(null)).isEqualTo(ExhaustedPolicy.REJECT);
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
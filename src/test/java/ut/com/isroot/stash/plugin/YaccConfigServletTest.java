@@ -10,6 +10,7 @@ import com.atlassian.soy.renderer.SoyException;
 import com.atlassian.soy.renderer.SoyTemplateRenderer;
 import com.isroot.stash.plugin.JiraService;
 import com.isroot.stash.plugin.YaccConfigServlet;
+import com.isroot.stash.plugin.YaccMetrics;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Test;
@@ -69,6 +70,8 @@ public class YaccConfigServletTest {
         HashMap<String, Object> map = new HashMap<String, Object>();
         map.put("config", new HashMap());
         map.put("errors", new HashMap());
+        map.put("warnings", new HashMap());
+        map.put("metrics", YaccMetrics.snapshot());
         verify(soyTemplateRenderer, times(1)).render(null,
                 "com.isroot.stash.plugin.yacc:yaccHook-config-serverside",
                 "com.atlassian.stash.repository.hook.ref.config", map);
@@ -106,4 +109,23 @@ public class YaccConfigServletTest {
                 .containsEntry("branchNameRegex", "master");
     }
 
+    @Test
+    public void testDoPost_slowRegexIsSavedAndWarnedAbout() throws Exception {
+        Map<String, String[]> parameterMap = new HashMap<>();
+        parameterMap.put("branchNameRegex", new String[]{"(a+)+$"});
+        when(request.getParameterMap()).thenReturn(parameterMap);
+        when(request.getParameter(anyString())).then(invocationOnMock ->
+                parameterMap.get(invocationOnMock.getArguments()[0].toString())[0]);
+
+        yaccConfigServlet.doGet(request, response); // calling doGet to populate the settings map
+        yaccConfigServlet.doPost(request, response);
+
+        verify(response, never()).sendRedirect(anyString());
+        verify(soyTemplateRenderer, times(2)).render(any(), anyString(), anyString(), anyMap());
+
+        Map<String, Object> savedSettings = (Map<String, Object>) pluginSettings.get(YaccConfigServlet.SETTINGS_MAP);
+
+        Assertions.assertThat(savedSettings).containsEntry("branchNameRegex", "(a+)+$");
+    }
+
 }
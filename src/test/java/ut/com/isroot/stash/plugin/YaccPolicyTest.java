@@ -0,0 +1,76 @@
+package ut.com.isroot.stash.plugin;
+
+import com.isroot.stash.plugin.YaccPolicy;
+import com.isroot.stash.plugin.regex.JdkRegex;
+import com.isroot.stash.plugin.regex.LinearRegex;
+import org.junit.Test;
+import ut.com.isroot.stash.plugin.mock.MutableYaccSettings;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2026-10-18
+ */
+public class YaccPolicyTest {
+    @Test
+    public void testEmptySettings_nothingEnabled() {
+        YaccPolicy policy = new YaccPolicy(new MutableYaccSettings());
+
+        assertThat(policy.isRequireJiraIssue()).isFalse();
+        assertThat(policy.isRequireMatchingAuthorEmail()).isFalse();
+        assertThat(policy.getCommitMessagePattern()).isNull();
+        assertThat(policy.getBranchNamePattern()).isNull();
+        assertThat(policy.getExcludeUsers()).isEmpty();
+        assertThat(policy.getIssueJqlMatcher()).isNull();
+    }
+
+    @Test
+    public void testEmptyRegexIsTreatedAsNotConfigured() {
+        YaccPolicy policy = new YaccPolicy(new MutableYaccSettings()
+                .setCommitMessageRegex("")
+                .setExcludeByRegex(""));
+
+        assertThat(policy.getCommitMessagePattern()).isNull();
+        assertThat(policy.getExcludeByPattern()).isNull();
+    }
+
+    @Test
+    public void testCommitMessageRegex_compiledWithMultiline() {
+        YaccPolicy policy = new YaccPolicy(new MutableYaccSettings()
+                .setCommitMessageRegex("[A-Z]+-[0-9]+: .*"));
+
+        assertThat(policy.getCommitMessagePattern().pattern()).isEqualTo("[A-Z]+-[0-9]+: .*");
+        assertThat(policy.getCommitMessagePattern().flags()).isEqualTo(Pattern.MULTILINE);
+        assertThat(policy.getCommitMessagePattern()).isInstanceOf(JdkRegex.class);
+    }
+
+    @Test
+    public void testUseLinearRegexEngine_supportedRegexUsesLinearEngine() {
+        YaccPolicy policy = new YaccPolicy(new MutableYaccSettings()
+                .setUseLinearRegexEngine(true)
+                .setCommitMessageRegex("[A-Z]+-[0-9]+: .*"));
+
+        assertThat(policy.getCommitMessagePattern()).isInstanceOf(LinearRegex.class);
+        assertThat(policy.getCommitMessagePattern().flags()).isEqualTo(Pattern.MULTILINE);
+    }
+
+    @Test
+    public void testUseLinearRegexEngine_unsupportedRegexFallsBackToJdk() {
+        YaccPolicy policy = new YaccPolicy(new MutableYaccSettings()
+                .setUseLinearRegexEngine(true)
+                .setExcludeByRegex("(?<!no )skip"));
+
+        assertThat(policy.getExcludeByPattern()).isInstanceOf(JdkRegex.class);
+    }
+
+    @Test
+    public void testExcludeUsers_splitAndTrimmed() {
+        YaccPolicy policy = new YaccPolicy(new MutableYaccSettings()
+                .setExcludeUsers("excludeUser, anotherUser ,third"));
+
+        assertThat(policy.getExcludeUsers())
+                .containsOnly("excludeUser", "anotherUser", "third");
+    }
+}
@@ -2,21 +2,39 @@ package ut.com.isroot.stash.plugin;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.stubbing.Answer;
 
 import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.commit.Commit;
+import com.atlassian.bitbucket.hook.repository.CommitAddedDetails;
+import com.atlassian.bitbucket.hook.repository.PreRepositoryHookCommitCallback;
+import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookCommitFilter;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.hook.repository.RepositoryPushHookRequest;
 import com.atlassian.bitbucket.repository.RefChange;
 import com.atlassian.bitbucket.repository.RefChangeType;
 import com.atlassian.bitbucket.repository.Repository;
@@ -27,9 +45,12 @@ import com.atlassian.bitbucket.scm.git.ref.GitAnnotatedTagCallback;
 import com.atlassian.bitbucket.scm.git.ref.GitResolveAnnotatedTagsCommandParameters;
 import com.atlassian.bitbucket.user.ApplicationUser;
 import com.atlassian.bitbucket.user.UserType;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.isroot.stash.plugin.AsyncJiraService;
 import com.isroot.stash.plugin.IssueKey;
 import com.isroot.stash.plugin.JiraService;
+import com.isroot.stash.plugin.PushTimeBudget;
 import com.isroot.stash.plugin.YaccCommit;
 import com.isroot.stash.plugin.YaccService;
 import com.isroot.stash.plugin.YaccServiceImpl;
@@ -303,6 +324,139 @@ public class YaccServiceImplTest {
         verify(jiraService).doesIssueExist(new IssueKey("ABC2-123"));
     }
 
+    @Test
+    public void testCheck_requireJiraIssue_issuesAreLookedUpOnceForThePush() {
+        settings.setRequireJiraIssue(true);
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+        AsyncJiraService asyncJiraService = mockAsyncJiraService(new IssueKey("ABC-123"),
+                new YaccError("ABC-123: JIRA Issue does not exist"));
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        addCommit(callback, mockPushedCommit("aaaa", "ABC-123, ABC-456: fixed"), "master");
+        addCommit(callback, mockPushedCommit("bbbb", "ABC-123: fixed again"), "master");
+        callback.onEnd();
+
+        verify(asyncJiraService).checkIssues(
+                eq(Arrays.asList(new IssueKey("ABC-123"), new IssueKey("ABC-456"))),
+                any(String.class), any(PushTimeBudget.class));
+        verify(jiraService, never()).doesIssueExist(any(IssueKey.class));
+
+        // Each commit still gets the error for the issue it mentions
+        RepositoryHookResult result = callback.getResult();
+        assertThat(result.isRejected()).isTrue();
+        assertThat(result.getVetoes().get(0).getDetailedMessage())
+                .contains("refs/heads/master: aaaa: ABC-123: JIRA Issue does not exist")
+                .contains("refs/heads/master: bbbb: ABC-123: JIRA Issue does not exist")
+                .doesNotContain("ABC-456");
+    }
+
+    @Test
+    public void testCheck_requireJiraIssue_failedLookupIsAnError() {
+        settings.setRequireJiraIssue(true);
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+        AsyncJiraService asyncJiraService = mock(AsyncJiraService.class);
+        when(jiraService.async()).thenReturn(asyncJiraService);
+
+        CompletableFuture<Map<IssueKey, List<YaccError>>> lookup = new CompletableFuture<>();
+        lookup.completeExceptionally(new IllegalStateException("broken"));
+        when(asyncJiraService.checkIssues(anyCollectionOf(IssueKey.class), any(String.class),
+                any(PushTimeBudget.class))).thenReturn(lookup);
+        when(asyncJiraService.getFailedLookupErrors(eq(new IssueKey("ABC-123")),
+                any(IllegalStateException.class)))
+                .thenReturn(Lists.newArrayList(new YaccError("jira: Internal error: broken")));
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        addCommit(callback, mockPushedCommit("aaaa", "ABC-123: fixed"), "master");
+        callback.onEnd();
+
+        assertThat(callback.getResult().getVetoes().get(0).getDetailedMessage())
+                .contains("refs/heads/master: aaaa: jira: Internal error: broken");
+    }
+
+    @Test
+    public void testCheck_requireJiraIssue_lookupIsOnlyWaitedForUntilItTimesOut() {
+        settings.setRequireJiraIssue(true);
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+        AsyncJiraService asyncJiraService = mock(AsyncJiraService.class);
+        when(jiraService.async()).thenReturn(asyncJiraService);
+
+        CompletableFuture<Map<IssueKey, List<YaccError>>> lookup = new CompletableFuture<>();
+        when(asyncJiraService.checkIssues(anyCollectionOf(IssueKey.class), any(String.class),
+                any(PushTimeBudget.class))).thenReturn(lookup);
+        when(asyncJiraService.getTimeoutMillis()).thenReturn(50L);
+        when(asyncJiraService.getFailedLookupErrors(eq(new IssueKey("ABC-123")),
+                any(TimeoutException.class)))
+                .thenReturn(Lists.newArrayList(new YaccError("jira: Internal error: JIRA did not respond within 50 ms")));
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        addCommit(callback, mockPushedCommit("aaaa", "ABC-123: fixed"), "master");
+        callback.onEnd();
+
+        assertThat(lookup.isCancelled()).isTrue();
+        assertThat(callback.getResult().getVetoes().get(0).getDetailedMessage())
+                .contains("refs/heads/master: aaaa: jira: Internal error: JIRA did not respond within 50 ms");
+    }
+
+    @Test
+    public void testCheck_requireJiraIssue_noIssueFoundIsNotLookedUp() {
+        settings.setRequireJiraIssue(true);
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        addCommit(callback, mockPushedCommit("aaaa", "no issue here"), "master");
+        callback.onEnd();
+
+        verify(jiraService, never()).async();
+        assertThat(callback.getResult().getVetoes().get(0).getDetailedMessage())
+                .contains("refs/heads/master: aaaa: No JIRA Issue found in commit message");
+    }
+
+    @Test
+    public void testCheck_requireJiraIssue_pushIssueChecksAreMadeOncePerPush() {
+        settings.setRequireJiraIssue(true);
+        settings.setIgnoreUnknownIssueProjectKeys(true);
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+        when(jiraService.doesProjectExist(any(IssueKey.class))).thenReturn(true);
+        mockAsyncJiraService(null, null);
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        addCommit(callback, mockPushedCommit("aaaa", "ABC-123: first"), "master");
+        addCommit(callback, mockPushedCommit("bbbb", "ABC-123, ABC-456: second"), "master");
+        callback.onEnd();
+
+        assertThat(callback.getResult().isAccepted()).isTrue();
+        verify(jiraService).doesJiraApplicationLinkExist();
+        verify(jiraService).doesProjectExist(new IssueKey("ABC-123"));
+    }
+
+    @Test
+    public void testCheckCommit_requireJiraIssue_onlyCommitMessageRegexGroupIsChecked() throws Exception {
+        settings.setRequireJiraIssue(true);
+        settings.setCommitMessageRegex("([A-Z]+-[0-9]+): .*");
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+
+        YaccCommit commit = mockCommit();
+        when(commit.getMessage()).thenReturn("ABC-123: fixed UTF-8 support");
+
+        assertThat(yaccService.checkCommit(settings, commit, null)).isEmpty();
+        verify(jiraService).doesIssueExist(new IssueKey("ABC-123"));
+        verify(jiraService, never()).doesIssueExist(new IssueKey("UTF-8"));
+    }
+
+    @Test
+    public void testCheckCommit_requireJiraIssue_regexGroupUsesSameMultilineMatchAsValidation() throws Exception {
+        settings.setRequireJiraIssue(true);
+        settings.setCommitMessageRegex("^([A-Z]+-[0-9]+): [^\\n]*$\\n(?s:.*)");
+        when(jiraService.doesJiraApplicationLinkExist()).thenReturn(true);
+
+        YaccCommit commit = mockCommit();
+        when(commit.getMessage()).thenReturn("ABC-123: summary\n\nmentions UTF-8 in the body");
+
+        assertThat(yaccService.checkCommit(settings, commit, null)).isEmpty();
+        verify(jiraService).doesIssueExist(new IssueKey("ABC-123"));
+        verify(jiraService, never()).doesIssueExist(new IssueKey("UTF-8"));
+    }
+
     @Test
     public void testCheckCommit_requireJiraIssue_errorsPassedThroughIfTheyAreReturned() {
         settings.setRequireJiraIssue(true);
@@ -345,6 +499,79 @@ public class YaccServiceImplTest {
                 "commit message doesn't match regex: [a-z ]+"));
     }
 
+    @Test
+    public void testCheck_pushTimeBudget_regexStoppedByExhaustedBudgetIsNotAnError() {
+        settings.setCommitMessageRegex("(a+)+$");
+        settings.setRegexTimeoutMillis("0");
+        settings.setPushTimeBudgetMillis("50");
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        addCommit(callback, mockPushedCommit("aaaa", Strings.repeat("a", 64) + "!"), "master");
+        callback.onEnd();
+
+        // Rejected for running out of time, not for the commit message
+        assertThat(callback.getResult().getVetoes().get(0).getDetailedMessage())
+                .contains("could not finish checking")
+                .doesNotContain("commit message");
+    }
+
+    @Test
+    public void testCheck_pushTimeBudget_commitNotCheckedOnceBudgetIsExhausted() throws Exception {
+        settings.setCommitMessageRegex("[a-z ]+");
+        settings.setPushTimeBudgetMillis("1");
+
+        PreRepositoryHookCommitCallback callback = startPush();
+        Thread.sleep(10);
+
+        Commit commit = mockPushedCommit("aaaa", "123 does not match regex");
+        addCommit(callback, commit, "master");
+        callback.onEnd();
+
+        verify(commit, never()).getMessage();
+        assertThat(callback.getResult().getVetoes().get(0).getDetailedMessage())
+                .contains("could not finish checking")
+                .doesNotContain("commit message");
+    }
+
+    @Test
+    public void testCheckCommit_commitMessageRegex_rejectOnRegexTimeout() {
+        settings.setCommitMessageRegex("(a+)+$");
+        settings.setRegexTimeoutMillis("50");
+
+        YaccCommit commit = mockCommit();
+        when(commit.getMessage()).thenReturn(Strings.repeat("a", 64) + "!");
+
+        List<YaccError> errors = yaccService.checkCommit(settings, commit, null);
+        assertThat(errors).containsOnly(new YaccError(YaccError.Type.COMMIT_REGEX,
+                "commit message regex timed out after 50 ms: (a+)+$"));
+    }
+
+    @Test
+    public void testCheckCommit_commitMessageRegex_acceptOnRegexTimeout() {
+        settings.setCommitMessageRegex("(a+)+$");
+        settings.setRegexTimeoutMillis("50");
+        settings.setAcceptOnRegexTimeout(true);
+
+        YaccCommit commit = mockCommit();
+        when(commit.getMessage()).thenReturn(Strings.repeat("a", 64) + "!");
+
+        assertThat(yaccService.checkCommit(settings, commit, null)).isEmpty();
+    }
+
+    @Test
+    public void testCheckCommit_commitMessageRegex_linearRegexEngineDoesNotTimeOut() {
+        settings.setCommitMessageRegex("(a+)+$");
+        settings.setRegexTimeoutMillis("50");
+        settings.setUseLinearRegexEngine(true);
+
+        YaccCommit commit = mockCommit();
+        when(commit.getMessage()).thenReturn(Strings.repeat("a", 64) + "!");
+
+        List<YaccError> errors = yaccService.checkCommit(settings, commit, null);
+        assertThat(errors).containsOnly(new YaccError(YaccError.Type.COMMIT_REGEX,
+                "commit message doesn't match regex: (a+)+$"));
+    }
+
     @Test
     public void testCheckCommit_excludeByRegex() {
         settings.setCommitMessageRegex("foo");
@@ -444,6 +671,30 @@ public class YaccServiceImplTest {
         assertThat(yaccService.checkCommit(settings, commit, null)).isEmpty();
     }
 
+    @Test
+    public void testCheck_commitPushedToSeveralRefsIsOnlyCheckedAgainForExcludedBranches() {
+        settings.setCommitMessageRegex("[A-Z0-9\\-]+: .*");
+        settings.setExcludeBranchRegex("release/.*");
+
+        PreRepositoryHookCommitCallback callback = startPush();
+
+        Commit commit = mockPushedCommit("deadbeef", "no issue key");
+        for (String branch : Arrays.asList("master", "develop", "release/1.0")) {
+            addCommit(callback, commit, branch);
+        }
+        callback.onEnd();
+
+        // Checked on master, reused for develop, and checked again for the excluded branch
+        verify(commit, times(2)).getMessage();
+
+        RepositoryHookResult result = callback.getResult();
+        assertThat(result.isRejected()).isTrue();
+        assertThat(result.getVetoes().get(0).getDetailedMessage())
+                .contains("refs/heads/master: deadbeef")
+                .contains("refs/heads/develop: deadbeef")
+                .doesNotContain("release");
+    }
+
     @Test
     public void testCheckRefChange_branchNameRegex_branchRejectedIfDoesNotMatchRegex() {
         settings.setBranchNameRegex("foo");
@@ -467,6 +718,26 @@ public class YaccServiceImplTest {
         assertThat(errors).isEmpty();
     }
 
+    @Test
+    public void testCheck_pushTimeBudget_branchNotCheckedInTimeIsRejected() {
+        settings.setBranchNameRegex("(a+)+$");
+        settings.setRegexTimeoutMillis("0");
+        settings.setPushTimeBudgetMillis("50");
+
+        PreRepositoryHookContext context = mock(PreRepositoryHookContext.class);
+        RepositoryPushHookRequest request = mock(RepositoryPushHookRequest.class, RETURNS_DEEP_STUBS);
+        RefChange refChange = mockRefAdd().setRefId("refs/heads/" + Strings.repeat("a", 64) + "!");
+        when(request.getRefChanges()).thenReturn(Arrays.asList(refChange));
+
+        RepositoryHookResult result = yaccService.check(context, request, settings);
+
+        assertThat(result.isRejected()).isTrue();
+        assertThat(result.getVetoes().get(0).getDetailedMessage())
+                .contains("could not finish checking");
+        verify(context, never()).registerCommitCallback(any(PreRepositoryHookCommitCallback.class),
+                any(RepositoryHookCommitFilter.class));
+    }
+
     @Test
     public void testCheckAnnotatedTag_normalUser_valid() {
         settings.setRequireMatchingAuthorName(true);
@@ -521,6 +792,62 @@ public class YaccServiceImplTest {
         return commit;
     }
 
+    /**
+     * Start a push without ref changes and return the commit callback it registers.
+     */
+    private PreRepositoryHookCommitCallback startPush() {
+        PreRepositoryHookContext context = mock(PreRepositoryHookContext.class);
+        RepositoryPushHookRequest request = mock(RepositoryPushHookRequest.class, RETURNS_DEEP_STUBS);
+        when(request.getRefChanges()).thenReturn(new ArrayList<>());
+
+        assertThat(yaccService.check(context, request, settings).isAccepted()).isTrue();
+
+        ArgumentCaptor<PreRepositoryHookCommitCallback> callback =
+                ArgumentCaptor.forClass(PreRepositoryHookCommitCallback.class);
+        verify(context).registerCommitCallback(callback.capture(), any(RepositoryHookCommitFilter.class));
+
+        return callback.getValue();
+    }
+
+    private void addCommit(PreRepositoryHookCommitCallback callback, Commit commit, String branch) {
+        CommitAddedDetails commitDetails = mock(CommitAddedDetails.class, RETURNS_DEEP_STUBS);
+        when(commitDetails.getCommit()).thenReturn(commit);
+        when(commitDetails.getRef().getId()).thenReturn("refs/heads/" + branch);
+        when(commitDetails.getRef().getDisplayId()).thenReturn(branch);
+
+        callback.onCommitAdded(commitDetails);
+    }
+
+    private Commit mockPushedCommit(String id, String message) {
+        Commit commit = mock(Commit.class, RETURNS_DEEP_STUBS);
+        when(commit.getId()).thenReturn(id);
+        when(commit.getMessage()).thenReturn(message);
+        when(commit.getCommitter().getName()).thenReturn("John Smith");
+        when(commit.getCommitter().getEmailAddress()).thenReturn("jsmith@example.com");
+        return commit;
+    }
+
+    /**
+     * Answer issue lookups of a push with {@code error} for {@code issueKey}, if it is not null,
+     * and no errors for any other issue.
+     */
+    private AsyncJiraService mockAsyncJiraService(IssueKey issueKey, YaccError error) {
+        AsyncJiraService asyncJiraService = mock(AsyncJiraService.class);
+        when(jiraService.async()).thenReturn(asyncJiraService);
+        when(asyncJiraService.checkIssues(anyCollectionOf(IssueKey.class), any(String.class),
+                any(PushTimeBudget.class))).thenAnswer(invocation -> {
+                    Map<IssueKey, List<YaccError>> issueErrors = new HashMap<>();
+                    for (Object key : invocation.getArgumentAt(0, Collection.class)) {
+                        issueErrors.put((IssueKey) key, key.equals(issueKey)
+                                ? Lists.newArrayList(error) : new ArrayList<>());
+                    }
+
+                    return CompletableFuture.completedFuture(issueErrors);
+                });
+
+        return asyncJiraService;
+    }
+
     private MockRefChange mockRefAdd() {
         MockRefChange refChange = new MockRefChange();
         refChange.setFromHash("0000000000000000000000000000000000000000");
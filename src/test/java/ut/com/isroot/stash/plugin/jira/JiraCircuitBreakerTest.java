@@ -0,0 +1,156 @@
+package ut.com.isroot.stash.plugin.jira;
+
+import com.google.common.base.Ticker;
+import com.isroot.stash.plugin.YaccMetrics;
+import com.isroot.stash.plugin.jira.JiraCircuitBreaker;
+import com.isroot.stash.plugin.jira.JiraServiceConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2026-10-18
+ */
+public class JiraCircuitBreakerTest {
+    private final FakeTicker ticker = new FakeTicker();
+
+    private JiraCircuitBreaker circuitBreaker;
+
+    @Before
+    public void setup() {
+        YaccMetrics.reset();
+
+        circuitBreaker = new JiraCircuitBreaker(new JiraServiceConfig()
+                .setCircuitBreakerFailureThreshold(3)
+                .setCircuitBreakerSlowCallMillis(1000)
+                .setCircuitBreakerOpenMillis(30000), ticker);
+    }
+
+    @Test
+    public void testAllowRequest_closedUntilFailureThresholdIsReached() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isFalse();
+        assertThat(YaccMetrics.get("jira.circuitBreaker.opened")).isEqualTo(1);
+    }
+
+    @Test
+    public void testAllowRequest_successResetsFailureCount() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess(0);
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void testAllowRequest_slowCallsCountAsFailures() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onSuccess(TimeUnit.SECONDS.toNanos(2));
+        }
+
+        assertThat(circuitBreaker.isOpen()).isTrue();
+    }
+
+    @Test
+    public void testAllowRequest_singleProbeAllowedAfterOpenInterval() {
+        open();
+        ticker.advance(30000);
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+        assertThat(circuitBreaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    public void testAllowRequest_successfulProbeClosesBreaker() {
+        open();
+        ticker.advance(30000);
+
+        circuitBreaker.allowRequest();
+        circuitBreaker.onSuccess(0);
+
+        assertThat(circuitBreaker.isOpen()).isFalse();
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void testAllowRequest_failedProbeReopensBreaker() {
+        open();
+        ticker.advance(30000);
+
+        circuitBreaker.allowRequest();
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isFalse();
+
+        ticker.advance(30000);
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void testAllowRequest_ignoredProbeLetsNextRequestProbe() {
+        open();
+        ticker.advance(30000);
+
+        circuitBreaker.allowRequest();
+        circuitBreaker.onIgnored();
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void testOnCancelled_onlySlowRequestsCountAsFailures() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onCancelled(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertThat(circuitBreaker.isOpen()).isFalse();
+
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onCancelled(TimeUnit.SECONDS.toNanos(2));
+        }
+
+        assertThat(circuitBreaker.isOpen()).isTrue();
+    }
+
+    @Test
+    public void testAllowRequest_zeroThresholdDisablesBreaker() {
+        circuitBreaker = new JiraCircuitBreaker(new JiraServiceConfig()
+                .setCircuitBreakerFailureThreshold(0), ticker);
+
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onFailure();
+        }
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
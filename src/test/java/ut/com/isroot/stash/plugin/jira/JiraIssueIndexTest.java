@@ -0,0 +1,68 @@
+package ut.com.isroot.stash.plugin.jira;
+
+import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.jira.JiraIssueIndex;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2026-10-18
+ */
+public class JiraIssueIndexTest {
+    @Test
+    public void testContains() throws Exception {
+        JiraIssueIndex index = new JiraIssueIndex();
+
+        index.add("link1", Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-100"),
+                new IssueKey("OTHER-2")));
+
+        assertThat(index.contains("link1", new IssueKey("TEST-1"))).isTrue();
+        assertThat(index.contains("link1", new IssueKey("TEST-100"))).isTrue();
+        assertThat(index.contains("link1", new IssueKey("OTHER-2"))).isTrue();
+        assertThat(index.contains("link1", new IssueKey("TEST-2"))).isFalse();
+        assertThat(index.contains("link1", new IssueKey("NONE-1"))).isFalse();
+        assertThat(index.contains("link2", new IssueKey("TEST-1"))).isFalse();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void testContains_issueNumbersTooLargeAreNotIndexed() throws Exception {
+        JiraIssueIndex index = new JiraIssueIndex();
+
+        index.add("link1", Arrays.asList(new IssueKey("TEST-99999999999")));
+
+        assertThat(index.contains("link1", new IssueKey("TEST-99999999999"))).isFalse();
+        assertThat(index.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testWriteTo_indexCanBeReadBack() throws Exception {
+        JiraIssueIndex index = new JiraIssueIndex();
+        index.add("link1", Arrays.asList(new IssueKey("TEST-1"), new IssueKey("TEST-5000")));
+        index.add("link2", Arrays.asList(new IssueKey("OTHER-3")));
+        index.setSyncedAtMillis("link1", "TEST", 1234);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+
+        JiraIssueIndex read = JiraIssueIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(read.contains("link1", new IssueKey("TEST-1"))).isTrue();
+        assertThat(read.contains("link1", new IssueKey("TEST-5000"))).isTrue();
+        assertThat(read.contains("link2", new IssueKey("OTHER-3"))).isTrue();
+        assertThat(read.size()).isEqualTo(3);
+        assertThat(read.getSyncedAtMillis("link1", "TEST")).isEqualTo(1234);
+        assertThat(read.getSyncedAtMillis("link2", "OTHER")).isEqualTo(0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadFrom_otherFormatIsRejected() throws Exception {
+        JiraIssueIndex.readFrom(new ByteArrayInputStream("not an index".getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,55 @@
+package ut.com.isroot.stash.plugin.jira;
+
+import com.isroot.stash.plugin.jira.JiraLatencyTracker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2026-10-18
+ */
+public class JiraLatencyTrackerTest {
+    @Test
+    public void testGetPercentileMillis_noPercentileUntilMinSamplesSeen() {
+        JiraLatencyTracker tracker = new JiraLatencyTracker(10, 3);
+
+        tracker.record(TimeUnit.MILLISECONDS.toNanos(5));
+        tracker.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(tracker.getPercentileMillis(50)).isEqualTo(-1);
+
+        tracker.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(tracker.getPercentileMillis(50)).isEqualTo(5);
+    }
+
+    @Test
+    public void testGetPercentileMillis() {
+        JiraLatencyTracker tracker = new JiraLatencyTracker(100, 1);
+
+        for (int i = 100; i >= 1; i--) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(tracker.getPercentileMillis(50)).isEqualTo(50);
+        assertThat(tracker.getPercentileMillis(95)).isEqualTo(95);
+        assertThat(tracker.getPercentileMillis(100)).isEqualTo(100);
+        assertThat(tracker.getPercentileMillis(0.5)).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetPercentileMillis_onlyRecentSamplesAreKept() {
+        JiraLatencyTracker tracker = new JiraLatencyTracker(5, 1);
+
+        for (int i = 0; i < 5; i++) {
+            tracker.record(TimeUnit.SECONDS.toNanos(10));
+        }
+        for (int i = 0; i < 5; i++) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        assertThat(tracker.getPercentileMillis(100)).isEqualTo(20);
+    }
+}
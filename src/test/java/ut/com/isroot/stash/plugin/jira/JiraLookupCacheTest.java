@@ -0,0 +1,271 @@
+package ut.com.isroot.stash.plugin.jira;
+
+import com.google.common.base.Ticker;
+import com.isroot.stash.plugin.IssueKey;
+import com.isroot.stash.plugin.YaccMetrics;
+import com.isroot.stash.plugin.jira.JiraLookupCache;
+import com.isroot.stash.plugin.jira.JiraLookupCacheBus;
+import com.isroot.stash.plugin.jira.JiraLookupLog;
+import com.isroot.stash.plugin.jira.JiraServiceConfig;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ut.com.isroot.stash.plugin.mock.MockJiraLookupCacheBus;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2026-10-18
+ */
+public class JiraLookupCacheTest {
+    private static final IssueKey ISSUE = new IssueKey("TEST", "1");
+    private static final String USER = "1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    private JiraServiceConfig config;
+
+    @Before
+    public void setup() {
+        YaccMetrics.reset();
+
+        config = new JiraServiceConfig()
+                .setCacheMaxEntries(100)
+                .setCachePositiveTtlMillis(60000)
+                .setCacheNegativeTtlMillis(1000);
+    }
+
+    @Test
+    public void testGet_returnsNullIfNotCached() {
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isNull();
+        assertThat(YaccMetrics.get("jira.cache.misses")).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_returnsCachedResult() {
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+        cache.put("link1", USER, ISSUE, null, true);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isTrue();
+        assertThat(YaccMetrics.get("jira.cache.hits")).isEqualTo(1);
+        assertThat(YaccMetrics.get("jira.cache.hitRatePercent")).isEqualTo(100);
+    }
+
+    @Test
+    public void testGet_linkAndJqlQueryArePartOfKey() {
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+        cache.put("link1", USER, ISSUE, null, true);
+        cache.put("link1", USER, ISSUE, "status = Done", false);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isTrue();
+        assertThat(cache.get("link1", USER, ISSUE, "status = Done")).isFalse();
+        assertThat(cache.get("link1", USER, ISSUE, "status = Open")).isNull();
+        assertThat(cache.get("link2", USER, ISSUE, null)).isNull();
+    }
+
+    @Test
+    public void testGet_userIsPartOfKey() {
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+        cache.put("link1", USER, ISSUE, null, false);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isFalse();
+        assertThat(cache.get("link1", "2", ISSUE, null)).isNull();
+        assertThat(cache.get("link1", "", ISSUE, null)).isNull();
+    }
+
+    @Test
+    public void testGet_negativeResultsExpireBeforePositiveResults() {
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+        cache.put("link1", USER, ISSUE, null, true);
+        cache.put("link1", USER, ISSUE, "status = Done", false);
+
+        ticker.advance(1000);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isTrue();
+        assertThat(cache.get("link1", USER, ISSUE, "status = Done")).isNull();
+
+        ticker.advance(59000);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isNull();
+    }
+
+    @Test
+    public void testPut_leastRecentlyUsedEntriesAreEvictedWhenFull() {
+        config.setCacheMaxEntries(1);
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+
+        cache.put("link1", USER, ISSUE, null, true);
+        cache.put("link1", USER, new IssueKey("TEST", "2"), null, true);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("link1", USER, ISSUE, null)).isNull();
+        assertThat(YaccMetrics.get("jira.cache.evictions")).isEqualTo(1);
+    }
+
+    @Test
+    public void testPut_zeroTtlDisablesCachingOfThatResult() {
+        config.setCacheNegativeTtlMillis(0);
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+
+        cache.put("link1", USER, ISSUE, null, false);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isNull();
+    }
+
+    @Test
+    public void testPut_zeroMaxEntriesDisablesCache() {
+        config.setCacheMaxEntries(0);
+        JiraLookupCache cache = new JiraLookupCache(config, ticker);
+
+        cache.put("link1", USER, ISSUE, null, true);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isNull();
+        assertThat(YaccMetrics.get("jira.cache.misses")).isEqualTo(0);
+    }
+
+    @Test
+    public void testPersistent_entriesAreRestoredAfterRestart() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "lookups.log");
+
+        JiraLookupCache cache = new JiraLookupCache(config, ticker, new JiraLookupLog(file, 1000));
+        cache.put("link1", USER, ISSUE, null, true);
+        cache.put("link1", USER, ISSUE, "status = Done", false);
+
+        JiraLookupCache restarted = new JiraLookupCache(config, new FakeTicker(),
+                new JiraLookupLog(file, 1000));
+
+        assertThat(restarted.size()).isEqualTo(2);
+        assertThat(restarted.get("link1", USER, ISSUE, null)).isTrue();
+        assertThat(restarted.get("link1", USER, ISSUE, "status = Done")).isFalse();
+        assertThat(YaccMetrics.get("jira.cache.persistent.restored")).isEqualTo(2);
+    }
+
+    @Test
+    public void testPersistent_restoredEntriesKeepTheirFetchTime() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "lookups.log");
+        long fetchedAtMillis = System.currentTimeMillis() - 30000;
+
+        JiraLookupLog lookupLog = new JiraLookupLog(file, 1000);
+        lookupLog.append(new JiraLookupLog.Record("link1", USER, "TEST-1", null, true, fetchedAtMillis),
+                Collections::emptyList);
+        lookupLog.append(new JiraLookupLog.Record("link1", USER, "TEST-2", null, false, fetchedAtMillis),
+                Collections::emptyList);
+
+        JiraLookupCache cache = new JiraLookupCache(config, ticker, new JiraLookupLog(file, 1000));
+
+        // The missing issue was already past its TTL, the found issue has about 30 seconds left
+        assertThat(cache.get("link1", USER, new IssueKey("TEST", "2"), null)).isNull();
+        assertThat(cache.get("link1", USER, ISSUE, null)).isTrue();
+
+        ticker.advance(31000);
+
+        assertThat(cache.get("link1", USER, ISSUE, null)).isNull();
+    }
+
+    @Test
+    public void testPersistent_logIsCompactedOnRestart() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "lookups.log");
+
+        JiraLookupCache cache = new JiraLookupCache(config, ticker, new JiraLookupLog(file, 1000));
+        for (int i = 0; i < 10; i++) {
+            cache.put("link1", USER, ISSUE, null, i % 2 == 0);
+        }
+
+        assertThat(new JiraLookupLog(file, 1000).load()).hasSize(10);
+
+        JiraLookupCache restarted = new JiraLookupCache(config, ticker,
+                new JiraLookupLog(file, 1000));
+
+        assertThat(restarted.get("link1", USER, ISSUE, null)).isFalse();
+        assertThat(new JiraLookupLog(file, 1000).load()).hasSize(1);
+    }
+
+    @Test
+    public void testPersistent_lookupsAreNotWrittenAfterClose() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "lookups.log");
+
+        JiraLookupCache cache = new JiraLookupCache(config, ticker, new JiraLookupLog(file, 1000));
+        cache.put("link1", USER, ISSUE, null, true);
+        cache.close();
+        cache.put("link1", USER, ISSUE, "status = Done", false);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(new JiraLookupLog(file, 1000).load()).hasSize(1);
+    }
+
+    @Test
+    public void testCluster_lookupsAreSharedWithOtherNodes() {
+        MockJiraLookupCacheBus bus = new MockJiraLookupCacheBus();
+        JiraLookupCache node1 = new JiraLookupCache(config, ticker, null, bus);
+        JiraLookupCache node2 = new JiraLookupCache(config, new FakeTicker(), null, bus);
+
+        node1.put("link1", USER, ISSUE, null, true);
+        node2.put("link1", USER, ISSUE, "status = Done", false);
+
+        assertThat(node2.get("link1", USER, ISSUE, null)).isTrue();
+        assertThat(node1.get("link1", USER, ISSUE, "status = Done")).isFalse();
+        assertThat(bus.getPublished()).hasSize(2);
+        assertThat(YaccMetrics.get("jira.cache.cluster.received")).isEqualTo(2);
+    }
+
+    @Test
+    public void testCluster_clearClearsEveryNode() {
+        MockJiraLookupCacheBus bus = new MockJiraLookupCacheBus();
+        JiraLookupCache node1 = new JiraLookupCache(config, ticker, null, bus);
+        JiraLookupCache node2 = new JiraLookupCache(config, ticker, null, bus);
+
+        node1.put("link1", USER, ISSUE, null, true);
+        node2.clear();
+
+        assertThat(node1.size()).isEqualTo(0);
+        assertThat(node2.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCluster_olderLookupFromAnotherNodeIsIgnored() {
+        MockJiraLookupCacheBus bus = new MockJiraLookupCacheBus();
+        JiraLookupCache node1 = new JiraLookupCache(config, ticker, null, bus);
+        new JiraLookupCache(config, ticker, null, bus);
+
+        node1.put("link1", USER, ISSUE, null, true);
+        bus.publish(new JiraLookupCacheBus.Message("node2", new JiraLookupLog.Record("link1", USER,
+                "TEST-1", null, false, System.currentTimeMillis() - 500)));
+
+        assertThat(node1.get("link1", USER, ISSUE, null)).isTrue();
+    }
+
+    @Test
+    public void testCluster_closedCacheNoLongerReceivesLookups() {
+        MockJiraLookupCacheBus bus = new MockJiraLookupCacheBus();
+        JiraLookupCache node1 = new JiraLookupCache(config, ticker, null, bus);
+        JiraLookupCache node2 = new JiraLookupCache(config, ticker, null, bus);
+
+        node2.close();
+        node1.put("link1", USER, ISSUE, null, true);
+
+        assertThat(node2.size()).isEqualTo(0);
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
@@ -2,21 +2,36 @@ package ut.com.isroot.stash.plugin.mock;
 
 import com.atlassian.applinks.api.ApplicationId;
 import com.atlassian.applinks.api.ApplicationLink;
+import com.atlassian.applinks.api.ApplicationLinkRequest;
 import com.atlassian.applinks.api.ApplicationLinkRequestFactory;
 import com.atlassian.applinks.api.ApplicationType;
 import com.atlassian.applinks.api.AuthorisationURIGenerator;
 import com.atlassian.applinks.api.CredentialsRequiredException;
 import com.atlassian.applinks.api.auth.AuthenticationProvider;
 import com.atlassian.sal.api.net.Request;
+import com.google.gson.Gson;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author Sean Ford
  * @since 2016-02-14
  */
 public class MockApplicationLink implements ApplicationLink {
+    private final ApplicationId id = new ApplicationId(UUID.randomUUID().toString());
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger projectListRequestCount = new AtomicInteger();
+
     private String name;
 
     public MockApplicationLink() {
@@ -28,7 +43,19 @@ public class MockApplicationLink implements ApplicationLink {
     }
 
     public static MockApplicationLink requestThrowsCredentialException() {
-        AuthorisationURIGenerator uriGenerator = new AuthorisationURIGenerator() {
+        AuthorisationURIGenerator uriGenerator = authorisationUriGenerator();
+
+        return new MockApplicationLink() {
+            @Override
+            public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
+                countRequest();
+                return MockApplicationLinkRequestFactory.mockCredentialsException(new CredentialsRequiredException(uriGenerator, "auth exception"));
+            }
+        };
+    }
+
+    private static AuthorisationURIGenerator authorisationUriGenerator() {
+        return new AuthorisationURIGenerator() {
             @Override
             public URI getAuthorisationURI(URI uri) {
                 throw new UnsupportedOperationException();
@@ -44,33 +71,169 @@ public class MockApplicationLink implements ApplicationLink {
                 }
             }
         };
+    }
 
+    public static MockApplicationLink requestReturnsResponse(Request.MethodType methodType, String path, String response) {
         return new MockApplicationLink() {
             @Override
             public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
-                return MockApplicationLinkRequestFactory.mockCredentialsException(new CredentialsRequiredException(uriGenerator, "auth exception"));
+                countRequest();
+                return MockApplicationLinkRequestFactory.mockReturnResponse(methodType, path, new MockApplicationLinkRequest(response));
             }
         };
     }
 
-    public static MockApplicationLink requestReturnsResponse(Request.MethodType methodType, String path, String response) {
+    public static MockApplicationLink requestReturnsResponse(Request.MethodType methodType, String path, int statusCode) {
         return new MockApplicationLink() {
             @Override
             public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
-                return MockApplicationLinkRequestFactory.mockReturnResponse(methodType, path, new MockApplicationLinkRequest(response));
+                countRequest();
+                return MockApplicationLinkRequestFactory.mockReturnResponse(methodType, path, new MockApplicationLinkRequest(statusCode));
             }
         };
     }
 
-    public static MockApplicationLink requestReturnsResponse(Request.MethodType methodType, String path, int statusCode) {
+    /**
+     * Answer JIRA searches with the response returned by {@code searchResponder} for the JQL in
+     * the request, or a 400 if it returns null.
+     */
+    public static MockApplicationLink searchReturnsResponse(Function<String, String> searchResponder) {
         return new MockApplicationLink() {
             @Override
             public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
-                return MockApplicationLinkRequestFactory.mockReturnResponse(methodType, path, new MockApplicationLinkRequest(statusCode));
+                countRequest();
+                return MockApplicationLinkRequestFactory.mockReturnResponse(Request.MethodType.POST,
+                        "/rest/api/2/search", new MockApplicationLinkRequest(searchResponder));
+            }
+        };
+    }
+
+    /**
+     * Answer JIRA searches with the response returned by {@code searchResponder} for the name of
+     * the current user and the JQL in the request, or a 400 if it returns null. Like the OAuth
+     * request factories of real application links, the user is looked up when a request is
+     * created, and creating a request without a user needs credentials.
+     */
+    public static MockApplicationLink searchAsCurrentUser(Supplier<String> currentUser,
+            BiFunction<String, String, String> searchResponder) {
+        return new MockApplicationLink() {
+            @Override
+            public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
+                countRequest();
+                return asCurrentUser(currentUser, user -> MockApplicationLinkRequestFactory.mockReturnResponse(
+                        Request.MethodType.POST, "/rest/api/2/search",
+                        new MockApplicationLinkRequest(jql -> searchResponder.apply(user, jql))));
+            }
+        };
+    }
+
+    /**
+     * Answer requests for the project list with the keys returned by {@code projectKeys} for the
+     * name of the current user, and JIRA searches like
+     * {@link #searchAsCurrentUser(Supplier, BiFunction)}.
+     */
+    public static MockApplicationLink projectsAndSearchAsCurrentUser(Supplier<String> currentUser,
+            Function<String, List<String>> projectKeys, BiFunction<String, String, String> searchResponder) {
+        return new MockApplicationLink() {
+            @Override
+            public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
+                countRequest();
+                return asCurrentUser(currentUser, user -> {
+                    Map<String, Supplier<ApplicationLinkRequest>> requests = new HashMap<>();
+                    requests.put("GET /rest/api/2/project", () -> {
+                        countProjectListRequest();
+                        return new MockApplicationLinkRequest(projectsResponse(projectKeys.apply(user)));
+                    });
+                    requests.put("POST /rest/api/2/search", () ->
+                            new MockApplicationLinkRequest(jql -> searchResponder.apply(user, jql)));
+
+                    return MockApplicationLinkRequestFactory.mockReturnResponses(requests);
+                });
+            }
+        };
+    }
+
+    private static ApplicationLinkRequestFactory asCurrentUser(Supplier<String> currentUser,
+            Function<String, ApplicationLinkRequestFactory> factoryForUser) {
+        return new ApplicationLinkRequestFactory() {
+            @Override
+            public URI getAuthorisationURI(URI uri) {
+                return null;
+            }
+
+            @Override
+            public URI getAuthorisationURI() {
+                return null;
+            }
+
+            @Override
+            public ApplicationLinkRequest createRequest(Request.MethodType methodType, String path)
+                    throws CredentialsRequiredException {
+                String user = currentUser.get();
+                if (user == null) {
+                    throw new CredentialsRequiredException(authorisationUriGenerator(), "no user");
+                }
+
+                return factoryForUser.apply(user).createRequest(methodType, path);
+            }
+        };
+    }
+
+    /**
+     * Answer requests for the project list with {@code projectKeys}, and JIRA searches like
+     * {@link #searchReturnsResponse(Function)}.
+     */
+    public static MockApplicationLink projectsAndSearchReturnResponse(List<String> projectKeys,
+            Function<String, String> searchResponder) {
+        String projectsResponse = projectsResponse(projectKeys);
+
+        return new MockApplicationLink() {
+            @Override
+            public ApplicationLinkRequestFactory createAuthenticatedRequestFactory() {
+                countRequest();
+
+                Map<String, Supplier<ApplicationLinkRequest>> requests = new HashMap<>();
+                requests.put("GET /rest/api/2/project", () -> {
+                    countProjectListRequest();
+                    return new MockApplicationLinkRequest(projectsResponse);
+                });
+                requests.put("POST /rest/api/2/search", () -> new MockApplicationLinkRequest(searchResponder));
+
+                return MockApplicationLinkRequestFactory.mockReturnResponses(requests);
             }
         };
     }
 
+    private static String projectsResponse(List<String> projectKeys) {
+        List<Map<String, String>> projects = new ArrayList<>();
+        for (String projectKey : projectKeys) {
+            Map<String, String> project = new HashMap<>();
+            project.put("key", projectKey);
+            projects.add(project);
+        }
+
+        return new Gson().toJson(projects);
+    }
+
+    protected void countProjectListRequest() {
+        projectListRequestCount.incrementAndGet();
+    }
+
+    /**
+     * Number of project list requests.
+     */
+    public int getProjectListRequestCount() {
+        return projectListRequestCount.get();
+    }
+
+    protected void countRequest() {
+        requestCount.incrementAndGet();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
     public MockApplicationLink setName(String name) {
         this.name = name;
         return this;
@@ -78,7 +241,7 @@ public class MockApplicationLink implements ApplicationLink {
 
     @Override
     public ApplicationId getId() {
-        throw new UnsupportedOperationException();
+        return id;
     }
 
     @Override
@@ -9,9 +9,11 @@ import com.atlassian.sal.api.net.ResponseHandler;
 import com.atlassian.sal.api.net.ResponseStatusException;
 import com.atlassian.sal.api.net.ReturningResponseHandler;
 import com.atlassian.sal.api.net.auth.Authenticator;
+import com.google.gson.JsonParser;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * @author Sean Ford
@@ -20,15 +22,30 @@ import java.util.Map;
 class MockApplicationLinkRequest implements ApplicationLinkRequest {
     private final String response;
     private final Integer statusCode;
+    private final Function<String, String> searchResponder;
+
+    private Object entity;
 
     public MockApplicationLinkRequest(String response) {
         this.response = response;
         this.statusCode = null;
+        this.searchResponder = null;
     }
 
     public MockApplicationLinkRequest(int statusCode) {
         this.response = null;
         this.statusCode = statusCode;
+        this.searchResponder = null;
+    }
+
+    /**
+     * Respond to a JIRA search based on the JQL in the request. A null response from
+     * {@code searchResponder} is returned as a 400, like JIRA does for invalid JQL.
+     */
+    public MockApplicationLinkRequest(Function<String, String> searchResponder) {
+        this.response = null;
+        this.statusCode = 400;
+        this.searchResponder = searchResponder;
     }
 
     @Override
@@ -38,12 +55,12 @@ class MockApplicationLinkRequest implements ApplicationLinkRequest {
 
     @Override
     public ApplicationLinkRequest setConnectionTimeout(int i) {
-        throw new UnsupportedOperationException();
+        return this;
     }
 
     @Override
     public ApplicationLinkRequest setSoTimeout(int i) {
-        throw new UnsupportedOperationException();
+        return this;
     }
 
     @Override
@@ -63,6 +80,7 @@ class MockApplicationLinkRequest implements ApplicationLinkRequest {
 
     @Override
     public ApplicationLinkRequest setEntity(Object o) {
+        entity = o;
         return this;
     }
 
@@ -128,8 +146,9 @@ class MockApplicationLinkRequest implements ApplicationLinkRequest {
 
     @Override
     public String execute() throws ResponseException {
-        if(response != null) {
-            return response;
+        String body = respond();
+        if (body != null) {
+            return body;
         } else {
             throw new ResponseStatusException("exception", new MockResponse(statusCode));
         }
@@ -137,6 +156,24 @@ class MockApplicationLinkRequest implements ApplicationLinkRequest {
 
     @Override
     public <RET> RET executeAndReturn(ReturningResponseHandler<Response, RET> returningResponseHandler) throws ResponseException {
-        throw new UnsupportedOperationException();
+        String body = respond();
+        if (body != null) {
+            return returningResponseHandler.handle(new MockResponse(200, body));
+        } else {
+            return returningResponseHandler.handle(new MockResponse(statusCode));
+        }
+    }
+
+    private String respond() {
+        if (searchResponder != null) {
+            String jql = new JsonParser().parse(entity.toString()).getAsJsonObject()
+                    .get("jql").getAsString();
+            String searchResponse = searchResponder.apply(jql);
+            if (searchResponse != null) {
+                return searchResponse;
+            }
+        }
+
+        return response;
     }
 }
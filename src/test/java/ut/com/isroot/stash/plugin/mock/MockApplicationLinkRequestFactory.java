@@ -7,6 +7,8 @@ import com.atlassian.sal.api.net.Request;
 import com.google.common.base.Preconditions;
 
 import java.net.URI;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * @author Sean Ford
@@ -27,6 +29,32 @@ class MockApplicationLinkRequestFactory implements ApplicationLinkRequestFactory
         return new MockApplicationLinkRequestFactory(methodType, path, request);
     }
 
+    /**
+     * Return a request from {@code requests}, keyed by method and path, for example
+     * {@code "GET /rest/api/2/project"}.
+     */
+    public static ApplicationLinkRequestFactory mockReturnResponses(Map<String, Supplier<ApplicationLinkRequest>> requests) {
+        return new ApplicationLinkRequestFactory() {
+            @Override
+            public URI getAuthorisationURI(URI uri) {
+                return null;
+            }
+
+            @Override
+            public URI getAuthorisationURI() {
+                return null;
+            }
+
+            @Override
+            public ApplicationLinkRequest createRequest(Request.MethodType methodType, String path) {
+                Supplier<ApplicationLinkRequest> request = requests.get(methodType + " " + path);
+                Preconditions.checkArgument(request != null, "unexpected request %s %s", methodType, path);
+
+                return request.get();
+            }
+        };
+    }
+
     public static ApplicationLinkRequestFactory mockCredentialsException(CredentialsRequiredException e) {
         return new ApplicationLinkRequestFactory() {
 
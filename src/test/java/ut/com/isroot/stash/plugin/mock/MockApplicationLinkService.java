@@ -20,6 +20,10 @@ public class MockApplicationLinkService implements ApplicationLinkService {
         this.links = Lists.newArrayList(links);
     }
 
+    public void addLink(ApplicationLink link) {
+        links.add(link);
+    }
+
     @Override
     public ApplicationLink getApplicationLink(ApplicationId applicationId) throws TypeNotInstalledException {
         throw new UnsupportedOperationException();
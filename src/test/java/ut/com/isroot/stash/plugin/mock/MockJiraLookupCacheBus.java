@@ -0,0 +1,63 @@
+package ut.com.isroot.stash.plugin.mock;
+
+import com.isroot.stash.plugin.jira.JiraLookupCacheBus;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers messages to every subscriber in the same JVM, serialized and deserialized on the way
+ * like they would be between the nodes of a cluster.
+ *
+ * @since 2026-10-18
+ */
+public class MockJiraLookupCacheBus implements JiraLookupCacheBus {
+    private final List<Consumer<Message>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Message> published = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(@Nonnull Message message) {
+        published.add(message);
+
+        for (Consumer<Message> listener : listeners) {
+            listener.accept(copy(message));
+        }
+    }
+
+    @Override
+    public void subscribe(@Nonnull Consumer<Message> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unsubscribe(@Nonnull Consumer<Message> listener) {
+        listeners.remove(listener);
+    }
+
+    public List<Message> getPublished() {
+        return published;
+    }
+
+    private static Message copy(Message message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(message);
+            }
+
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (Message) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("message is not serializable", e);
+        }
+    }
+}
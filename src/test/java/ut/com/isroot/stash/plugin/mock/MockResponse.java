@@ -3,7 +3,9 @@ package ut.com.isroot.stash.plugin.mock;
 import com.atlassian.sal.api.net.Response;
 import com.atlassian.sal.api.net.ResponseException;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
@@ -12,9 +14,15 @@ import java.util.Map;
  */
 class MockResponse implements Response {
     private final int statusCode;
+    private final String body;
 
     public MockResponse(int statusCode) {
+        this(statusCode, "MOCK RESPONSE BODY");
+    }
+
+    public MockResponse(int statusCode, String body) {
         this.statusCode = statusCode;
+        this.body = body;
     }
 
     @Override
@@ -24,12 +32,12 @@ class MockResponse implements Response {
 
     @Override
     public String getResponseBodyAsString() throws ResponseException {
-        return "MOCK RESPONSE BODY";
+        return body;
     }
 
     @Override
     public InputStream getResponseBodyAsStream() throws ResponseException {
-        throw new UnsupportedOperationException();
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
     }
 
     @Override
@@ -44,7 +52,7 @@ class MockResponse implements Response {
 
     @Override
     public boolean isSuccessful() {
-        throw new UnsupportedOperationException();
+        return statusCode >= 200 && statusCode < 300;
     }
 
     @Override
@@ -0,0 +1,104 @@
+package ut.com.isroot.stash.plugin.mock;
+
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.user.ApplicationUser;
+import com.atlassian.bitbucket.user.EscalatedSecurityContext;
+import com.atlassian.bitbucket.user.SecurityService;
+import com.atlassian.bitbucket.user.UserService;
+import com.atlassian.bitbucket.util.Operation;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A current user per thread, like Bitbucket has. The {@link AuthenticationContext} returns it,
+ * and {@link SecurityService#impersonating} changes it while an operation runs. The
+ * {@link UserService} finds users added with {@link #addUser(int, String)}.
+ *
+ * @since 2026-10-18
+ */
+public class MockUserContext {
+    private final ThreadLocal<ApplicationUser> currentUser = new ThreadLocal<>();
+    private final AuthenticationContext authenticationContext = mock(AuthenticationContext.class);
+    private final SecurityService securityService = mock(SecurityService.class);
+    private final UserService userService = mock(UserService.class);
+
+    public MockUserContext() {
+        when(authenticationContext.getCurrentUser()).thenAnswer(invocation -> currentUser.get());
+
+        when(securityService.impersonating(any(ApplicationUser.class), anyString())).thenAnswer(invocation -> {
+            ApplicationUser user = (ApplicationUser) invocation.getArguments()[0];
+
+            return mock(EscalatedSecurityContext.class, (Answer<Object>) call -> {
+                if (!call.getMethod().getName().equals("call")) {
+                    throw new UnsupportedOperationException(call.getMethod().getName());
+                }
+
+                return runAs(user, (Operation<?, ?>) call.getArguments()[0]);
+            });
+        });
+    }
+
+    public static ApplicationUser user(int id, String name) {
+        ApplicationUser user = mock(ApplicationUser.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getName()).thenReturn(name);
+
+        return user;
+    }
+
+    /**
+     * Create a user that the {@link UserService} finds by name.
+     */
+    public ApplicationUser addUser(int id, String name) {
+        ApplicationUser user = user(id, name);
+        when(userService.getUserByName(name)).thenReturn(user);
+
+        return user;
+    }
+
+    public AuthenticationContext getAuthenticationContext() {
+        return authenticationContext;
+    }
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+
+    public UserService getUserService() {
+        return userService;
+    }
+
+    /**
+     * Set the user of the current thread, or clear it with null.
+     */
+    public void setCurrentUser(ApplicationUser user) {
+        if (user != null) {
+            currentUser.set(user);
+        } else {
+            currentUser.remove();
+        }
+    }
+
+    /**
+     * Return the name of the user of the current thread, or null if there is none.
+     */
+    public String getCurrentUserName() {
+        ApplicationUser user = currentUser.get();
+        return user != null ? user.getName() : null;
+    }
+
+    private Object runAs(ApplicationUser user, Operation<?, ?> operation) throws Throwable {
+        ApplicationUser previous = currentUser.get();
+        currentUser.set(user);
+
+        try {
+            return operation.perform();
+        } finally {
+            setCurrentUser(previous);
+        }
+    }
+}
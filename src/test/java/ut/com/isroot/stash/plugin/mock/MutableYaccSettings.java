@@ -64,4 +64,29 @@ public class MutableYaccSettings extends MapBackedSettings {
         set("excludeServiceUserCommits", value);
         return this;
     }
+
+    public MutableYaccSettings setRegexTimeoutMillis(String value) {
+        set("regexTimeoutMillis", value);
+        return this;
+    }
+
+    public MutableYaccSettings setAcceptOnRegexTimeout(Boolean value) {
+        set("acceptOnRegexTimeout", value);
+        return this;
+    }
+
+    public MutableYaccSettings setUseLinearRegexEngine(Boolean value) {
+        set("useLinearRegexEngine", value);
+        return this;
+    }
+
+    public MutableYaccSettings setPushTimeBudgetMillis(String value) {
+        set("pushTimeBudgetMillis", value);
+        return this;
+    }
+
+    public MutableYaccSettings setPushTimeBudgetPolicy(String value) {
+        set("pushTimeBudgetPolicy", value);
+        return this;
+    }
 }
@@ -0,0 +1,136 @@
+package ut.com.isroot.stash.plugin.regex;
+
+import com.google.common.base.Strings;
+import com.isroot.stash.plugin.regex.LinearRegex;
+import com.isroot.stash.plugin.regex.UnsupportedRegexException;
+import org.junit.Test;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @since 2026-10-18
+ */
+public class LinearRegexTest {
+    private static final String[] REGEXES = {
+            "[A-Z0-9\\-]+: .*",
+            "^Revert \"|#skipchecks",
+            "master|(?:(?:bugfix|hotfix|feature)/[A-Z]+-\\d+-.+)",
+            "(?s)([A-Z]+-\\d+) .*",
+            "([A-Z]+-\\d+)?(.*)",
+            "(a|ab)(c|bcd)(d*)",
+            "(?i)abc[d-f]",
+            "(?i)[^a]+",
+            "\\bfoo\\b",
+            "^foo$",
+            "a{2,3}",
+            "a{2,}?b",
+            "(a*?)(a*)",
+            "x\\Q.*\\Ey",
+            "[\\w.-]+@example\\.com",
+            "(.*),(.*)",
+            "^\\s*$",
+            "(?m)^b$",
+            "(a+)+c",
+            "(.)*c",
+            "(ab|a)*b",
+            "(?:ab|a)+b",
+    };
+
+    private static final String[] INPUTS = {
+            "", "a", "aaaa!", "ABC-123: fix", "Revert \"x\"", "skip #skipchecks",
+            "feature/ABC-12-foo", "master", "ABC-1 body\nmore", "abcbcdd", "ABCE", "xAx",
+            "a foo.", "foo\n", "aaab", "x.*y", "jo.e@example.com", "a,b,c", "  \n", "a\nb\nc",
+            "b\r\n",
+    };
+
+    @Test
+    public void testSameResultsAsPattern() {
+        for (String regex : REGEXES) {
+            for (int flags : new int[] {0, Pattern.MULTILINE}) {
+                Pattern pattern = Pattern.compile(regex, flags);
+                LinearRegex linear = LinearRegex.compile(regex, flags);
+
+                for (String input : INPUTS) {
+                    Matcher matcher = pattern.matcher(input);
+                    boolean matches = matcher.matches();
+                    String group = matches && matcher.groupCount() > 0 ? matcher.group(1) : null;
+
+                    String description = regex + " on '" + input + "' with flags " + flags;
+                    assertThat(linear.matches(input)).as(description).isEqualTo(matches);
+                    assertThat(linear.find(input)).as(description)
+                            .isEqualTo(pattern.matcher(input).find());
+                    MatchResult match = linear.match(input);
+                    assertThat(match != null).as(description).isEqualTo(matches);
+                    assertThat(match != null && match.groupCount() > 0 ? match.group(1) : null)
+                            .as(description).isEqualTo(group);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCatastrophicBacktrackingRegexRunsInLinearTime() {
+        LinearRegex linear = LinearRegex.compile("(a+)+$", 0);
+
+        assertThat(linear.matches(Strings.repeat("a", 100000) + "!")).isFalse();
+        assertThat(linear.matches(Strings.repeat("a", 100000))).isTrue();
+    }
+
+    @Test
+    public void testGroupCount() {
+        assertThat(LinearRegex.compile("(a)(?:b)(?<name>c)", 0).groupCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnsupportedFeatures() {
+        assertThatThrownBy(() -> LinearRegex.compile("(a)\\1", 0))
+                .isInstanceOf(UnsupportedRegexException.class)
+                .hasMessageStartingWith("backreferences are not supported");
+
+        assertThat(LinearRegex.getUnsupportedReason("^(?!WIP)", 0))
+                .startsWith("lookaround is not supported");
+        assertThat(LinearRegex.getUnsupportedReason("a++", 0))
+                .startsWith("possessive quantifiers are not supported");
+        assertThat(LinearRegex.getUnsupportedReason("[a-z&&[^aeiou]]", 0))
+                .startsWith("nested character classes are not supported");
+        assertThat(LinearRegex.getUnsupportedReason("a", Pattern.COMMENTS))
+                .isNotNull();
+        assertThat(LinearRegex.getUnsupportedReason("[A-Z]+-\\d+", 0)).isNull();
+    }
+
+    @Test
+    public void testRepetitionsPatternEvaluatesDifferentlyAreUnsupported() {
+        // Pattern gives different results for these than a linear-time engine would
+        assertThat(LinearRegex.getUnsupportedReason("(\\S|(?:\\n|(^))){2}", Pattern.MULTILINE))
+                .startsWith("repetition of an expression that can match nothing is not supported");
+        assertThat(LinearRegex.getUnsupportedReason("((\\A)|\\W|c){2}[a-c]", 0))
+                .startsWith("repetition of an expression that can match nothing is not supported");
+        assertThat(LinearRegex.getUnsupportedReason("((((?:[A-Z]|\\S))*)*)*", 0))
+                .startsWith("repetition of an expression that can match nothing is not supported");
+
+        assertThat(LinearRegex.getUnsupportedReason("(?:(a)){0,2}[a-c]", 0))
+                .startsWith("groups inside counted repetition");
+        assertThat(LinearRegex.getUnsupportedReason("((\\S))*a", 0))
+                .startsWith("groups inside counted repetition");
+        assertThat(LinearRegex.getUnsupportedReason("(?:(.))*c", 0))
+                .startsWith("groups inside counted repetition");
+    }
+
+    @Test
+    public void testQuantifierAfterQuantifierIsUnsupported() {
+        // Pattern matches a{2}{3} against "aa" but not "aaaaaa", and x+{2} against "x"
+        for (String regex : new String[] {"a{2}{3}", "x+{2}", "[0-9]{2}{2}", "a*?+", "a?*"}) {
+            assertThat(LinearRegex.getUnsupportedReason(regex, 0))
+                    .as(regex)
+                    .startsWith("a quantifier directly after another quantifier is not supported");
+        }
+
+        assertThat(LinearRegex.getUnsupportedReason("a{2}b{3}", 0)).isNull();
+        assertThat(LinearRegex.getUnsupportedReason("a+?b*?", 0)).isNull();
+    }
+}
@@ -0,0 +1,75 @@
+package ut.com.isroot.stash.plugin.regex;
+
+import com.isroot.stash.plugin.YaccMetrics;
+import com.isroot.stash.plugin.regex.PatternCache;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @since 2026-10-18
+ */
+public class PatternCacheTest {
+    @Test
+    public void testCompile_sameRegexAndFlagsReturnsCachedPattern() {
+        PatternCache cache = new PatternCache(10);
+
+        Pattern first = cache.compile("[a-z]+");
+        Pattern second = cache.compile("[a-z]+");
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getStats().missCount()).isEqualTo(1);
+        assertThat(cache.getStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCompile_flagsArePartOfKey() {
+        PatternCache cache = new PatternCache(10);
+
+        Pattern plain = cache.compile("^foo$");
+        Pattern multiline = cache.compile("^foo$", Pattern.MULTILINE);
+
+        assertThat(multiline).isNotSameAs(plain);
+        assertThat(multiline.flags()).isEqualTo(Pattern.MULTILINE);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCompile_leastRecentlyUsedPatternIsEvicted() {
+        PatternCache cache = new PatternCache(2);
+
+        cache.compile("a");
+        cache.compile("b");
+        cache.compile("c");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getStats().evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCompile_invalidRegexIsNotCached() {
+        PatternCache cache = new PatternCache(10);
+
+        assertThatThrownBy(() -> cache.compile("(foo"))
+                .isInstanceOf(PatternSyntaxException.class);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testGetInstance_statsAreShownAsMetrics() {
+        PatternCache cache = PatternCache.getInstance();
+        long hits = YaccMetrics.get("regex.cache.hits");
+        long misses = YaccMetrics.get("regex.cache.misses");
+
+        cache.compile("metrics-test-[0-9]+");
+        cache.compile("metrics-test-[0-9]+");
+
+        assertThat(YaccMetrics.get("regex.cache.misses")).isEqualTo(misses + 1);
+        assertThat(YaccMetrics.get("regex.cache.hits")).isEqualTo(hits + 1);
+        assertThat(YaccMetrics.snapshot()).containsKeys("regex.cache.size", "regex.cache.evictions");
+    }
+}
@@ -0,0 +1,40 @@
+package ut.com.isroot.stash.plugin.regex;
+
+import com.google.common.base.Strings;
+import com.isroot.stash.plugin.regex.RegexTimeoutException;
+import com.isroot.stash.plugin.regex.TimeLimitedCharSequence;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @since 2026-10-18
+ */
+public class TimeLimitedCharSequenceTest {
+    @Test
+    public void testMatcher_normalMatchIsUnaffected() {
+        CharSequence input = new TimeLimitedCharSequence("ABC-123: fix the thing", 1000);
+
+        assertThat(Pattern.compile("[A-Z]+-\\d+: .*").matcher(input).matches()).isTrue();
+    }
+
+    @Test
+    public void testMatcher_catastrophicBacktrackingTimesOut() {
+        CharSequence input = new TimeLimitedCharSequence(Strings.repeat("a", 64) + "!", 50);
+
+        assertThatThrownBy(() -> Pattern.compile("(a+)+$").matcher(input).matches())
+                .isInstanceOf(RegexTimeoutException.class)
+                .hasMessage("Regex evaluation exceeded time budget of 50 ms");
+    }
+
+    @Test
+    public void testSubSequence_keepsContent() {
+        CharSequence input = new TimeLimitedCharSequence("feature/ABC-1", 1000);
+
+        assertThat(input.subSequence(8, 13).toString()).isEqualTo("ABC-1");
+        assertThat(input.length()).isEqualTo(13);
+    }
+}